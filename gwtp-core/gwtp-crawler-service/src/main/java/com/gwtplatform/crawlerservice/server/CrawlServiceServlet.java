@@ -22,7 +22,10 @@ import java.net.MalformedURLException;
 import java.net.URLDecoder;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -33,13 +36,21 @@ import javax.servlet.http.HttpServletResponse;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.google.inject.Inject;
-import com.googlecode.objectify.Key;
 import com.gwtplatform.crawlerservice.server.domain.CachedPage;
-import com.gwtplatform.crawlerservice.server.service.CachedPageDao;
+import com.gwtplatform.crawlerservice.server.service.CachedPageStore;
 
 /**
  * Servlet that makes it possible to fetch an external page, renders it using HTMLUnit and returns
  * the HTML page.
+ * <p/>
+ * A page is only rendered once at a time. Requests for a page that is being rendered wait for the render to complete,
+ * for at most {@link FetchInProgressWaitMillis}, before answering {@code FETCH_IN_PROGRESS}. When the render happens
+ * in this instance the waiting requests are woken up as soon as it completes, otherwise the {@link CachedPageStore} is
+ * polled with an increasing delay.
+ * <p/>
+ * Pages are sent with an {@code ETag}, their fetch date as {@code Last-Modified} and the time left before they expire
+ * as {@code max-age}, so that clients can cache them. A request whose {@code If-None-Match} matches the cached page is
+ * answered with {@code 304 Not Modified}.
  */
 @Singleton
 public class CrawlServiceServlet extends HttpServlet {
@@ -48,6 +59,10 @@ public class CrawlServiceServlet extends HttpServlet {
 
     private static final long serialVersionUID = -6129110224710383122L;
 
+    private static final String FETCH_IN_PROGRESS = "FETCH_IN_PROGRESS";
+    private static final long INITIAL_POLL_DELAY_MILLIS = 100;
+    private static final long MAX_POLL_DELAY_MILLIS = 1000;
+
     @Inject(optional = true)
     @HtmlUnitTimeoutMillis
     private long timeoutMillis = 12000;
@@ -56,19 +71,26 @@ public class CrawlServiceServlet extends HttpServlet {
     @CachedPageTimeoutSec
     private long cachedPageTimeoutSec = 15 * 60;
 
+    @Inject(optional = true)
+    @FetchInProgressWaitMillis
+    private long fetchInProgressWaitMillis = 8000;
+
+    private final ConcurrentMap<String, CountDownLatch> rendersInProgress =
+            new ConcurrentHashMap<String, CountDownLatch>();
+
     private final Provider<WebClient> webClientProvider;
 
     private final String key;
 
-    private final CachedPageDao cachedPageDao;
+    private final CachedPageStore cachedPageStore;
 
     @Inject
     CrawlServiceServlet(final Provider<WebClient> webClientProvider,
             @ServiceKey String key,
-            CachedPageDao cachedPageDao) {
+            CachedPageStore cachedPageStore) {
         this.webClientProvider = webClientProvider;
         this.key = key;
-        this.cachedPageDao = cachedPageDao;
+        this.cachedPageStore = cachedPageStore;
     }
 
     @Override
@@ -78,6 +100,7 @@ public class CrawlServiceServlet extends HttpServlet {
         try {
             resp.setCharacterEncoding(CHAR_ENCODING);
             resp.setHeader("Content-Type", "text/plain; charset=" + CHAR_ENCODING);
+            resp.setHeader("Cache-Control", "no-store");
 
             out = resp.getWriter();
 
@@ -86,50 +109,123 @@ public class CrawlServiceServlet extends HttpServlet {
                 out.println("<h3>The service key received does not match the desired key.</h3>");
             } else {
                 String url = URLDecoder.decode(req.getParameter("url"), CHAR_ENCODING);
+                fetchPage(url, req, resp);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println(FETCH_IN_PROGRESS);
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Prints the page at {@code url}, rendering it if it is not cached, or {@code FETCH_IN_PROGRESS} if it is still
+     * being rendered by another request after {@link #fetchInProgressWaitMillis}.
+     */
+    private void fetchPage(String url, HttpServletRequest req, HttpServletResponse resp)
+            throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + fetchInProgressWaitMillis;
+        long pollDelayMillis = INITIAL_POLL_DELAY_MILLIS;
+
+        while (true) {
+            List<CachedPage> deprecatedPages = cachedPageStore.getPages(url);
 
-                List<Key<CachedPage>> keys = cachedPageDao.listKeysByProperty("url", url);
-                Map<Key<CachedPage>, CachedPage> deprecatedPages = cachedPageDao.get(keys);
+            Date currDate = new Date();
 
-                Date currDate = new Date();
+            CachedPage matchingPage = extractMatchingPage(deprecatedPages, currDate);
+            cachedPageStore.delete(deprecatedPages);
 
-                CachedPage matchingPage = extractMatchingPage(deprecatedPages, currDate);
-                cachedPageDao.deleteKeys(deprecatedPages.keySet());
+            boolean canWait = currDate.getTime() < deadline;
+            if (canWait && matchingPage != null && matchingPage.isFetchInProgress()
+                    && !isStalePlaceholder(matchingPage, currDate)) {
+                pollDelayMillis = awaitRender(url, deadline, pollDelayMillis);
+                continue;
+            }
 
-                if (needToFetchPage(matchingPage, currDate, out)) {
-                    CachedPage cachedPage = createPlaceholderPage(url, currDate);
-                    StringBuilder renderedHtml = renderPage(url);
-                    storeFetchedPage(cachedPage, renderedHtml);
-                    out.println(renderedHtml.toString());
+            if (needToFetchPage(matchingPage, currDate, req, resp)) {
+                CountDownLatch render = new CountDownLatch(1);
+                CountDownLatch otherRender = rendersInProgress.putIfAbsent(url, render);
+                if (otherRender != null) {
+                    // Another request of this instance started rendering the page in the meantime
+                    if (canWait) {
+                        otherRender.await(deadline - currDate.getTime(), TimeUnit.MILLISECONDS);
+                        continue;
+                    }
+                    resp.getWriter().println(FETCH_IN_PROGRESS);
+                    return;
+                }
+
+                try {
+                    renderAndStorePage(url, currDate, req, resp);
+                } finally {
+                    rendersInProgress.remove(url, render);
+                    render.countDown();
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            return;
+        }
+    }
+
+    private void renderAndStorePage(String url, Date currDate, HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        CachedPage cachedPage = createPlaceholderPage(url, currDate);
+        boolean stored = false;
+        try {
+            StringBuilder renderedHtml = renderPage(url);
+            storeFetchedPage(cachedPage, renderedHtml);
+            stored = true;
+            printPage(cachedPage, currDate, req, resp);
         } finally {
-            if (out != null) {
-                out.close();
+            if (!stored) {
+                // Let the waiting requests try again instead of waiting for a render that will never complete
+                cachedPageStore.delete(cachedPage);
             }
         }
     }
 
+    /**
+     * Waits for the render of {@code url}. If the render happens in this instance, waits until it completes,
+     * otherwise sleeps before the store is polled again.
+     *
+     * @return The delay before the next poll.
+     */
+    private long awaitRender(String url, long deadline, long pollDelayMillis) throws InterruptedException {
+        long remainingMillis = Math.max(0, deadline - System.currentTimeMillis());
+        CountDownLatch render = rendersInProgress.get(url);
+        if (render != null) {
+            render.await(remainingMillis, TimeUnit.MILLISECONDS);
+            return pollDelayMillis;
+        }
+
+        Thread.sleep(Math.min(pollDelayMillis, remainingMillis));
+        return Math.min(pollDelayMillis * 2, MAX_POLL_DELAY_MILLIS);
+    }
+
     private void storeFetchedPage(CachedPage cachedPage,
             StringBuilder stringBuilder) {
         cachedPage.setContent(stringBuilder.toString());
         cachedPage.setFetchInProgress(false);
-        cachedPageDao.put(cachedPage);
+        cachedPageStore.put(cachedPage);
     }
 
     /**
      * Checks if the page {@link matchingPage} needs to be fetched. If it does not need to be fetched,
      * but a fetch is already in progress, then it prints out {@code FETCH_IN_PROGRESS} to the
-     * specified {@link PrintWriter}.
+     * response.
      *
      * @param matchingPage The matching page, can be {@code null} if no page matches.
      * @param currDate     The current date.
-     * @param out          The {@link PrintWriter} to write to, if needed.
+     * @param req          The request, to check whether the client already has the page.
+     * @param resp         The response to write to, if needed.
      * @return {@code true} if the page needs to be fetched, {@code false} otherwise.
      */
     private boolean needToFetchPage(CachedPage matchingPage,
-            Date currDate, PrintWriter out) {
+            Date currDate, HttpServletRequest req, HttpServletResponse resp) throws IOException {
 
         if (matchingPage == null) {
             return true;
@@ -137,21 +233,53 @@ public class CrawlServiceServlet extends HttpServlet {
 
         if (matchingPage.isFetchInProgress()) {
             // If fetch is in progress since more than 60 seconds, we consider something went wrong and fetch again.
-            if (currDate.getTime() > matchingPage.getFetchDate().getTime() + 60000) {
-                cachedPageDao.delete(matchingPage);
+            if (isStalePlaceholder(matchingPage, currDate)) {
+                cachedPageStore.delete(matchingPage);
                 return true;
             } else {
-                out.println("FETCH_IN_PROGRESS");
+                resp.getWriter().println(FETCH_IN_PROGRESS);
                 return false;
             }
         } else {
-            out.println(matchingPage.getContent());
+            // A page replaced or deleted by another request since it was looked up is rendered again
+            return !printPage(matchingPage, currDate, req, resp);
+        }
+    }
+
+    /**
+     * Prints a fetched page along with its caching headers, or only the headers if the client already has it.
+     *
+     * @return {@code false} if nothing was printed because the content of the page is gone from the
+     *         {@link CachedPageStore}, {@code true} otherwise.
+     */
+    private boolean printPage(CachedPage page, Date currDate, HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        long fetchTime = page.getFetchDate().getTime();
+        long maxAgeSec = (fetchTime + cachedPageTimeoutSec * 1000 - currDate.getTime()) / 1000;
+        String eTag = "\"" + fetchTime + "\"";
+        boolean notModified = eTag.equals(req.getHeader("If-None-Match"));
+        String content = notModified ? null : page.getContent();
+        if (!notModified && content == null) {
             return false;
         }
+
+        resp.setHeader("Cache-Control", "max-age=" + Math.max(0, maxAgeSec));
+        resp.setHeader("ETag", eTag);
+        resp.setDateHeader("Last-Modified", fetchTime);
+        if (notModified) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        } else {
+            resp.getWriter().println(content);
+        }
+        return true;
+    }
+
+    private boolean isStalePlaceholder(CachedPage page, Date currDate) {
+        return currDate.getTime() > page.getFetchDate().getTime() + 60000;
     }
 
     /**
-     * Creates a placeholder page for the given {@code url} and stores it in the datastore.
+     * Creates a placeholder page for the given {@code url} and stores it in the {@link CachedPageStore}.
      *
      * @param url      The URL of the page for which to create a placeholder.
      * @param currDate The current date, to mark the page.
@@ -162,7 +290,7 @@ public class CrawlServiceServlet extends HttpServlet {
         result.setUrl(url);
         result.setFetchDate(currDate);
         result.setFetchInProgress(true);
-        cachedPageDao.put(result);
+        cachedPageStore.put(result);
         return result;
     }
 
@@ -209,7 +337,7 @@ public class CrawlServiceServlet extends HttpServlet {
      * @param currDate        The current date, to check for expiration.
      * @return The non-expired matching page if found, {@code null} otherwise.
      */
-    private CachedPage extractMatchingPage(Map<Key<CachedPage>, CachedPage> deprecatedPages,
+    private CachedPage extractMatchingPage(List<CachedPage> deprecatedPages,
             Date currDate) {
         CachedPage matchingPage = findMostRecentPage(deprecatedPages);
 
@@ -219,15 +347,15 @@ public class CrawlServiceServlet extends HttpServlet {
                         matchingPage.getFetchDate().getTime() + cachedPageTimeoutSec * 1000) {
             matchingPage = null;
         } else {
-            deprecatedPages.remove(Key.create(CachedPage.class, matchingPage.getId()));
+            deprecatedPages.remove(matchingPage);
         }
 
         return matchingPage;
     }
 
-    private CachedPage findMostRecentPage(Map<Key<CachedPage>, CachedPage> pages) {
+    private CachedPage findMostRecentPage(List<CachedPage> pages) {
         CachedPage result = null;
-        for (CachedPage page : pages.values()) {
+        for (CachedPage page : pages) {
             if (result == null ||
                     page.getFetchDate().after(result.getFetchDate())) {
                 result = page;
@@ -23,14 +23,35 @@ import com.gargoylesoftware.htmlunit.WebClient;
 import com.google.inject.Provides;
 import com.google.inject.servlet.ServletModule;
 import com.gwtplatform.crawlerservice.server.CrawlServiceServlet;
+import com.gwtplatform.crawlerservice.server.service.CachedPageStore;
+import com.gwtplatform.crawlerservice.server.service.ObjectifyCachedPageStore;
 
 /**
+ * Serves the {@link CrawlServiceServlet}. Pages are kept in the App Engine datastore unless another
+ * {@link CachedPageStore} is given.
+ *
  * @author Philippe Beaudoin
  */
 public class CrawlServiceModule extends ServletModule {
+    private final Class<? extends CachedPageStore> cachedPageStoreClass;
+
+    public CrawlServiceModule() {
+        this(ObjectifyCachedPageStore.class);
+    }
+
+    /**
+     * @param cachedPageStoreClass The {@link CachedPageStore} implementation, for example
+     *                             {@link com.gwtplatform.crawlerservice.server.service.InMemoryCachedPageStore} to
+     *                             run the crawl service outside of App Engine.
+     */
+    public CrawlServiceModule(Class<? extends CachedPageStore> cachedPageStoreClass) {
+        this.cachedPageStoreClass = cachedPageStoreClass;
+    }
 
     @Override
     public void configureServlets() {
+        bind(CachedPageStore.class).to(cachedPageStoreClass).in(Singleton.class);
+
         serve("*").with(CrawlServiceServlet.class);
     }
 
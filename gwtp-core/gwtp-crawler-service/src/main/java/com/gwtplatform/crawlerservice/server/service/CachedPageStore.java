@@ -0,0 +1,51 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * Stores the {@link CachedPage}s of the crawl service. Implementations must be thread safe.
+ * <p/>
+ * Use {@link com.gwtplatform.crawlerservice.server.guice.CrawlServiceModule#CrawlServiceModule(Class)} to choose the
+ * implementation.
+ *
+ * @see ObjectifyCachedPageStore
+ * @see InMemoryCachedPageStore
+ * @see FileCachedPageStore
+ */
+public interface CachedPageStore {
+    /**
+     * @param url The URL of the pages.
+     * @return A new, modifiable, list of the pages stored for {@code url}.
+     */
+    List<CachedPage> getPages(String url);
+
+    /**
+     * Stores a page, or replaces it if it was already stored. The page is given an id if it has none.
+     *
+     * @param page The page to store.
+     */
+    void put(CachedPage page);
+
+    void delete(CachedPage page);
+
+    void delete(Collection<CachedPage> pages);
+}
@@ -0,0 +1,388 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import com.gwtplatform.crawlerservice.server.CachedPageStoreFile;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * A {@link CachedPageStore} keeping the pages in a local file, set with {@link CachedPageStoreFile}.
+ * <p/>
+ * The file is append-only: every change adds a record at its end. The URL, date and status of the pages are indexed
+ * in memory when the store is opened. The content of a page is only read from the file the first time
+ * {@link CachedPage#getContent()} is called on it, so that looking up the pages of a URL stays cheap. If the page was
+ * replaced or deleted in the meantime, and its content is no longer in the file, {@code getContent()} returns
+ * {@code null}: the page is gone, as if it had not been found. Once more than
+ * half of the file is made of replaced or deleted pages, the live pages are copied to a new file, which then replaces
+ * the old one. The old file is kept aside until the new one is in place.
+ * <p/>
+ * Records are not forced to disk, so the pages changed right before the JVM crashes may be lost. An incomplete record
+ * at the end of the file is discarded when the store is opened.
+ */
+public class FileCachedPageStore implements CachedPageStore {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    /**
+     * A page whose content is read from the file when first requested.
+     */
+    private final class StoredPage extends CachedPage {
+        private final Record record;
+        private final long compaction;
+        private boolean contentLoaded;
+
+        private StoredPage(Record record) {
+            this.record = record;
+            compaction = compactions;
+            setId(record.id);
+            setUrl(record.url);
+            setFetchDate(record.fetchTime == NO_DATE ? null : new Date(record.fetchTime));
+            setFetchInProgress(record.fetchInProgress);
+        }
+
+        @Override
+        public String getContent() {
+            if (!contentLoaded) {
+                setContent(readContent(this));
+            }
+            return super.getContent();
+        }
+
+        @Override
+        public void setContent(String content) {
+            contentLoaded = true;
+            super.setContent(content);
+        }
+    }
+
+    /**
+     * The indexed part of a page, and where to find its content.
+     */
+    private static final class Record {
+        private final long id;
+        private final String url;
+        private final long fetchTime;
+        private final boolean fetchInProgress;
+        private final long contentOffset;
+        private final int contentLength;
+        private final long length;
+
+        private Record(long id, String url, long fetchTime, boolean fetchInProgress, long contentOffset,
+                int contentLength, long length) {
+            this.id = id;
+            this.url = url;
+            this.fetchTime = fetchTime;
+            this.fetchInProgress = fetchInProgress;
+            this.contentOffset = contentOffset;
+            this.contentLength = contentLength;
+            this.length = length;
+        }
+    }
+
+    private final Logger logger = Logger.getLogger(FileCachedPageStore.class.getName());
+    private final File file;
+    private final Map<String, Map<Long, Record>> recordsByUrl = new HashMap<String, Map<Long, Record>>();
+
+    private final File backupFile;
+
+    private RandomAccessFile data;
+    private long liveBytes;
+    private long lastId;
+    private long compactions;
+
+    @Inject
+    public FileCachedPageStore(@CachedPageStoreFile String fileName) throws IOException {
+        file = new File(fileName);
+        backupFile = new File(fileName + ".backup");
+        if (!file.exists() && backupFile.exists()) {
+            logger.warning("Restoring " + file + " from " + backupFile + ", left by an interrupted compaction.");
+            if (!backupFile.renameTo(file)) {
+                throw new IOException("Unable to restore " + file + " from " + backupFile);
+            }
+        }
+        data = new RandomAccessFile(file, "rw");
+        load();
+    }
+
+    @Override
+    public synchronized List<CachedPage> getPages(String url) {
+        Map<Long, Record> records = recordsByUrl.get(url);
+        List<CachedPage> pages = new ArrayList<CachedPage>();
+        if (records != null) {
+            for (Record record : records.values()) {
+                pages.add(new StoredPage(record));
+            }
+        }
+        return pages;
+    }
+
+    @Override
+    public synchronized void put(CachedPage page) {
+        if (page.getId() == null) {
+            page.setId(++lastId);
+        }
+
+        try {
+            Record record = append(data, page.getId(), page.getUrl(),
+                    page.getFetchDate() == null ? NO_DATE : page.getFetchDate().getTime(), page.isFetchInProgress(),
+                    page.getContent() == null ? null : page.getContent().getBytes(UTF8));
+            removeRecord(page.getUrl(), page.getId());
+            addRecord(record);
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write a page of " + page.getUrl() + " to " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void delete(CachedPage page) {
+        if (page.getId() == null || removeRecord(page.getUrl(), page.getId()) == null) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(9);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeByte(DELETE);
+            out.writeLong(page.getId());
+            data.seek(data.length());
+            data.write(buffer.toByteArray());
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to delete a page of " + page.getUrl() + " from " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void delete(Collection<CachedPage> pages) {
+        for (CachedPage page : pages) {
+            delete(page);
+        }
+    }
+
+    private void load() throws IOException {
+        Map<Long, Record> recordsById = new HashMap<Long, Record>();
+        long position = 0;
+        try {
+            data.seek(0);
+            while (position < data.length()) {
+                byte type = data.readByte();
+                long id = data.readLong();
+                lastId = Math.max(lastId, id);
+                if (type == DELETE) {
+                    recordsById.remove(id);
+                } else if (type == PUT) {
+                    String url = data.readUTF();
+                    long fetchTime = data.readLong();
+                    boolean fetchInProgress = data.readBoolean();
+                    int contentLength = data.readInt();
+                    long contentOffset = data.getFilePointer();
+                    long end = contentOffset + Math.max(0, contentLength);
+                    if (end > data.length()) {
+                        throw new EOFException();
+                    }
+
+                    recordsById.put(id, new Record(id, url, fetchTime, fetchInProgress, contentOffset,
+                            contentLength, end - position));
+                    data.seek(end);
+                } else {
+                    throw new IOException("Unknown record type " + type + " at " + position + " in " + file);
+                }
+                position = data.getFilePointer();
+            }
+        } catch (EOFException e) {
+            logger.warning("Discarding an incomplete record at the end of " + file);
+            data.setLength(position);
+        }
+
+        for (Record record : recordsById.values()) {
+            addRecord(record);
+        }
+    }
+
+    private Record append(RandomAccessFile target, long id, String url, long fetchTime, boolean fetchInProgress,
+            byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + (content == null ? 0 : content.length));
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(PUT);
+        out.writeLong(id);
+        out.writeUTF(url);
+        out.writeLong(fetchTime);
+        out.writeBoolean(fetchInProgress);
+        out.writeInt(content == null ? -1 : content.length);
+        int headerLength = out.size();
+        if (content != null) {
+            out.write(content);
+        }
+
+        long position = target.length();
+        target.seek(position);
+        target.write(buffer.toByteArray());
+
+        return new Record(id, url, fetchTime, fetchInProgress, position + headerLength,
+                content == null ? -1 : content.length, buffer.size());
+    }
+
+    private void addRecord(Record record) {
+        Map<Long, Record> records = recordsByUrl.get(record.url);
+        if (records == null) {
+            records = new LinkedHashMap<Long, Record>();
+            recordsByUrl.put(record.url, records);
+        }
+        records.put(record.id, record);
+        liveBytes += record.length;
+    }
+
+    private Record removeRecord(String url, Long id) {
+        Map<Long, Record> records = recordsByUrl.get(url);
+        if (records == null) {
+            return null;
+        }
+
+        Record record = records.remove(id);
+        if (record != null) {
+            liveBytes -= record.length;
+        }
+        if (records.isEmpty()) {
+            recordsByUrl.remove(url);
+        }
+        return record;
+    }
+
+    /**
+     * Reads the content of a page returned by {@link #getPages(String)}. If the file was compacted since, the content
+     * is read from the new location of the page.
+     *
+     * @return The content, or {@code null} if the page was replaced or deleted before the file was compacted.
+     */
+    private synchronized String readContent(StoredPage page) {
+        Record record = page.record;
+        if (page.compaction != compactions) {
+            Map<Long, Record> records = recordsByUrl.get(record.url);
+            Record compactedRecord = records == null ? null : records.get(record.id);
+            if (compactedRecord == null || compactedRecord.fetchTime != record.fetchTime
+                    || compactedRecord.fetchInProgress != record.fetchInProgress
+                    || compactedRecord.contentLength != record.contentLength) {
+                logger.fine("The page " + record.id + " of " + record.url
+                        + " was replaced or deleted before its content was read from " + file);
+                return null;
+            }
+            record = compactedRecord;
+        }
+
+        try {
+            return readContent(data, record);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read a page of " + record.url + " from " + file, e);
+        }
+    }
+
+    private byte[] readContentBytes(RandomAccessFile source, Record record) throws IOException {
+        byte[] content = new byte[record.contentLength];
+        source.seek(record.contentOffset);
+        source.readFully(content);
+        return content;
+    }
+
+    private String readContent(RandomAccessFile source, Record record) throws IOException {
+        return record.contentLength < 0 ? null : new String(readContentBytes(source, record), UTF8);
+    }
+
+    /**
+     * Copies the live pages to a new file once the replaced and deleted ones take more space than them.
+     */
+    private void compactIfNeeded() throws IOException {
+        long garbageBytes = data.length() - liveBytes;
+        if (garbageBytes < MIN_COMPACTION_BYTES || garbageBytes < liveBytes) {
+            return;
+        }
+
+        File compactedFile = new File(file.getPath() + ".compacting");
+        RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw");
+        List<Record> compactedRecords = new ArrayList<Record>();
+        try {
+            compacted.setLength(0);
+            for (Map<Long, Record> records : recordsByUrl.values()) {
+                for (Record record : records.values()) {
+                    compactedRecords.add(append(compacted, record.id, record.url, record.fetchTime,
+                            record.fetchInProgress, record.contentLength < 0 ? null : readContentBytes(data, record)));
+                }
+            }
+        } finally {
+            compacted.close();
+        }
+
+        data.close();
+        boolean replaced = compactedFile.renameTo(file) || replaceThroughBackup(compactedFile);
+        data = new RandomAccessFile(file, "rw");
+        if (!replaced) {
+            throw new IOException("Unable to replace " + file + " with " + compactedFile);
+        }
+
+        logger.info("Compacted " + file + " from " + (liveBytes + garbageBytes) + " to " + data.length() + " bytes.");
+        recordsByUrl.clear();
+        liveBytes = 0;
+        ++compactions;
+        for (Record record : compactedRecords) {
+            addRecord(record);
+        }
+    }
+
+    /**
+     * Replaces the file on platforms where a file cannot be renamed over another. The old file is moved aside first
+     * and only deleted once the compacted file is in place, so that the pages survive a crash in between: the old
+     * file is restored when the store is opened again.
+     */
+    private boolean replaceThroughBackup(File compactedFile) {
+        if ((backupFile.exists() && !backupFile.delete()) || !file.renameTo(backupFile)) {
+            return false;
+        }
+
+        if (compactedFile.renameTo(file)) {
+            if (!backupFile.delete()) {
+                logger.warning("Unable to delete " + backupFile);
+            }
+            return true;
+        }
+
+        if (!backupFile.renameTo(file)) {
+            logger.severe("Unable to restore " + file + " from " + backupFile);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * A {@link CachedPageStore} keeping the pages in memory. Pages are lost when the JVM stops and are not shared between
+ * instances of the crawl service.
+ */
+public class InMemoryCachedPageStore implements CachedPageStore {
+    private final Map<String, Map<Long, CachedPage>> pagesByUrl = new HashMap<String, Map<Long, CachedPage>>();
+    private long lastId;
+
+    /**
+     * Copies a page, so that stored pages are not affected by later changes to the pages that were put.
+     */
+    static CachedPage copy(CachedPage page) {
+        CachedPage copy = new CachedPage();
+        copy.setId(page.getId());
+        copy.setUrl(page.getUrl());
+        copy.setFetchDate(page.getFetchDate());
+        copy.setFetchInProgress(page.isFetchInProgress());
+        copy.setContent(page.getContent());
+        return copy;
+    }
+
+    @Override
+    public synchronized List<CachedPage> getPages(String url) {
+        Map<Long, CachedPage> pages = pagesByUrl.get(url);
+        List<CachedPage> result = new ArrayList<CachedPage>();
+        if (pages != null) {
+            for (CachedPage page : pages.values()) {
+                result.add(copy(page));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void put(CachedPage page) {
+        if (page.getId() == null) {
+            page.setId(++lastId);
+        }
+
+        Map<Long, CachedPage> pages = pagesByUrl.get(page.getUrl());
+        if (pages == null) {
+            pages = new LinkedHashMap<Long, CachedPage>();
+            pagesByUrl.put(page.getUrl(), pages);
+        }
+        pages.put(page.getId(), copy(page));
+    }
+
+    @Override
+    public synchronized void delete(CachedPage page) {
+        Map<Long, CachedPage> pages = pagesByUrl.get(page.getUrl());
+        if (pages != null) {
+            pages.remove(page.getId());
+            if (pages.isEmpty()) {
+                pagesByUrl.remove(page.getUrl());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void delete(Collection<CachedPage> pages) {
+        for (CachedPage page : pages) {
+            delete(page);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * A {@link CachedPageStore} keeping the pages in the App Engine datastore, through a {@link CachedPageDao}.
+ */
+public class ObjectifyCachedPageStore implements CachedPageStore {
+    private final CachedPageDao cachedPageDao;
+
+    @Inject
+    ObjectifyCachedPageStore(CachedPageDao cachedPageDao) {
+        this.cachedPageDao = cachedPageDao;
+    }
+
+    @Override
+    public List<CachedPage> getPages(String url) {
+        // Pages are loaded by key, since queries are only eventually consistent
+        return new ArrayList<CachedPage>(cachedPageDao.get(cachedPageDao.listKeysByProperty("url", url)).values());
+    }
+
+    @Override
+    public void put(CachedPage page) {
+        cachedPageDao.put(page);
+    }
+
+    @Override
+    public void delete(CachedPage page) {
+        cachedPageDao.delete(page);
+    }
+
+    @Override
+    public void delete(Collection<CachedPage> pages) {
+        cachedPageDao.deleteAll(pages);
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link FileCachedPageStore} appends, reloads and compacts its file.
+ */
+public class FileCachedPageStoreTest {
+    private static final String URL = "http://example.com/#!home";
+    private static final String OTHER_URL = "http://example.com/#!other";
+    private static final int LARGE_CONTENT_LENGTH = 300 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "pages");
+    }
+
+    @Test
+    public void storedPageIsFound() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        CachedPage page = createPage(URL, "content");
+
+        // When
+        store.put(page);
+
+        // Then
+        assertNotNull(page.getId());
+        CachedPage found = getOnlyPage(store, URL);
+        assertEquals(page.getId(), found.getId());
+        assertEquals(page.getFetchDate(), found.getFetchDate());
+        assertFalse(found.isFetchInProgress());
+        assertEquals("content", found.getContent());
+        assertTrue(store.getPages(OTHER_URL).isEmpty());
+    }
+
+    @Test
+    public void pagesAreReloaded() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        CachedPage replaced = createPage(URL, "old");
+        store.put(replaced);
+        CachedPage deleted = createPage(OTHER_URL, "deleted");
+        store.put(deleted);
+        CachedPage placeholder = createPage(OTHER_URL, null);
+        placeholder.setFetchInProgress(true);
+        store.put(placeholder);
+        replaced.setContent("new");
+        store.put(replaced);
+        store.delete(deleted);
+
+        // When
+        FileCachedPageStore reloaded = new FileCachedPageStore(file.getPath());
+
+        // Then
+        assertEquals("new", getOnlyPage(reloaded, URL).getContent());
+        CachedPage reloadedPlaceholder = getOnlyPage(reloaded, OTHER_URL);
+        assertEquals(placeholder.getId(), reloadedPlaceholder.getId());
+        assertTrue(reloadedPlaceholder.isFetchInProgress());
+        assertNull(reloadedPlaceholder.getContent());
+    }
+
+    @Test
+    public void idsAreNotReusedAfterReloading() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        CachedPage first = createPage(URL, "first");
+        store.put(first);
+        store.delete(first);
+
+        // When
+        CachedPage second = createPage(URL, "second");
+        new FileCachedPageStore(file.getPath()).put(second);
+
+        // Then
+        assertTrue(second.getId() > first.getId());
+    }
+
+    @Test
+    public void truncatedRecordIsDiscarded() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        store.put(createPage(URL, "complete"));
+        long completeLength = file.length();
+        store.put(createPage(OTHER_URL, "truncated"));
+        truncate(file, file.length() - 3);
+
+        // When
+        FileCachedPageStore reloaded = new FileCachedPageStore(file.getPath());
+
+        // Then
+        assertEquals(completeLength, file.length());
+        assertEquals("complete", getOnlyPage(reloaded, URL).getContent());
+        assertTrue(reloaded.getPages(OTHER_URL).isEmpty());
+    }
+
+    @Test
+    public void pagesCanBeAddedAfterATruncatedRecord() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        store.put(createPage(URL, "complete"));
+        store.put(createPage(OTHER_URL, "truncated"));
+        truncate(file, file.length() - 3);
+        FileCachedPageStore reloaded = new FileCachedPageStore(file.getPath());
+
+        // When
+        reloaded.put(createPage(OTHER_URL, "added"));
+
+        // Then
+        FileCachedPageStore reloadedAgain = new FileCachedPageStore(file.getPath());
+        assertEquals("complete", getOnlyPage(reloadedAgain, URL).getContent());
+        assertEquals("added", getOnlyPage(reloadedAgain, OTHER_URL).getContent());
+    }
+
+    @Test
+    public void replacedPagesAreCompactedAway() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        store.put(createPage(OTHER_URL, "kept"));
+        CachedPage page = createPage(URL, largeContent('a'));
+
+        // When
+        for (char c = 'a'; c <= 'f'; c++) {
+            page.setContent(largeContent(c));
+            store.put(page);
+        }
+
+        // Then
+        assertTrue(file.length() < 3 * LARGE_CONTENT_LENGTH);
+        assertEquals(largeContent('f'), getOnlyPage(store, URL).getContent());
+        assertEquals("kept", getOnlyPage(store, OTHER_URL).getContent());
+        FileCachedPageStore reloaded = new FileCachedPageStore(file.getPath());
+        assertEquals(largeContent('f'), getOnlyPage(reloaded, URL).getContent());
+        assertEquals("kept", getOnlyPage(reloaded, OTHER_URL).getContent());
+    }
+
+    @Test
+    public void pageLookedUpBeforeACompactionIsReadFromTheCompactedFile() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        store.put(createPage(OTHER_URL, "kept"));
+        CachedPage lookedUp = getOnlyPage(store, OTHER_URL);
+
+        // When
+        compact(store);
+
+        // Then
+        assertEquals("kept", lookedUp.getContent());
+    }
+
+    @Test
+    public void pageReplacedBeforeACompactionHasNoContent() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        CachedPage page = createPage(URL, largeContent('a'));
+        store.put(page);
+        CachedPage lookedUp = getOnlyPage(store, URL);
+
+        // When
+        for (char c = 'b'; c <= 'f'; c++) {
+            page.setFetchDate(new Date(page.getFetchDate().getTime() + 1000));
+            page.setContent(largeContent(c));
+            store.put(page);
+        }
+
+        // Then
+        assertNull(lookedUp.getContent());
+    }
+
+    @Test
+    public void pageDeletedBeforeACompactionHasNoContent() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        CachedPage page = createPage(URL, "deleted");
+        store.put(page);
+        CachedPage lookedUp = getOnlyPage(store, URL);
+        store.delete(page);
+
+        // When
+        compact(store);
+
+        // Then
+        assertNull(lookedUp.getContent());
+    }
+
+    @Test
+    public void backupLeftByAnInterruptedCompactionIsRestored() throws Exception {
+        // Given
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+        store.put(createPage(URL, "backed up"));
+        File backupFile = new File(file.getPath() + ".backup");
+        assertTrue(file.renameTo(backupFile));
+
+        // When
+        FileCachedPageStore restored = new FileCachedPageStore(file.getPath());
+
+        // Then
+        assertTrue(file.exists());
+        assertFalse(backupFile.exists());
+        assertEquals("backed up", getOnlyPage(restored, URL).getContent());
+    }
+
+    @Test
+    public void backupIsIgnoredWhenTheFileExists() throws Exception {
+        // Given
+        new FileCachedPageStore(file.getPath()).put(createPage(URL, "current"));
+        new FileCachedPageStore(file.getPath() + ".backup").put(createPage(URL, "stale"));
+
+        // When
+        FileCachedPageStore store = new FileCachedPageStore(file.getPath());
+
+        // Then
+        assertEquals("current", getOnlyPage(store, URL).getContent());
+    }
+
+    private CachedPage createPage(String url, String content) {
+        CachedPage page = new CachedPage();
+        page.setUrl(url);
+        page.setFetchDate(new Date());
+        page.setContent(content);
+        return page;
+    }
+
+    private CachedPage getOnlyPage(FileCachedPageStore store, String url) {
+        List<CachedPage> pages = store.getPages(url);
+        assertEquals(1, pages.size());
+        return pages.get(0);
+    }
+
+    /**
+     * Replaces a large page until the garbage of the file is worth a compaction.
+     */
+    private void compact(FileCachedPageStore store) {
+        CachedPage page = createPage("http://example.com/#!garbage", largeContent('a'));
+        for (char c = 'a'; c <= 'f'; c++) {
+            page.setContent(largeContent(c));
+            store.put(page);
+        }
+        assertTrue(file.length() < 3 * LARGE_CONTENT_LENGTH);
+    }
+
+    private String largeContent(char c) {
+        char[] content = new char[LARGE_CONTENT_LENGTH];
+        Arrays.fill(content, c);
+        return new String(content);
+    }
+
+    private void truncate(File truncatedFile, long length) throws Exception {
+        RandomAccessFile access = new RandomAccessFile(truncatedFile, "rw");
+        try {
+            access.setLength(length);
+        } finally {
+            access.close();
+        }
+    }
+}
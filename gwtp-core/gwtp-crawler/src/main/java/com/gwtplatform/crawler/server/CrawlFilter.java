@@ -16,20 +16,22 @@
 
 package com.gwtplatform.crawler.server;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
-import javax.inject.Inject;
-import javax.inject.Singleton;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -39,14 +41,59 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
 /**
  * Servlet that makes this application crawlable.
+ * <p/>
+ * The crawl service holds requests for pages that are being rendered until the render completes. If it still answers
+ * {@code FETCH_IN_PROGRESS}, the request is retried a few times with an increasing delay. All attempts share a single
+ * deadline, {@link ServiceDeadlineMillis}, and each of them waits for the time that remains. When the deadline is
+ * reached, the crawl service times out or keeps answering {@code FETCH_IN_PROGRESS}, the filter gives up with a
+ * {@code 503 Service Unavailable}. A timed out request is not retried: the crawl service is still busy with it.
+ * <p/>
+ * The rendered page is streamed as is, through a fixed buffer, along with the status, charset, length and caching
+ * headers of the crawl service response.
+ * <p/>
+ * Requests are sent through a {@link CrawlServiceClient}. When it rejects a request because the crawl service is
+ * unhealthy or busy, the page is served as if it had not been requested by a crawler.
+ * <p/>
+ * Rendered pages are kept in a {@link RenderedPageCache}, so that crawlers requesting the same page again are served
+ * from memory. Once expired, a page is revalidated with the crawl service before it is rendered again.
  */
 @Singleton
 public final class CrawlFilter implements Filter {
 
+    /**
+     * What {@link #fetchRenderedPage} did with a request.
+     */
+    private enum FetchResult {
+        /**
+         * The page, or the crawl service error, was written to the response.
+         */
+        WRITTEN,
+        /**
+         * The page is still being rendered and nothing was written.
+         */
+        IN_PROGRESS,
+        /**
+         * The crawl service did not answer in time and nothing was written.
+         */
+        TIMED_OUT
+    }
+
     private static final String CHAR_ENCODING = "UTF-8";
 
+    private static final String FETCH_IN_PROGRESS = "FETCH_IN_PROGRESS";
+    private static final byte[] FETCH_IN_PROGRESS_BYTES = FETCH_IN_PROGRESS.getBytes(Charset.forName("US-ASCII"));
+    private static final String[] PROPAGATED_HEADERS = {"Cache-Control", "Expires", "Last-Modified", "ETag",
+            "Content-Encoding"};
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 500;
+    private static final int RETRY_AFTER_SECONDS = 30;
+
     /**
      * Special URL token that gets passed from the crawler to the servlet filter.
      * This token is used in case there are already existing query parameters.
@@ -101,14 +148,24 @@ public final class CrawlFilter implements Filter {
 
     private final String serviceUrl;
     private final String key;
+    private final CrawlServiceClient serviceClient;
+    private final RenderedPageCache pageCache;
     private final Logger log;
 
+    @Inject(optional = true)
+    @ServiceDeadlineMillis
+    private int deadlineMillis = 30000;
+
     @Inject
-    public CrawlFilter(@ServiceUrl String serviceUrl,
+    CrawlFilter(@ServiceUrl String serviceUrl,
             @ServiceKey String key,
+            CrawlServiceClient serviceClient,
+            RenderedPageCache pageCache,
             Logger log) {
         this.serviceUrl = serviceUrl;
         this.key = key;
+        this.serviceClient = serviceClient;
+        this.pageCache = pageCache;
         this.log = log;
     }
 
@@ -136,9 +193,6 @@ public final class CrawlFilter implements Filter {
         // Does this request contain an _escaped_fragment_?
         if ((queryString != null)
                 && (queryString.contains(ESCAPED_FRAGMENT_FORMAT1))) {
-            res.setHeader("Content-Type", "text/html; charset=" + CHAR_ENCODING);
-
-            PrintWriter writer = res.getWriter();
             try {
                 StringBuilder pageNameSb = new StringBuilder(req.getScheme() + "://");
                 pageNameSb.append(req.getServerName());
@@ -153,45 +207,49 @@ public final class CrawlFilter implements Filter {
 
                 log.info("Crawl filter encountered escaped fragment, will open: " + pageName);
 
+                RenderedPageCache.Entry cachedPage = pageCache.get(pageName);
+                if (cachedPage != null && cachedPage.isFresh()) {
+                    log.info("Serving cached page: " + pageName);
+                    writeCachedPage(cachedPage, req, res);
+                    return;
+                }
+
                 String serviceRequest = serviceUrl + "?key=" + URLEncoder.encode(key, CHAR_ENCODING)
                         + "&url=" + URLEncoder.encode(pageName, CHAR_ENCODING);
 
                 log.info("Full service request: " + serviceRequest);
 
-                // Retry until we're cut off
-                while (true) {
-                    BufferedReader reader = null;
-                    try {
-                        URL url = new URL(serviceRequest);
-                        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                        connection.setConnectTimeout(10000);
-                        connection.setReadTimeout(10000);
-                        reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                        String line;
-                        line = reader.readLine();
-                        if (!"FETCH_IN_PROGRESS".equals(line)) {
-                            writer.println(line);
-                            while ((line = reader.readLine()) != null) {
-                                writer.println(line);
-                            }
-                            break;
-                        }
-                    } catch (IOException exception) {
-                        if (!exception.getMessage().contains("Timeout")) {
-                            throw exception;
-                        }
-                    } finally {
-                        if (reader != null) {
-                            reader.close();
-                        }
+                long deadline = System.currentTimeMillis() + deadlineMillis;
+                long retryDelayMillis = INITIAL_RETRY_DELAY_MILLIS;
+                for (int attempt = 1; true; ++attempt) {
+                    int remainingMillis = (int) Math.max(1, deadline - System.currentTimeMillis());
+                    FetchResult result = fetchRenderedPage(serviceRequest, pageName, cachedPage, remainingMillis,
+                            req, res);
+                    if (result == FetchResult.WRITTEN) {
+                        break;
                     }
+                    if (result == FetchResult.TIMED_OUT || attempt == MAX_ATTEMPTS
+                            || System.currentTimeMillis() + retryDelayMillis >= deadline) {
+                        log.warning("Crawl service still rendering " + pageName + " after " + attempt
+                                + " attempts, giving up.");
+                        res.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                        res.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                        break;
+                    }
+
+                    Thread.sleep(retryDelayMillis);
+                    retryDelayMillis *= 2;
                 }
+            } catch (CrawlServiceUnavailableException e) {
+                log.warning(e.getMessage() + " Serving the page without rendering it.");
+                chain.doFilter(request, response);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (MalformedURLException e) {
                 e.printStackTrace();
             } catch (IOException e) {
                 e.printStackTrace();
-            } finally {
-                writer.close();
             }
 
             log.info("Crawl filter exiting, no chaining.");
@@ -200,6 +258,180 @@ public final class CrawlFilter implements Filter {
         }
     }
 
+    /**
+     * Requests the rendered page from the crawl service and streams it out. If {@code cachedPage} is not
+     * {@code null}, it is revalidated instead.
+     *
+     * @param timeoutMillis How long to wait for the crawl service to answer, at most.
+     */
+    private FetchResult fetchRenderedPage(String serviceRequest, String pageName, RenderedPageCache.Entry cachedPage,
+            int timeoutMillis, HttpServletRequest req, HttpServletResponse res) throws IOException {
+        CrawlServiceClient.Response serviceResponse = null;
+        boolean writing = false;
+        try {
+            serviceResponse = serviceClient.execute(serviceRequest, getConditionalHeaders(cachedPage), timeoutMillis);
+            int status = serviceResponse.getStatus();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cachedPage != null) {
+                pageCache.revalidate(cachedPage,
+                        RenderedPageCache.getMaxAgeSec(serviceResponse.getHeader("Cache-Control")));
+                writing = true;
+                writeCachedPage(cachedPage, req, res);
+                return FetchResult.WRITTEN;
+            }
+
+            InputStream in = serviceResponse.getBody();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count = in == null ? -1 : readAtLeast(in, buffer, FETCH_IN_PROGRESS_BYTES.length + 1);
+            if (status == HttpURLConnection.HTTP_OK && isFetchInProgress(buffer, count)) {
+                return FetchResult.IN_PROGRESS;
+            }
+
+            writing = true;
+            String charset = getCharset(serviceResponse.getHeader("Content-Type"));
+            copyHeaders(serviceResponse, charset, res);
+            ByteArrayOutputStream copy = isCacheable(serviceResponse) ? new ByteArrayOutputStream(BUFFER_SIZE) : null;
+            OutputStream out = res.getOutputStream();
+            while (count != -1) {
+                out.write(buffer, 0, count);
+                if (copy != null && copy.size() + count > pageCache.getMaxEntryBytes()) {
+                    copy = null;
+                } else if (copy != null) {
+                    copy.write(buffer, 0, count);
+                }
+                count = in.read(buffer);
+            }
+
+            if (copy != null) {
+                pageCache.put(pageName, copy.toByteArray(), charset, serviceResponse.getHeader("ETag"),
+                        serviceResponse.getHeader("Last-Modified"),
+                        RenderedPageCache.getMaxAgeSec(serviceResponse.getHeader("Cache-Control")));
+            }
+            return FetchResult.WRITTEN;
+        } catch (SocketTimeoutException e) {
+            if (writing) {
+                throw e;
+            }
+            return FetchResult.TIMED_OUT;
+        } finally {
+            if (serviceResponse != null) {
+                serviceResponse.close();
+            }
+        }
+    }
+
+    private Map<String, String> getConditionalHeaders(RenderedPageCache.Entry cachedPage) {
+        if (cachedPage == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> headers = new HashMap<String, String>();
+        if (cachedPage.getETag() != null) {
+            headers.put("If-None-Match", cachedPage.getETag());
+        }
+        if (cachedPage.getLastModified() != null) {
+            headers.put("If-Modified-Since", cachedPage.getLastModified());
+        }
+        return headers;
+    }
+
+    private boolean isCacheable(CrawlServiceClient.Response serviceResponse) {
+        return pageCache.isEnabled()
+                && serviceResponse.getStatus() == HttpURLConnection.HTTP_OK
+                && serviceResponse.getHeader("Content-Encoding") == null
+                && serviceResponse.getContentLength() <= pageCache.getMaxEntryBytes()
+                && RenderedPageCache.getMaxAgeSec(serviceResponse.getHeader("Cache-Control")) != 0;
+    }
+
+    private void copyHeaders(CrawlServiceClient.Response serviceResponse, String charset, HttpServletResponse res) {
+        if (serviceResponse.getStatus() != HttpURLConnection.HTTP_OK) {
+            res.setStatus(serviceResponse.getStatus());
+        }
+
+        res.setHeader("Content-Type", "text/html; charset=" + charset);
+        if (serviceResponse.getContentLength() >= 0) {
+            res.setContentLength(serviceResponse.getContentLength());
+        }
+        for (String header : PROPAGATED_HEADERS) {
+            String value = serviceResponse.getHeader(header);
+            if (value != null) {
+                res.setHeader(header, value);
+            }
+        }
+    }
+
+    /**
+     * Writes a cached page, or only its headers if the client already has it.
+     */
+    private void writeCachedPage(RenderedPageCache.Entry cachedPage, HttpServletRequest req, HttpServletResponse res)
+            throws IOException {
+        res.setHeader("Content-Type", "text/html; charset=" + cachedPage.getCharset());
+        res.setHeader("Cache-Control", "max-age=" + cachedPage.getRemainingSec());
+        if (cachedPage.getLastModified() != null) {
+            res.setHeader("Last-Modified", cachedPage.getLastModified());
+        }
+        if (cachedPage.getETag() != null) {
+            res.setHeader("ETag", cachedPage.getETag());
+            if (cachedPage.getETag().equals(req.getHeader("If-None-Match"))) {
+                res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        boolean acceptsGzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        cachedPage.writeTo(res, acceptsGzip, new byte[BUFFER_SIZE]);
+    }
+
+    private static String getCharset(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    return trimmed.substring(8).replace("\"", "");
+                }
+            }
+        }
+
+        return CHAR_ENCODING;
+    }
+
+    /**
+     * Reads into {@code buffer} until it holds at least {@code minimum} bytes or the stream ends.
+     * Visible for testing.
+     *
+     * @return The number of bytes read, or {@code -1} if the stream was empty.
+     */
+    static int readAtLeast(InputStream in, byte[] buffer, int minimum) throws IOException {
+        int count = 0;
+        while (count < minimum) {
+            int read = in.read(buffer, count, buffer.length - count);
+            if (read == -1) {
+                return count == 0 ? -1 : count;
+            }
+            count += read;
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks whether the first {@code count} bytes of a response are the {@code FETCH_IN_PROGRESS} marker, alone on
+     * its line. Visible for testing.
+     */
+    static boolean isFetchInProgress(byte[] buffer, int count) {
+        int length = FETCH_IN_PROGRESS_BYTES.length;
+        if (count < length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (buffer[i] != FETCH_IN_PROGRESS_BYTES[i]) {
+                return false;
+            }
+        }
+
+        return count == length || buffer[length] == '\r' || buffer[length] == '\n';
+    }
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
     }
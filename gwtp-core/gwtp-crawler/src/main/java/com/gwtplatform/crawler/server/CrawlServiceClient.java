@@ -0,0 +1,69 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * The client used by {@link CrawlFilter} to call the crawl service. Bind your own implementation to replace the
+ * default {@link HttpCrawlServiceClient}.
+ */
+@ImplementedBy(HttpCrawlServiceClient.class)
+public interface CrawlServiceClient {
+    /**
+     * A response of the crawl service. It must be closed once read, so that its connection can be reused.
+     */
+    interface Response {
+        int getStatus();
+
+        /**
+         * @param name The name of the header.
+         * @return The value of the header, or {@code null} if it is not present.
+         */
+        String getHeader(String name);
+
+        /**
+         * @return The length of the body, or {@code -1} if it is not known.
+         */
+        int getContentLength();
+
+        /**
+         * @return The body of the response, or {@code null} if there is none.
+         */
+        InputStream getBody() throws IOException;
+
+        void close();
+    }
+
+    /**
+     * Sends a request to the crawl service.
+     *
+     * @param serviceRequest The full URL of the request.
+     * @param requestHeaders The headers to send along with the request.
+     * @param timeoutMillis How long to wait, at most, for the connection and then for the status and headers.
+     * @return The {@link Response}, once its status and headers are received.
+     * @throws IOException If the request fails: a {@link java.net.SocketTimeoutException} if it timed out, or a
+     *         {@link CrawlServiceUnavailableException} if the crawl service is unhealthy or too busy to accept the
+     *         request.
+     */
+    Response execute(String serviceRequest, Map<String, String> requestHeaders, int timeoutMillis)
+            throws IOException;
+}
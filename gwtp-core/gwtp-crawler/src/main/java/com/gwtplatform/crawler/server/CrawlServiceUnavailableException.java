@@ -0,0 +1,31 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link CrawlServiceClient} that does not send a request because the crawl service is unhealthy or has
+ * too many requests in progress. {@link CrawlFilter} then serves the page without rendering it.
+ */
+public class CrawlServiceUnavailableException extends IOException {
+    private static final long serialVersionUID = 4625408836125407233L;
+
+    public CrawlServiceUnavailableException(String message) {
+        super(message);
+    }
+}
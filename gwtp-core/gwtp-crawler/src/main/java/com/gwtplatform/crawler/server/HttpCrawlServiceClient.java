@@ -0,0 +1,320 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * The default {@link CrawlServiceClient}, based on {@link HttpURLConnection}.
+ * <p/>
+ * Connections are kept alive and reused by the JDK as long as responses are fully read, the number of idle connections
+ * kept per host is set by the {@code http.maxConnections} system property. The number of requests in progress is
+ * bounded by {@link ServiceMaxConnections}: once it is reached, further requests are rejected right away instead of
+ * tying up more front-end threads.
+ * <p/>
+ * After a few consecutive failures, connection errors or server errors, the crawl service is considered unhealthy and
+ * requests are rejected for {@link ServiceRetryDelayMillis}. A single request is then let through to check whether the
+ * service has recovered. Read timeouts do not count as failures: the service accepted the request, and a slow render
+ * says more about the page than about the health of the service.
+ */
+@Singleton
+public class HttpCrawlServiceClient implements CrawlServiceClient {
+    private static final int DEFAULT_MAX_CONNECTIONS = 20;
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final int MAX_DRAINED_BYTES = 64 * 1024;
+
+    @Inject(optional = true)
+    @ServiceConnectTimeoutMillis
+    private int connectTimeoutMillis = 10000;
+
+    @Inject(optional = true)
+    @ServiceReadTimeoutMillis
+    private int readTimeoutMillis = 30000;
+
+    @Inject(optional = true)
+    @ServiceRetryDelayMillis
+    private long retryDelayMillis = 30000;
+
+    private final Logger log;
+    private final Object lock = new Object();
+
+    private volatile Semaphore connections = new Semaphore(DEFAULT_MAX_CONNECTIONS);
+
+    private int consecutiveFailures;
+    private long retryAtMillis;
+    private boolean trialInProgress;
+
+    @Inject
+    public HttpCrawlServiceClient(Logger log) {
+        this.log = log;
+    }
+
+    @Inject(optional = true)
+    public void setMaxConnections(@ServiceMaxConnections int maxConnections) {
+        connections = new Semaphore(maxConnections);
+    }
+
+    @Override
+    public Response execute(String serviceRequest, Map<String, String> requestHeaders, int timeoutMillis)
+            throws IOException {
+        Semaphore permits = connections;
+        if (!permits.tryAcquire()) {
+            throw new CrawlServiceUnavailableException("Too many requests in progress to the crawl service.");
+        }
+        if (!allowRequest()) {
+            permits.release();
+            throw new CrawlServiceUnavailableException("The crawl service is unhealthy.");
+        }
+
+        HttpURLConnection connection = null;
+        boolean connected = false;
+        boolean readTimedOut = false;
+        try {
+            connection = (HttpURLConnection) new URL(serviceRequest).openConnection();
+            connection.setConnectTimeout(shorterTimeout(connectTimeoutMillis, timeoutMillis));
+            connection.setReadTimeout(shorterTimeout(readTimeoutMillis, timeoutMillis));
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            connection.connect();
+
+            int status;
+            try {
+                status = connection.getResponseCode();
+            } catch (SocketTimeoutException e) {
+                readTimedOut = true;
+                throw e;
+            }
+
+            if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                recordFailure();
+            } else {
+                recordSuccess();
+            }
+
+            connected = true;
+            return new HttpResponse(connection, status, permits);
+        } finally {
+            if (readTimedOut) {
+                recordTimeout();
+            } else if (!connected) {
+                recordFailure();
+            }
+            if (!connected) {
+                permits.release();
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The shorter of two timeouts, where {@code 0} stands for no timeout.
+     */
+    private static int shorterTimeout(int timeoutMillis, int otherTimeoutMillis) {
+        if (timeoutMillis == 0 || otherTimeoutMillis == 0) {
+            return Math.max(timeoutMillis, otherTimeoutMillis);
+        }
+
+        return Math.min(timeoutMillis, otherTimeoutMillis);
+    }
+
+    /**
+     * Visible for testing.
+     *
+     * @return {@code true} if a request can be sent to the crawl service, {@code false} while it is unhealthy.
+     */
+    boolean allowRequest() {
+        synchronized (lock) {
+            if (consecutiveFailures < FAILURE_THRESHOLD) {
+                return true;
+            }
+            if (trialInProgress || System.currentTimeMillis() < retryAtMillis) {
+                return false;
+            }
+
+            trialInProgress = true;
+            return true;
+        }
+    }
+
+    /**
+     * Marks the crawl service as healthy. Visible for testing.
+     */
+    void recordSuccess() {
+        synchronized (lock) {
+            if (consecutiveFailures >= FAILURE_THRESHOLD) {
+                log.info("Crawl service recovered.");
+            }
+
+            consecutiveFailures = 0;
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * Neither a success nor a failure: lets another request check the health of the service. Visible for testing.
+     */
+    void recordTimeout() {
+        synchronized (lock) {
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * Counts a consecutive failure, and pauses the requests once there are too many of them. Visible for testing.
+     */
+    void recordFailure() {
+        synchronized (lock) {
+            ++consecutiveFailures;
+            trialInProgress = false;
+            if (consecutiveFailures >= FAILURE_THRESHOLD) {
+                if (consecutiveFailures == FAILURE_THRESHOLD) {
+                    log.warning("Crawl service failed " + consecutiveFailures + " times in a row, pausing requests "
+                            + "for " + retryDelayMillis + "ms.");
+                }
+                retryAtMillis = System.currentTimeMillis() + retryDelayMillis;
+            }
+        }
+    }
+
+    /**
+     * Releases its connection permit when closed. The rest of the body is read, up to a limit, so that the
+     * connection can go back to the keep-alive cache. Connections whose body failed to read are dropped.
+     */
+    private static class HttpResponse implements Response {
+        private final HttpURLConnection connection;
+        private final int status;
+        private final Semaphore permits;
+
+        private InputStream body;
+        private boolean failed;
+        private boolean closed;
+
+        HttpResponse(HttpURLConnection connection, int status, Semaphore permits) {
+            this.connection = connection;
+            this.status = status;
+            this.permits = permits;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public int getContentLength() {
+            return connection.getContentLength();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream in = status >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream()
+                        : connection.getInputStream();
+                if (in != null) {
+                    body = new FailureTrackingInputStream(in);
+                }
+            }
+
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                if (body != null) {
+                    closeBody();
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void closeBody() {
+            boolean reusable = false;
+            try {
+                if (!failed) {
+                    byte[] buffer = new byte[4096];
+                    int drained = 0;
+                    int read = 0;
+                    while (read != -1 && drained <= MAX_DRAINED_BYTES) {
+                        read = body.read(buffer);
+                        drained += read;
+                    }
+                    reusable = read == -1;
+                }
+                body.close();
+            } catch (IOException e) {
+                reusable = false;
+            }
+
+            if (!reusable) {
+                connection.disconnect();
+            }
+        }
+
+        private class FailureTrackingInputStream extends FilterInputStream {
+            FailureTrackingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    return super.read();
+                } catch (IOException e) {
+                    failed = true;
+                    throw e;
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (IOException e) {
+                    failed = true;
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Keeps the pages rendered by the crawl service in memory, keyed by URL, least recently used pages first to go once
+ * {@link RenderedPageCacheMaxBytes} is reached.
+ * <p/>
+ * A page is fresh for {@link RenderedPageCacheTimeoutSec}, or less if the crawl service says so with a
+ * {@code max-age}. Expired pages are kept so that they can be revalidated with the crawl service using their
+ * {@code ETag} or {@code Last-Modified} date.
+ */
+@Singleton
+final class RenderedPageCache {
+    /**
+     * A cached page. Its content is only read after the page is stored, so entries can be shared between requests.
+     */
+    static final class Entry {
+        private final byte[] content;
+        private final int length;
+        private final boolean gzipped;
+        private final String charset;
+        private final String eTag;
+        private final String lastModified;
+
+        private volatile long expiresAtMillis;
+
+        private Entry(byte[] content, int length, boolean gzipped, String charset, String eTag,
+                String lastModified) {
+            this.content = content;
+            this.length = length;
+            this.gzipped = gzipped;
+            this.charset = charset;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        String getCharset() {
+            return charset;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAtMillis;
+        }
+
+        long getRemainingSec() {
+            return Math.max(0, (expiresAtMillis - System.currentTimeMillis()) / 1000);
+        }
+
+        /**
+         * Writes the content of the page and its length. Gzipped pages are only decompressed if the client does not
+         * accept gzip.
+         */
+        void writeTo(HttpServletResponse res, boolean acceptsGzip, byte[] buffer) throws IOException {
+            OutputStream out = res.getOutputStream();
+            if (!gzipped) {
+                res.setContentLength(length);
+                out.write(content);
+                return;
+            }
+
+            res.addHeader("Vary", "Accept-Encoding");
+            if (acceptsGzip) {
+                res.setHeader("Content-Encoding", "gzip");
+                res.setContentLength(content.length);
+                out.write(content);
+            } else {
+                res.setContentLength(length);
+                InputStream in = new GZIPInputStream(new ByteArrayInputStream(content));
+                for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+                    out.write(buffer, 0, count);
+                }
+            }
+        }
+
+        private int getSize() {
+            return content.length;
+        }
+    }
+
+    /**
+     * Pages larger than this fraction of the cache are not cached, so that they cannot evict the whole cache.
+     */
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    @Inject(optional = true)
+    @RenderedPageCacheTimeoutSec
+    private long timeoutSec = 15 * 60;
+
+    @Inject(optional = true)
+    @RenderedPageCacheMaxBytes
+    private long maxBytes = 32 * 1024 * 1024;
+
+    @Inject(optional = true)
+    @RenderedPageCacheCompressed
+    private boolean compressed;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * Parses the {@code max-age} of a {@code Cache-Control} header.
+     *
+     * @return The {@code max-age} in seconds, {@code 0} if the response must not be cached or {@code -1} if it is not
+     *         specified.
+     */
+    static long getMaxAgeSec(String cacheControl) {
+        if (cacheControl == null) {
+            return -1;
+        }
+
+        long maxAgeSec = -1;
+        for (String directive : cacheControl.split(",")) {
+            String trimmed = directive.trim().toLowerCase();
+            if (trimmed.equals("no-store") || trimmed.equals("no-cache") || trimmed.equals("private")) {
+                return 0;
+            }
+            if (trimmed.startsWith("max-age=")) {
+                try {
+                    maxAgeSec = Math.max(0, Long.parseLong(trimmed.substring(8).trim()));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return maxAgeSec;
+    }
+
+    boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    long getMaxEntryBytes() {
+        return maxBytes / MAX_ENTRY_FRACTION;
+    }
+
+    /**
+     * @return The cached page for {@code url}, fresh or not, or {@code null} if there is none.
+     */
+    Entry get(String url) {
+        synchronized (entries) {
+            return entries.get(url);
+        }
+    }
+
+    /**
+     * Caches a page rendered by the crawl service, replacing any previous version.
+     *
+     * @param maxAgeSec The {@code max-age} sent by the crawl service, see {@link #getMaxAgeSec(String)}.
+     */
+    void put(String url, byte[] content, String charset, String eTag, String lastModified, long maxAgeSec)
+            throws IOException {
+        byte[] storedContent = content;
+        boolean gzipped = false;
+        if (compressed) {
+            byte[] gzippedContent = gzip(content);
+            if (gzippedContent.length < content.length) {
+                storedContent = gzippedContent;
+                gzipped = true;
+            }
+        }
+
+        Entry entry = new Entry(storedContent, content.length, gzipped, charset, eTag, lastModified);
+        revalidate(entry, maxAgeSec);
+
+        synchronized (entries) {
+            Entry previous = entries.put(url, entry);
+            if (previous != null) {
+                size -= previous.getSize();
+            }
+            size += entry.getSize();
+
+            Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+            while (size > maxBytes && leastRecentlyUsed.hasNext()) {
+                size -= leastRecentlyUsed.next().getSize();
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+
+    /**
+     * Makes a cached page fresh again, once the crawl service confirmed it did not change.
+     */
+    void revalidate(Entry entry, long maxAgeSec) {
+        long ttlSec = maxAgeSec < 0 ? timeoutSec : Math.min(maxAgeSec, timeoutSec);
+        entry.expiresAtMillis = System.currentTimeMillis() + ttlSec * 1000;
+    }
+
+    private byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream(content.length / 4);
+        GZIPOutputStream out = new GZIPOutputStream(gzipped);
+        out.write(content);
+        out.close();
+
+        return gzipped.toByteArray();
+    }
+}
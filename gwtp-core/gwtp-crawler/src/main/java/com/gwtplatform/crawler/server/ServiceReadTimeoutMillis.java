@@ -0,0 +1,40 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import com.google.inject.BindingAnnotation;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Use this annotation to bind how long {@link HttpCrawlServiceClient} waits for the crawl service to answer, at most.
+ * It should be longer than the time the crawl service may spend on a request: its render timeout plus the time it holds
+ * requests for pages being rendered, 20 seconds by default. {@link CrawlFilter} waits for less when its
+ * {@link ServiceDeadlineMillis} is closer. Defaults to 30 seconds. Use in your {@link com.google.inject.AbstractModule}
+ * with a call to {@code bindConstant().annotatedWith(ServiceReadTimeoutMillis.class).to(30000)}.
+ */
+@BindingAnnotation
+@Target({FIELD, PARAMETER, METHOD})
+@Retention(RUNTIME)
+public @interface ServiceReadTimeoutMillis {
+}
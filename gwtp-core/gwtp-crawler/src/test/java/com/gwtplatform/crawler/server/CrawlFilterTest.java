@@ -0,0 +1,368 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link CrawlFilter} reads the answers of the crawl service and retries pages being rendered.
+ */
+public class CrawlFilterTest {
+    private static final String FETCH_IN_PROGRESS = "FETCH_IN_PROGRESS";
+    private static final String PAGE = "<html><body>Rendered</body></html>";
+
+    /**
+     * Returns at most one byte per read, like a response arriving in small packets.
+     */
+    static class TricklingInputStream extends ByteArrayInputStream {
+        TricklingInputStream(String content) {
+            super(content.getBytes());
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(1, length));
+        }
+    }
+
+    static class FakeResponse implements CrawlServiceClient.Response {
+        private final String body;
+
+        FakeResponse(String body) {
+            this.body = body;
+        }
+
+        @Override
+        public int getStatus() {
+            return 200;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new TricklingInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Answers with the queued responses or exceptions, in order.
+     */
+    static class FakeCrawlServiceClient implements CrawlServiceClient {
+        final LinkedList<Object> answers = new LinkedList<Object>();
+        final List<Integer> timeouts = new ArrayList<Integer>();
+
+        @Override
+        public Response execute(String serviceRequest, Map<String, String> requestHeaders, int timeoutMillis)
+                throws IOException {
+            timeouts.add(timeoutMillis);
+            Object answer = answers.removeFirst();
+            if (answer instanceof IOException) {
+                throw (IOException) answer;
+            }
+            return (Response) answer;
+        }
+    }
+
+    class RecordingResponseHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("setHeader".equals(name) || "addHeader".equals(name)) {
+                headers.put((String) args[0], (String) args[1]);
+            } else if ("sendError".equals(name) || "setStatus".equals(name)) {
+                status = (Integer) args[0];
+            } else if ("getOutputStream".equals(name)) {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        output.write(b);
+                    }
+                };
+            } else if ("isCommitted".equals(name)) {
+                return false;
+            } else if (!"setContentLength".equals(name)) {
+                throw new UnsupportedOperationException(name);
+            }
+            return null;
+        }
+    }
+
+    static class CrawlerRequestHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("getQueryString".equals(name)) {
+                return "_escaped_fragment_=home";
+            }
+            if ("getRequestURI".equals(name)) {
+                return "/";
+            }
+            if ("getScheme".equals(name)) {
+                return "http";
+            }
+            if ("getServerName".equals(name)) {
+                return "example.com";
+            }
+            if ("getServerPort".equals(name)) {
+                return 8080;
+            }
+            if ("getHeader".equals(name)) {
+                return null;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    private final FakeCrawlServiceClient client = new FakeCrawlServiceClient();
+    private final Map<String, String> headers = new HashMap<String, String>();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private int status = 200;
+    private boolean chained;
+
+    @Before
+    public void setUp() {
+        headers.clear();
+        output.reset();
+        status = 200;
+        chained = false;
+    }
+
+    @Test
+    public void readAtLeastWaitsForTheMinimum() throws Exception {
+        // Given
+        byte[] buffer = new byte[64];
+
+        // When
+        int count = CrawlFilter.readAtLeast(new TricklingInputStream(PAGE), buffer, 18);
+
+        // Then
+        assertEquals(18, count);
+        assertEquals(PAGE.substring(0, 18), new String(buffer, 0, count));
+    }
+
+    @Test
+    public void readAtLeastKeepsWhatIsAlreadyAvailable() throws Exception {
+        // Given
+        byte[] buffer = new byte[64];
+
+        // When
+        int count = CrawlFilter.readAtLeast(new ByteArrayInputStream(PAGE.getBytes()), buffer, 18);
+
+        // Then
+        assertEquals(PAGE.length(), count);
+    }
+
+    @Test
+    public void readAtLeastStopsAtTheEndOfAShortStream() throws Exception {
+        // When
+        int count = CrawlFilter.readAtLeast(new TricklingInputStream("short"), new byte[64], 18);
+
+        // Then
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void readAtLeastReturnsMinusOneForAnEmptyStream() throws Exception {
+        // When
+        int count = CrawlFilter.readAtLeast(new TricklingInputStream(""), new byte[64], 18);
+
+        // Then
+        assertEquals(-1, count);
+    }
+
+    @Test
+    public void markerAloneIsFetchInProgress() {
+        assertTrue(isFetchInProgress(FETCH_IN_PROGRESS));
+        assertTrue(isFetchInProgress(FETCH_IN_PROGRESS + "\n"));
+        assertTrue(isFetchInProgress(FETCH_IN_PROGRESS + "\r\n"));
+    }
+
+    @Test
+    public void pageStartingWithTheMarkerIsNotFetchInProgress() {
+        assertFalse(isFetchInProgress(FETCH_IN_PROGRESS + "_DONE"));
+        assertFalse(isFetchInProgress(FETCH_IN_PROGRESS + " is a page"));
+    }
+
+    @Test
+    public void truncatedOrOtherContentIsNotFetchInProgress() {
+        assertFalse(isFetchInProgress("FETCH_IN_PROG"));
+        assertFalse(isFetchInProgress(PAGE));
+        assertFalse(CrawlFilter.isFetchInProgress(new byte[64], -1));
+    }
+
+    @Test
+    public void pageIsWrittenOnceRendered() throws Exception {
+        // Given
+        client.answers.add(new FakeResponse(FETCH_IN_PROGRESS + "\n"));
+        client.answers.add(new FakeResponse(PAGE));
+
+        // When
+        doFilter(createFilter(null));
+
+        // Then
+        assertEquals(2, client.timeouts.size());
+        assertEquals(200, status);
+        assertEquals(PAGE, output.toString());
+    }
+
+    @Test
+    public void attemptsWaitForTheRemainingTime() throws Exception {
+        // Given
+        client.answers.add(new FakeResponse(FETCH_IN_PROGRESS));
+        client.answers.add(new FakeResponse(PAGE));
+
+        // When
+        doFilter(createFilter(10000));
+
+        // Then
+        assertTrue(client.timeouts.get(0) <= 10000);
+        assertTrue(client.timeouts.get(1) <= 10000 - 500);
+    }
+
+    @Test
+    public void timedOutRequestIsNotRetried() throws Exception {
+        // Given
+        client.answers.add(new SocketTimeoutException());
+
+        // When
+        doFilter(createFilter(null));
+
+        // Then
+        assertEquals(1, client.timeouts.size());
+        assertEquals(503, status);
+        assertEquals("30", headers.get("Retry-After"));
+    }
+
+    @Test
+    public void pageStillRenderingAfterTheLastAttemptIsUnavailable() throws Exception {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            client.answers.add(new FakeResponse(FETCH_IN_PROGRESS));
+        }
+
+        // When
+        doFilter(createFilter(null));
+
+        // Then
+        assertEquals(3, client.timeouts.size());
+        assertEquals(503, status);
+        assertEquals(0, output.size());
+    }
+
+    @Test
+    public void retriesStopAtTheDeadline() throws Exception {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            client.answers.add(new FakeResponse(FETCH_IN_PROGRESS));
+        }
+
+        // When
+        doFilter(createFilter(1000));
+
+        // Then
+        assertEquals(2, client.timeouts.size());
+        assertEquals(503, status);
+    }
+
+    @Test
+    public void unavailableServiceServesThePageUnrendered() throws Exception {
+        // Given
+        client.answers.add(new CrawlServiceUnavailableException("busy"));
+
+        // When
+        doFilter(createFilter(null));
+
+        // Then
+        assertTrue(chained);
+        assertNull(headers.get("Retry-After"));
+    }
+
+    private boolean isFetchInProgress(String content) {
+        byte[] bytes = content.getBytes();
+        return CrawlFilter.isFetchInProgress(bytes, bytes.length);
+    }
+
+    private CrawlFilter createFilter(final Integer deadlineMillis) {
+        return Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bindConstant().annotatedWith(ServiceUrl.class).to("http://crawl.example.com/");
+                bindConstant().annotatedWith(ServiceKey.class).to("key");
+                if (deadlineMillis != null) {
+                    bindConstant().annotatedWith(ServiceDeadlineMillis.class).to(deadlineMillis);
+                }
+                bind(CrawlServiceClient.class).toInstance(client);
+            }
+        }).getInstance(CrawlFilter.class);
+    }
+
+    private void doFilter(CrawlFilter filter) throws Exception {
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new CrawlerRequestHandler());
+        HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, new RecordingResponseHandler());
+        filter.doFilter(request, response, new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                chained = true;
+            }
+        });
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests how {@link HttpCrawlServiceClient} stops sending requests to an unhealthy crawl service.
+ */
+public class HttpCrawlServiceClientTest {
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long RETRY_DELAY_MILLIS = 50;
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    private final HttpCrawlServiceClient client = Guice.createInjector(new AbstractModule() {
+        @Override
+        protected void configure() {
+            bindConstant().annotatedWith(ServiceRetryDelayMillis.class).to(RETRY_DELAY_MILLIS);
+        }
+    }).getInstance(HttpCrawlServiceClient.class);
+
+    @Test
+    public void requestsAreAllowedBelowTheThreshold() {
+        // When
+        recordFailures(FAILURE_THRESHOLD - 1);
+
+        // Then
+        assertTrue(client.allowRequest());
+    }
+
+    @Test
+    public void requestsAreRejectedAtTheThreshold() {
+        // When
+        recordFailures(FAILURE_THRESHOLD);
+
+        // Then
+        assertFalse(client.allowRequest());
+    }
+
+    @Test
+    public void successResetsTheFailures() {
+        // Given
+        recordFailures(FAILURE_THRESHOLD - 1);
+
+        // When
+        client.recordSuccess();
+        recordFailures(FAILURE_THRESHOLD - 1);
+
+        // Then
+        assertTrue(client.allowRequest());
+    }
+
+    @Test
+    public void singleTrialIsAllowedAfterTheRetryDelay() throws Exception {
+        // Given
+        recordFailures(FAILURE_THRESHOLD);
+
+        // When
+        Thread.sleep(RETRY_DELAY_MILLIS * 2);
+
+        // Then
+        assertTrue(client.allowRequest());
+        assertFalse(client.allowRequest());
+    }
+
+    @Test
+    public void successfulTrialAllowsRequestsAgain() throws Exception {
+        // Given
+        recordFailures(FAILURE_THRESHOLD);
+        Thread.sleep(RETRY_DELAY_MILLIS * 2);
+        client.allowRequest();
+
+        // When
+        client.recordSuccess();
+
+        // Then
+        assertTrue(client.allowRequest());
+        assertTrue(client.allowRequest());
+    }
+
+    @Test
+    public void failedTrialRejectsRequestsForAnotherRetryDelay() throws Exception {
+        // Given
+        recordFailures(FAILURE_THRESHOLD);
+        Thread.sleep(RETRY_DELAY_MILLIS * 2);
+        client.allowRequest();
+
+        // When
+        client.recordFailure();
+
+        // Then
+        assertFalse(client.allowRequest());
+        Thread.sleep(RETRY_DELAY_MILLIS * 2);
+        assertTrue(client.allowRequest());
+    }
+
+    @Test
+    public void timedOutTrialLetsAnotherRequestThrough() throws Exception {
+        // Given
+        recordFailures(FAILURE_THRESHOLD);
+        Thread.sleep(RETRY_DELAY_MILLIS * 2);
+        client.allowRequest();
+
+        // When
+        client.recordTimeout();
+
+        // Then
+        assertTrue(client.allowRequest());
+        assertFalse(client.allowRequest());
+    }
+
+    @Test
+    public void timeoutsDoNotCountAsFailures() {
+        // Given
+        recordFailures(FAILURE_THRESHOLD - 1);
+
+        // When
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            client.recordTimeout();
+        }
+
+        // Then
+        assertTrue(client.allowRequest());
+        client.recordFailure();
+        assertFalse(client.allowRequest());
+    }
+
+    @Test
+    public void refusedConnectionsMakeTheServiceUnavailable() throws Exception {
+        // Given
+        ServerSocket closedServer = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        String serviceRequest = new URL("http", "127.0.0.1", closedServer.getLocalPort(), "/").toString();
+        closedServer.close();
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            try {
+                client.execute(serviceRequest, NO_HEADERS, 1000);
+                fail("The connection should have been refused");
+            } catch (CrawlServiceUnavailableException e) {
+                fail("The crawl service should have been called");
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+
+        try {
+            // When
+            client.execute(serviceRequest, NO_HEADERS, 1000);
+            fail("The request should have been rejected");
+        } catch (CrawlServiceUnavailableException e) {
+            // Then
+        }
+    }
+
+    @Test
+    public void timedOutRequestsDoNotMakeTheServiceUnavailable() throws Exception {
+        // Given
+        ServerSocket silentServer = new ServerSocket(0, FAILURE_THRESHOLD + 1, InetAddress.getByName("127.0.0.1"));
+        String serviceRequest = new URL("http", "127.0.0.1", silentServer.getLocalPort(), "/").toString();
+        try {
+            for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+                try {
+                    client.execute(serviceRequest, NO_HEADERS, 100);
+                    fail("The request should have timed out");
+                } catch (SocketTimeoutException e) {
+                    // Expected
+                }
+            }
+
+            // When
+            boolean allowed = client.allowRequest();
+
+            // Then
+            assertTrue(allowed);
+        } finally {
+            silentServer.close();
+        }
+    }
+
+    @Test
+    public void requestsPastTheMaximumAreRejected() throws Exception {
+        // Given
+        client.setMaxConnections(0);
+
+        try {
+            // When
+            client.execute("http://127.0.0.1/", NO_HEADERS, 1000);
+            fail("The request should have been rejected");
+        } catch (CrawlServiceUnavailableException e) {
+            // Then
+            assertTrue(client.allowRequest());
+        }
+    }
+
+    private void recordFailures(int count) {
+        for (int i = 0; i < count; i++) {
+            client.recordFailure();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the byte accounting, compression and expiration of the pages kept by {@link RenderedPageCache}.
+ */
+public class RenderedPageCacheTest {
+    private static final int MAX_BYTES = 800;
+    private static final int PAGE_BYTES = MAX_BYTES / 8;
+
+    class RecordingResponseHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("setHeader".equals(name) || "addHeader".equals(name)) {
+                headers.put((String) args[0], (String) args[1]);
+            } else if ("setContentLength".equals(name)) {
+                contentLength = (Integer) args[0];
+            } else if ("getOutputStream".equals(name)) {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        output.write(b);
+                    }
+                };
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+            return null;
+        }
+    }
+
+    private final Map<String, String> headers = new HashMap<String, String>();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private int contentLength = -1;
+
+    @Before
+    public void setUp() {
+        headers.clear();
+        output.reset();
+        contentLength = -1;
+    }
+
+    @Test
+    public void pagesUpToTheMaximumAreKept() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(false);
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            cache.put("page" + i, randomBytes(PAGE_BYTES), "UTF-8", null, null, -1);
+        }
+
+        // Then
+        for (int i = 0; i < 8; i++) {
+            assertNotNull(cache.get("page" + i));
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedPageIsEvicted() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(false);
+        for (int i = 0; i < 8; i++) {
+            cache.put("page" + i, randomBytes(PAGE_BYTES), "UTF-8", null, null, -1);
+        }
+        cache.get("page0");
+
+        // When
+        cache.put("page8", randomBytes(PAGE_BYTES), "UTF-8", null, null, -1);
+
+        // Then
+        assertNotNull(cache.get("page0"));
+        assertNull(cache.get("page1"));
+        assertNotNull(cache.get("page2"));
+        assertNotNull(cache.get("page8"));
+    }
+
+    @Test
+    public void largePageEvictsAsManyPagesAsNeeded() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(false);
+        for (int i = 0; i < 8; i++) {
+            cache.put("page" + i, randomBytes(PAGE_BYTES), "UTF-8", null, null, -1);
+        }
+
+        // When
+        cache.put("large", randomBytes(PAGE_BYTES * 3), "UTF-8", null, null, -1);
+
+        // Then
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.get("page" + i));
+        }
+        for (int i = 3; i < 8; i++) {
+            assertNotNull(cache.get("page" + i));
+        }
+        assertNotNull(cache.get("large"));
+    }
+
+    @Test
+    public void replacedPageIsOnlyAccountedOnce() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(false);
+        for (int i = 0; i < 20; i++) {
+            cache.put("page0", randomBytes(PAGE_BYTES), "UTF-8", null, null, -1);
+        }
+
+        // When
+        for (int i = 1; i < 8; i++) {
+            cache.put("page" + i, randomBytes(PAGE_BYTES), "UTF-8", null, null, -1);
+        }
+
+        // Then
+        for (int i = 0; i < 8; i++) {
+            assertNotNull(cache.get("page" + i));
+        }
+    }
+
+    @Test
+    public void gzippedPagesAreAccountedForTheirCompressedSize() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(true);
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            cache.put("page" + i, new byte[MAX_BYTES], "UTF-8", null, null, -1);
+        }
+
+        // Then
+        for (int i = 0; i < 8; i++) {
+            assertNotNull(cache.get("page" + i));
+        }
+    }
+
+    @Test
+    public void gzippedPageIsSentAsIsToClientsAcceptingGzip() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(true);
+        byte[] content = compressibleBytes();
+        cache.put("page", content, "UTF-8", null, null, -1);
+
+        // When
+        cache.get("page").writeTo(createResponse(), true, new byte[64]);
+
+        // Then
+        assertEquals("gzip", headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", headers.get("Vary"));
+        assertEquals(output.size(), contentLength);
+        assertTrue(output.size() < content.length);
+        assertArrayEquals(content, gunzip(output.toByteArray()));
+    }
+
+    @Test
+    public void gzippedPageIsDecompressedForOtherClients() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(true);
+        byte[] content = compressibleBytes();
+        cache.put("page", content, "UTF-8", null, null, -1);
+
+        // When
+        cache.get("page").writeTo(createResponse(), false, new byte[64]);
+
+        // Then
+        assertNull(headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", headers.get("Vary"));
+        assertEquals(content.length, contentLength);
+        assertArrayEquals(content, output.toByteArray());
+    }
+
+    @Test
+    public void incompressiblePageIsStoredUncompressed() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(true);
+        byte[] content = randomBytes(PAGE_BYTES);
+        cache.put("page", content, "UTF-8", null, null, -1);
+
+        // When
+        cache.get("page").writeTo(createResponse(), true, new byte[64]);
+
+        // Then
+        assertNull(headers.get("Content-Encoding"));
+        assertNull(headers.get("Vary"));
+        assertArrayEquals(content, output.toByteArray());
+    }
+
+    @Test
+    public void pageIsFreshUntilItsMaxAge() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(false);
+
+        // When
+        cache.put("fresh", randomBytes(PAGE_BYTES), "UTF-8", null, null, 60);
+        cache.put("expired", randomBytes(PAGE_BYTES), "UTF-8", null, null, 0);
+
+        // Then
+        assertTrue(cache.get("fresh").isFresh());
+        assertFalse(cache.get("expired").isFresh());
+    }
+
+    @Test
+    public void revalidatedPageIsFreshAgain() throws Exception {
+        // Given
+        RenderedPageCache cache = createCache(false);
+        cache.put("page", randomBytes(PAGE_BYTES), "UTF-8", "\"1\"", null, 0);
+
+        // When
+        cache.revalidate(cache.get("page"), -1);
+
+        // Then
+        assertTrue(cache.get("page").isFresh());
+        assertEquals("\"1\"", cache.get("page").getETag());
+    }
+
+    @Test
+    public void missingMaxAgeIsUnspecified() {
+        assertEquals(-1, RenderedPageCache.getMaxAgeSec(null));
+        assertEquals(-1, RenderedPageCache.getMaxAgeSec("public"));
+    }
+
+    @Test
+    public void maxAgeIsParsed() {
+        assertEquals(60, RenderedPageCache.getMaxAgeSec("max-age=60"));
+        assertEquals(60, RenderedPageCache.getMaxAgeSec("public, MAX-AGE=60"));
+        assertEquals(60, RenderedPageCache.getMaxAgeSec(" max-age=60 , must-revalidate"));
+    }
+
+    @Test
+    public void uncacheableResponsesHaveNoMaxAge() {
+        assertEquals(0, RenderedPageCache.getMaxAgeSec("no-store"));
+        assertEquals(0, RenderedPageCache.getMaxAgeSec("max-age=60, no-cache"));
+        assertEquals(0, RenderedPageCache.getMaxAgeSec("private, max-age=60"));
+    }
+
+    @Test
+    public void invalidMaxAgeIsNotCached() {
+        assertEquals(0, RenderedPageCache.getMaxAgeSec("max-age=soon"));
+        assertEquals(0, RenderedPageCache.getMaxAgeSec("max-age=-5"));
+    }
+
+    private RenderedPageCache createCache(final boolean compressed) {
+        return Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bindConstant().annotatedWith(RenderedPageCacheMaxBytes.class).to((long) MAX_BYTES);
+                bindConstant().annotatedWith(RenderedPageCacheCompressed.class).to(compressed);
+            }
+        }).getInstance(RenderedPageCache.class);
+    }
+
+    private HttpServletResponse createResponse() {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, new RecordingResponseHandler());
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private byte[] compressibleBytes() {
+        byte[] bytes = new byte[PAGE_BYTES * 4];
+        Arrays.fill(bytes, (byte) 'a');
+        return bytes;
+    }
+
+    private byte[] gunzip(byte[] gzipped) throws Exception {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
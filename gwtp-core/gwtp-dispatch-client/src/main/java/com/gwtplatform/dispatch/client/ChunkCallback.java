@@ -0,0 +1,46 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client;
+
+import java.util.List;
+
+/**
+ * Receives the chunks of a {@link com.gwtplatform.dispatch.shared.ChunkedResult ChunkedResult} executed through
+ * {@link ChunkedDispatch}.
+ *
+ * @param <T> The type of the items.
+ */
+public interface ChunkCallback<T> {
+    /**
+     * Called for every chunk, in order, as soon as it is received.
+     *
+     * @param items The items of the chunk.
+     */
+    void onChunk(List<T> items);
+
+    /**
+     * Called once after the last chunk.
+     */
+    void onComplete();
+
+    /**
+     * Called if the action or the fetch of a chunk fails. No other chunk will be delivered.
+     *
+     * @param caught The failure.
+     */
+    void onFailure(Throwable caught);
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client;
+
+import java.util.List;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.gwt.user.client.rpc.IsSerializable;
+import com.google.inject.Inject;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ChunkedResult;
+import com.gwtplatform.dispatch.shared.DispatchAsync;
+import com.gwtplatform.dispatch.shared.DispatchRequest;
+import com.gwtplatform.dispatch.shared.FetchChunkAction;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * Executes actions returning a {@link ChunkedResult} and delivers each chunk to a {@link ChunkCallback} as soon as it
+ * arrives. The next chunk is requested before the current one is handed to the callback, so the server prepares it
+ * while the client processes the previous one.
+ * <p/>
+ * Cancelling the returned {@link DispatchRequest} stops the delivery and releases the remaining chunks on the server.
+ */
+public class ChunkedDispatch {
+
+    private final DispatchAsync dispatcher;
+
+    @Inject
+    public ChunkedDispatch(DispatchAsync dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public <A extends Action<ChunkedResult<T>>, T extends IsSerializable> DispatchRequest execute(A action,
+            ChunkCallback<T> callback) {
+        ChunkedDispatchRequest<T> request = new ChunkedDispatchRequest<T>(action, callback);
+        request.send(action);
+        return request;
+    }
+
+    /**
+     * Tracks the chunk being fetched, so that the whole sequence can be cancelled. A dispatcher may complete a request
+     * before returning it, in which case the following chunk is already being fetched and tracked.
+     */
+    private class ChunkedDispatchRequest<T extends IsSerializable> implements DispatchRequest {
+        private final Action<?> action;
+        private final ChunkCallback<T> callback;
+        private DispatchRequest current;
+        private int sentCount;
+        private String cursor;
+        private boolean done;
+
+        ChunkedDispatchRequest(Action<?> action, ChunkCallback<T> callback) {
+            this.action = action;
+            this.callback = callback;
+        }
+
+        @Override
+        public void cancel() {
+            if (done) {
+                return;
+            }
+
+            done = true;
+            if (current != null) {
+                current.cancel();
+            }
+            if (cursor != null) {
+                dispatcher.execute(new FetchChunkAction(action, cursor, true), new AsyncCallback<ChunkedResult<?>>() {
+                    @Override
+                    public void onFailure(Throwable caught) {
+                        // The cursor will expire on the server
+                    }
+
+                    @Override
+                    public void onSuccess(ChunkedResult<?> result) {
+                    }
+                });
+            }
+        }
+
+        @Override
+        public boolean isPending() {
+            return !done;
+        }
+
+        <R extends Result> void send(Action<R> chunkAction) {
+            int sequence = ++sentCount;
+            DispatchRequest request = dispatcher.execute(chunkAction, this.<R>newChunkCallback());
+            if (!done && sequence == sentCount) {
+                current = request;
+            }
+        }
+
+        private <R> AsyncCallback<R> newChunkCallback() {
+            return new AsyncCallback<R>() {
+                @Override
+                public void onFailure(Throwable caught) {
+                    if (!done) {
+                        done = true;
+                        callback.onFailure(caught);
+                    }
+                }
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public void onSuccess(R result) {
+                    if (!done) {
+                        onChunk((ChunkedResult<T>) result);
+                    }
+                }
+            };
+        }
+
+        private void onChunk(ChunkedResult<T> result) {
+            List<T> items = result.getItems();
+            if (result.isLast()) {
+                cursor = null;
+                done = true;
+            } else {
+                cursor = result.getCursor();
+                send(new FetchChunkAction(action, cursor, false));
+            }
+
+            callback.onChunk(items);
+            if (result.isLast()) {
+                callback.onComplete();
+            }
+        }
+    }
+}
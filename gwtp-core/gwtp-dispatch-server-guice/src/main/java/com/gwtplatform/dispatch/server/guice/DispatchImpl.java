@@ -19,8 +19,12 @@ package com.gwtplatform.dispatch.server.guice;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import com.google.inject.Injector;
 import com.gwtplatform.dispatch.server.AbstractDispatchImpl;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptorLinkerHelper;
+import com.gwtplatform.dispatch.server.metrics.DispatchMetrics;
+import com.gwtplatform.dispatch.server.undojournal.UndoJournalFactory;
 
 /**
  * @author Philippe Beaudoin
@@ -32,4 +36,21 @@ public class DispatchImpl extends AbstractDispatchImpl {
     public DispatchImpl(ActionHandlerValidatorRegistry actionHandlerValidatorRegistry) {
         super(actionHandlerValidatorRegistry);
     }
+
+    @Inject
+    void linkActionInterceptors(Injector injector) {
+        ActionInterceptorLinkerHelper.linkInterceptors(new GuiceBeanProvider(injector), this);
+    }
+
+    @Override
+    @com.google.inject.Inject(optional = true)
+    public void setDispatchMetrics(DispatchMetrics dispatchMetrics) {
+        super.setDispatchMetrics(dispatchMetrics);
+    }
+
+    @Override
+    @com.google.inject.Inject(optional = true)
+    public void setUndoJournalFactory(UndoJournalFactory undoJournalFactory) {
+        super.setUndoJournalFactory(undoJournalFactory);
+    }
 }
@@ -18,13 +18,25 @@ package com.gwtplatform.dispatch.server.guice;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Singleton;
+import com.google.inject.internal.UniqueAnnotations;
 import com.gwtplatform.dispatch.server.Dispatch;
 import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.server.actionhandler.ChunkedResultCursors;
+import com.gwtplatform.dispatch.server.actionhandler.FetchChunkActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorClass;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorMap;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorMapImpl;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.LazyActionHandlerValidatorRegistry;
 import com.gwtplatform.dispatch.server.guice.actionhandlervalidator.ActionHandlerValidatorLinker;
+import com.gwtplatform.dispatch.server.guice.actionhandlervalidator.ActionHandlerValidatorWarmUp;
 import com.gwtplatform.dispatch.server.guice.actionhandlervalidator.LazyActionHandlerValidatorRegistryImpl;
+import com.gwtplatform.dispatch.server.guice.actionvalidator.DefaultActionValidator;
+import com.gwtplatform.dispatch.server.guice.metrics.DispatchMetricsExporter;
 import com.gwtplatform.dispatch.server.guice.request.DefaultRequestProvider;
+import com.gwtplatform.dispatch.server.metrics.DispatchMetrics;
+import com.gwtplatform.dispatch.shared.ChunkedResult;
+import com.gwtplatform.dispatch.shared.FetchChunkAction;
 
 /**
  * This module will configure the implementation for the {@link Dispatch} and
@@ -45,6 +57,9 @@ public class DispatchModule extends AbstractModule {
     private Class<? extends Dispatch> dispatchClass;
     private Class<? extends ActionHandlerValidatorRegistry> actionHandlerValidatorRegistryClass;
     private Class<? extends RequestProvider> requestProviderClass;
+    private boolean warmUpHandlers;
+    private Class<? extends DispatchMetrics> dispatchMetricsClass;
+    private boolean chunkedResults;
 
     /**
      * A DispatchModule builder.
@@ -56,6 +71,9 @@ public class DispatchModule extends AbstractModule {
         private Class<? extends ActionHandlerValidatorRegistry> actionHandlerValidatorRegistryClass =
                 LazyActionHandlerValidatorRegistryImpl.class;
         private Class<? extends RequestProvider> requestProviderClass = DefaultRequestProvider.class;
+        private boolean warmUpHandlers;
+        private Class<? extends DispatchMetrics> dispatchMetricsClass;
+        private boolean chunkedResults;
 
         public Builder() {
         }
@@ -77,6 +95,45 @@ public class DispatchModule extends AbstractModule {
             return this;
         }
 
+        /**
+         * When using a lazy registry, creates every registered handler and validator in a background thread as soon
+         * as the {@link DispatchServiceImpl} servlet is initialized instead of on their first use.
+         *
+         * @param warmUpHandlers {@code true} to warm up the handlers, {@code false} otherwise (the default).
+         * @return This builder.
+         */
+        public Builder warmUpHandlers(boolean warmUpHandlers) {
+            this.warmUpHandlers = warmUpHandlers;
+            return this;
+        }
+
+        /**
+         * Records metrics for every executed action. If the metrics class is, or extends,
+         * {@link com.gwtplatform.dispatch.server.metrics.DefaultDispatchMetrics DefaultDispatchMetrics}, it is also
+         * registered in the platform MBean server until the {@link DispatchServiceImpl} servlet is destroyed.
+         *
+         * @param dispatchMetricsClass The {@link DispatchMetrics} implementation, bound as a singleton.
+         * @return This builder.
+         */
+        public Builder dispatchMetrics(Class<? extends DispatchMetrics> dispatchMetricsClass) {
+            this.dispatchMetricsClass = dispatchMetricsClass;
+            return this;
+        }
+
+        /**
+         * Binds the {@link ChunkedResultCursors} needed by
+         * {@link com.gwtplatform.dispatch.server.actionhandler.AbstractChunkedActionHandler AbstractChunkedActionHandler}s
+         * and registers the handler of {@link FetchChunkAction}, which serves their next chunks. Fetching a chunk is a
+         * secured action, so a {@link com.gwtplatform.dispatch.shared.SecurityCookie SecurityCookie} must be bound.
+         *
+         * @param chunkedResults {@code true} to support chunked results, {@code false} otherwise (the default).
+         * @return This builder.
+         */
+        public Builder chunkedResults(boolean chunkedResults) {
+            this.chunkedResults = chunkedResults;
+            return this;
+        }
+
         public DispatchModule build() {
             return new DispatchModule(this);
         }
@@ -90,6 +147,9 @@ public class DispatchModule extends AbstractModule {
         this.dispatchClass = builder.dispatchClass;
         this.actionHandlerValidatorRegistryClass = builder.actionHandlerValidatorRegistryClass;
         this.requestProviderClass = builder.requestProviderClass;
+        this.warmUpHandlers = builder.warmUpHandlers;
+        this.dispatchMetricsClass = builder.dispatchMetricsClass;
+        this.chunkedResults = builder.chunkedResults;
     }
 
     @Deprecated
@@ -133,10 +193,64 @@ public class DispatchModule extends AbstractModule {
         bind(Dispatch.class).to(dispatchClass).in(Singleton.class);
         bind(RequestProvider.class).to(requestProviderClass).in(Singleton.class);
 
+        if (chunkedResults) {
+            bindChunkedResults();
+        }
+
+        if (dispatchMetricsClass != null) {
+            bind(DispatchMetrics.class).to(dispatchMetricsClass).in(Singleton.class);
+            bindMetricsExporter();
+        }
+
         // This will bind registered validators and handlers to the registry lazily.
         if (LazyActionHandlerValidatorRegistry.class.isAssignableFrom(actionHandlerValidatorRegistryClass)) {
             requestStaticInjection(ActionHandlerValidatorLinker.class);
+
+            // The servlet is initialized once the injector is created, so the registry is linked by then.
+            if (warmUpHandlers) {
+                bindWarmUp();
+            }
+        }
+    }
+
+    private void bindMetricsExporter() {
+        try {
+            bind(DispatchMetricsExporter.class).toConstructor(
+                    DispatchMetricsExporter.class.getConstructor(DispatchMetrics.class)).asEagerSingleton();
+        } catch (NoSuchMethodException e) {
+            addError(e);
+        }
+    }
+
+    private void bindWarmUp() {
+        try {
+            bind(ActionHandlerValidatorWarmUp.class).toConstructor(
+                    ActionHandlerValidatorWarmUp.class.getConstructor(ActionHandlerValidatorRegistry.class)).in(
+                    Singleton.class);
+        } catch (NoSuchMethodException e) {
+            addError(e);
         }
     }
 
+    /**
+     * Binds the {@link ChunkedResultCursors} shared by every
+     * {@link com.gwtplatform.dispatch.server.actionhandler.AbstractChunkedActionHandler AbstractChunkedActionHandler}
+     * and registers the handler serving their next chunks.
+     */
+    private void bindChunkedResults() {
+        try {
+            bind(ChunkedResultCursors.class).toConstructor(ChunkedResultCursors.class.getConstructor(
+                    ActionHandlerValidatorRegistry.class, RequestProvider.class)).in(Singleton.class);
+            bind(FetchChunkActionHandler.class).toConstructor(
+                    FetchChunkActionHandler.class.getConstructor(ChunkedResultCursors.class));
+        } catch (NoSuchMethodException e) {
+            addError(e);
+        }
+
+        bind(ActionHandlerValidatorMap.class).annotatedWith(UniqueAnnotations.create()).toInstance(
+                new ActionHandlerValidatorMapImpl<FetchChunkAction, ChunkedResult<?>>(FetchChunkAction.class,
+                        new ActionHandlerValidatorClass<FetchChunkAction, ChunkedResult<?>>(
+                                FetchChunkActionHandler.class, DefaultActionValidator.class)));
+    }
+
 }
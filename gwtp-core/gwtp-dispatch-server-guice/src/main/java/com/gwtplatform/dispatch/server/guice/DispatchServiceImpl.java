@@ -19,11 +19,16 @@ package com.gwtplatform.dispatch.server.guice;
 import java.util.logging.Logger;
 
 import javax.inject.Singleton;
+import javax.servlet.ServletException;
 
 import com.google.inject.Inject;
 import com.gwtplatform.dispatch.server.AbstractDispatchServiceImpl;
 import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.DispatchExceptionPolicy;
 import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.server.ResponseCompressionPolicy;
+import com.gwtplatform.dispatch.server.guice.actionhandlervalidator.ActionHandlerValidatorWarmUp;
+import com.gwtplatform.dispatch.server.guice.metrics.DispatchMetricsExporter;
 import com.gwtplatform.dispatch.shared.SecurityCookie;
 
 /**
@@ -53,13 +58,62 @@ public class DispatchServiceImpl extends AbstractDispatchServiceImpl {
     @SecurityCookie
     protected String securityCookieName;
 
+    private ActionHandlerValidatorWarmUp warmUp;
+    private DispatchMetricsExporter metricsExporter;
+
     @Inject
     public DispatchServiceImpl(final Logger logger, final Dispatch dispatch, RequestProvider requestProvider) {
         super(logger, dispatch, requestProvider);
     }
 
+    /**
+     * Starts warming up the handlers, if requested with {@link DispatchModule.Builder#warmUpHandlers(boolean)}.
+     */
+    @Override
+    public void init() throws ServletException {
+        super.init();
+
+        if (warmUp != null) {
+            warmUp.start();
+        }
+    }
+
+    /**
+     * Unregisters the dispatch metrics MBean, if requested with {@link DispatchModule.Builder#dispatchMetrics(Class)}.
+     */
+    @Override
+    public void destroy() {
+        if (metricsExporter != null) {
+            metricsExporter.unregister();
+        }
+
+        super.destroy();
+    }
+
     @Override
     public String getSecurityCookieName() {
         return securityCookieName;
     }
+
+    @Override
+    @Inject(optional = true)
+    public void setExceptionPolicy(DispatchExceptionPolicy exceptionPolicy) {
+        super.setExceptionPolicy(exceptionPolicy);
+    }
+
+    @Inject(optional = true)
+    void setWarmUp(ActionHandlerValidatorWarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    @Inject(optional = true)
+    void setMetricsExporter(DispatchMetricsExporter metricsExporter) {
+        this.metricsExporter = metricsExporter;
+    }
+
+    @Override
+    @Inject(optional = true)
+    public void setCompressionPolicy(ResponseCompressionPolicy compressionPolicy) {
+        super.setCompressionPolicy(compressionPolicy);
+    }
 }
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice;
+
+import java.util.logging.Logger;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.DispatchExceptionPolicy;
+import com.gwtplatform.dispatch.server.transport.AbstractDispatchTransportServlet;
+import com.gwtplatform.dispatch.server.transport.DispatchCodec;
+import com.gwtplatform.dispatch.server.transport.DispatchTransportAuthenticator;
+
+/**
+ * The Guice implementation of {@link AbstractDispatchTransportServlet}. It is not bound by {@link DispatchModule}: to
+ * use it, bind a {@link DispatchCodec} and a {@link DispatchTransportAuthenticator}, then serve this servlet from your
+ * {@link com.google.inject.servlet.ServletModule ServletModule}:
+ * <p/>
+ * <pre>
+ * bind(DispatchCodec.class).toInstance(new SerializationDispatchCodec(MyAction.class, MyResult.class));
+ * bind(DispatchTransportAuthenticator.class).to(MyTransportAuthenticator.class);
+ * serve("/dispatch-transport").with(DispatchTransportServlet.class);
+ * </pre>
+ */
+@Singleton
+public class DispatchTransportServlet extends AbstractDispatchTransportServlet {
+
+    private static final long serialVersionUID = -6095338620227826521L;
+
+    @Inject
+    public DispatchTransportServlet(Logger logger, Dispatch dispatch, DispatchCodec codec,
+            DispatchTransportAuthenticator authenticator) {
+        super(logger, dispatch, codec, authenticator);
+    }
+
+    @Override
+    @Inject(optional = true)
+    public void setExceptionPolicy(DispatchExceptionPolicy exceptionPolicy) {
+        super.setExceptionPolicy(exceptionPolicy);
+    }
+}
@@ -17,11 +17,14 @@
 package com.gwtplatform.dispatch.server.guice;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Singleton;
 import com.google.inject.internal.UniqueAnnotations;
 import com.gwtplatform.dispatch.server.actionhandler.ActionHandler;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorClass;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorMap;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorMapImpl;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptor;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptorClass;
 import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
 import com.gwtplatform.dispatch.server.guice.actionvalidator.DefaultActionValidator;
 import com.gwtplatform.dispatch.shared.Action;
@@ -91,6 +94,18 @@ public abstract class HandlerModule extends AbstractModule {
                         new ActionHandlerValidatorClass<A, R>(handlerClass, actionValidator)));
     }
 
+    /**
+     * Registers an {@link ActionInterceptor} around the execution of every action. Interceptors are called in the
+     * order they are bound. The interceptor is bound as a singleton, so handlers can inject it.
+     *
+     * @param actionInterceptorClass Implementation of {@link ActionInterceptor} to bind
+     */
+    protected void bindActionInterceptor(Class<? extends ActionInterceptor> actionInterceptorClass) {
+        bind(actionInterceptorClass).in(Singleton.class);
+        bind(ActionInterceptorClass.class).annotatedWith(UniqueAnnotations.create()).toInstance(
+                new ActionInterceptorClass(actionInterceptorClass));
+    }
+
     @Override
     protected final void configure() {
         install(dispatchModule);
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice.actionhandlervalidator;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.gwtplatform.dispatch.server.actionhandlervalidator.AbstractLazyActionHandlerValidatorRegistryImpl;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
+
+/**
+ * Creates every lazily registered {@link com.gwtplatform.dispatch.server.actionhandler.ActionHandler ActionHandler}
+ * and {@link com.gwtplatform.dispatch.server.actionvalidator.ActionValidator ActionValidator} in a background thread,
+ * so that a node does not instantiate them under load. It is bound by
+ * {@link com.gwtplatform.dispatch.server.guice.DispatchModule DispatchModule} when requested with
+ * {@link com.gwtplatform.dispatch.server.guice.DispatchModule.Builder#warmUpHandlers(boolean)}, and started when the
+ * {@link com.gwtplatform.dispatch.server.guice.DispatchServiceImpl DispatchServiceImpl} servlet is initialized.
+ */
+public class ActionHandlerValidatorWarmUp {
+
+    private final ActionHandlerValidatorRegistry registry;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Not annotated with {@code @Inject}, so that it is only available when bound by the
+     * {@link com.gwtplatform.dispatch.server.guice.DispatchModule DispatchModule}.
+     */
+    public ActionHandlerValidatorWarmUp(ActionHandlerValidatorRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Starts warming up the registry, if it is lazy. Only the first call has an effect.
+     */
+    public void start() {
+        if (!(registry instanceof AbstractLazyActionHandlerValidatorRegistryImpl) || !started.compareAndSet(false,
+                true)) {
+            return;
+        }
+
+        final AbstractLazyActionHandlerValidatorRegistryImpl lazyRegistry =
+                (AbstractLazyActionHandlerValidatorRegistryImpl) registry;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lazyRegistry.warmUp();
+            }
+        }, "gwtp-action-handler-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
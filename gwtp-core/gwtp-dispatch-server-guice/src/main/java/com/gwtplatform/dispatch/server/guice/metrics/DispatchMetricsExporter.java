@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice.metrics;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+
+import com.gwtplatform.dispatch.server.metrics.DefaultDispatchMetrics;
+import com.gwtplatform.dispatch.server.metrics.DispatchMetrics;
+
+/**
+ * Registers the bound {@link DispatchMetrics} in the platform MBean server when it is a
+ * {@link DefaultDispatchMetrics}. It is bound as an eager singleton by
+ * {@link com.gwtplatform.dispatch.server.guice.DispatchModule DispatchModule} when requested with
+ * {@link com.gwtplatform.dispatch.server.guice.DispatchModule.Builder#dispatchMetrics(Class)}, and unregistered when
+ * the {@link com.gwtplatform.dispatch.server.guice.DispatchServiceImpl DispatchServiceImpl} servlet is destroyed, so
+ * that a redeployed application can register its own metrics.
+ */
+public class DispatchMetricsExporter {
+
+    private static final Logger logger = Logger.getLogger(DispatchMetricsExporter.class.getName());
+
+    private final AtomicReference<DefaultDispatchMetrics> registered = new AtomicReference<DefaultDispatchMetrics>();
+
+    /**
+     * Not annotated with {@code @Inject}, so that it is only available when bound by the
+     * {@link com.gwtplatform.dispatch.server.guice.DispatchModule DispatchModule}.
+     */
+    public DispatchMetricsExporter(DispatchMetrics dispatchMetrics) {
+        if (dispatchMetrics instanceof DefaultDispatchMetrics) {
+            DefaultDispatchMetrics defaultMetrics = (DefaultDispatchMetrics) dispatchMetrics;
+            try {
+                defaultMetrics.registerMBean();
+                registered.set(defaultMetrics);
+            } catch (JMException e) {
+                logger.log(Level.WARNING, "Unable to register the dispatch metrics MBean", e);
+            }
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if they were registered. Only the first call has an effect.
+     */
+    public void unregister() {
+        DefaultDispatchMetrics defaultMetrics = registered.getAndSet(null);
+        if (defaultMetrics == null) {
+            return;
+        }
+
+        try {
+            defaultMetrics.unregisterMBean();
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Unable to unregister the dispatch metrics MBean", e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the parsing of {@code Cookie} headers and the comparison of secrets by {@link SecurityCookieUtils}.
+ */
+public class SecurityCookieUtilsTest {
+    private static final String NAME = "token";
+
+    @Test
+    public void cookieWhoseNameStartsWithTheNameIsSkipped() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("tokenExtra=1; token=2", NAME);
+
+        // Then
+        assertEquals("2", value);
+    }
+
+    @Test
+    public void cookieWhoseNameEndsWithTheNameIsSkipped() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("xtoken=1; token=2", NAME);
+
+        // Then
+        assertEquals("2", value);
+    }
+
+    @Test
+    public void cookieWhoseValueContainsTheNameIsSkipped() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("other=token=1; token=2", NAME);
+
+        // Then
+        assertEquals("2", value);
+    }
+
+    @Test
+    public void quotesAreRemoved() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("other=1; token=\"abc\"", NAME);
+
+        // Then
+        assertEquals("abc", value);
+    }
+
+    @Test
+    public void singleQuoteIsKept() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("token=\"", NAME);
+
+        // Then
+        assertEquals("\"", value);
+    }
+
+    @Test
+    public void emptyValueIsFound() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("token=; other=1", NAME);
+
+        // Then
+        assertEquals("", value);
+    }
+
+    @Test
+    public void emptyQuotedValueIsFound() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("token=\"\"", NAME);
+
+        // Then
+        assertEquals("", value);
+    }
+
+    @Test
+    public void whitespaceAroundNamesAndValuesIsIgnored() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("  other=1 ;\ttoken = abc  ; last=2", NAME);
+
+        // Then
+        assertEquals("abc", value);
+    }
+
+    @Test
+    public void emptyAndTrailingSeparatorsAreIgnored() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue(";; ;token=abc;", NAME);
+
+        // Then
+        assertEquals("abc", value);
+    }
+
+    @Test
+    public void firstCookieWithTheNameIsFound() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("token=1; token=2", NAME);
+
+        // Then
+        assertEquals("1", value);
+    }
+
+    @Test
+    public void missingCookieIsNull() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("other=1; tokens=2; xtoken=3", NAME);
+
+        // Then
+        assertNull(value);
+    }
+
+    @Test
+    public void cookieWithoutValueIsMissing() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("token; other=1", NAME);
+
+        // Then
+        assertNull(value);
+    }
+
+    @Test
+    public void emptyHeaderHasNoCookie() {
+        // When
+        String value = SecurityCookieUtils.getCookieValue("", NAME);
+
+        // Then
+        assertNull(value);
+    }
+
+    @Test
+    public void equalStringsAreEqual() {
+        assertTrue(SecurityCookieUtils.constantTimeEquals("abc", "abc"));
+        assertTrue(SecurityCookieUtils.constantTimeEquals("", ""));
+    }
+
+    @Test
+    public void stringsDifferingByOneCharacterAreNotEqual() {
+        assertFalse(SecurityCookieUtils.constantTimeEquals("abc", "abd"));
+        assertFalse(SecurityCookieUtils.constantTimeEquals("abc", "xbc"));
+    }
+
+    @Test
+    public void stringsOfUnequalLengthsAreNotEqual() {
+        assertFalse(SecurityCookieUtils.constantTimeEquals("abc", "abcd"));
+        assertFalse(SecurityCookieUtils.constantTimeEquals("abcd", "abc"));
+        assertFalse(SecurityCookieUtils.constantTimeEquals("abc", ""));
+    }
+
+    @Test
+    public void nullIsNeverEqual() {
+        assertFalse(SecurityCookieUtils.constantTimeEquals(null, "abc"));
+        assertFalse(SecurityCookieUtils.constantTimeEquals("abc", null));
+        assertFalse(SecurityCookieUtils.constantTimeEquals(null, null));
+    }
+}
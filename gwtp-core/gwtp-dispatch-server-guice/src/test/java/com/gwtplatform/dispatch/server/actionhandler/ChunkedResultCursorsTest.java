@@ -0,0 +1,181 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.AbstractEagerActionHandlerValidatorRegistryImpl;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
+import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.ChunkedResult;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the access to the chunked results kept by {@link ChunkedResultCursors}.
+ */
+public class ChunkedResultCursorsTest {
+    static class SwitchableActionValidator implements ActionValidator {
+        volatile boolean valid = true;
+
+        @Override
+        public boolean isValid(Action<? extends Result> action) {
+            return valid;
+        }
+    }
+
+    /**
+     * Answers the session and user requests of {@link HttpServletRequest} and {@link HttpSession} proxies.
+     */
+    class ClientRequestHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("getSession".equals(method.getName())) {
+                return sessionId == null ? null : Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[]{HttpSession.class}, this);
+            }
+            if ("getId".equals(method.getName())) {
+                return sessionId;
+            }
+            if ("getUserPrincipal".equals(method.getName())) {
+                return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private final SwitchableActionValidator actionValidator = new SwitchableActionValidator();
+
+    private String sessionId;
+    private ChunkedResultCursors cursors;
+
+    @Before
+    public void setUp() {
+        sessionId = "owner";
+        AbstractEagerActionHandlerValidatorRegistryImpl registry = new AbstractEagerActionHandlerValidatorRegistryImpl() {
+        };
+        registry.addActionHandlerValidator(TestAction.class,
+                new ActionHandlerValidatorInstance(actionValidator, new TestActionHandler()));
+
+        final HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new ClientRequestHandler());
+        cursors = new ChunkedResultCursors(registry, new RequestProvider() {
+            @Override
+            public HttpServletRequest getServletRequest() {
+                return request;
+            }
+        });
+    }
+
+    @Test
+    public void chunksAreServedToTheClientThatOpenedTheCursor() throws Exception {
+        ChunkedResult<TestResult> first = open(5);
+
+        ChunkedResult<?> second = cursors.next(first.getCursor());
+        ChunkedResult<?> third = cursors.next(second.getCursor());
+
+        assertEquals(2, first.getItems().size());
+        assertEquals(2, second.getItems().size());
+        assertEquals(1, third.getItems().size());
+        assertTrue(third.isLast());
+        assertEquals(0, cursors.getOpenCursorCount());
+    }
+
+    @Test
+    public void otherClientCannotReadTheCursor() throws Exception {
+        // Given
+        ChunkedResult<TestResult> first = open(5);
+
+        // When
+        sessionId = "intruder";
+        expectRejected(first.getCursor());
+
+        // Then
+        sessionId = "owner";
+        assertNotNull(cursors.next(first.getCursor()));
+    }
+
+    @Test
+    public void otherClientCannotCloseTheCursor() throws Exception {
+        // Given
+        ChunkedResult<TestResult> first = open(5);
+
+        // When
+        sessionId = null;
+        try {
+            cursors.close(first.getCursor());
+            fail("The cursor should only be closed by its owner");
+        } catch (ActionException e) {
+            // Expected
+        }
+
+        // Then
+        assertEquals(1, cursors.getOpenCursorCount());
+    }
+
+    @Test
+    public void cursorIsClosedOnceTheValidatorRejectsTheAction() throws Exception {
+        // Given
+        ChunkedResult<TestResult> first = open(5);
+
+        // When
+        actionValidator.valid = false;
+        expectRejected(first.getCursor());
+
+        // Then
+        actionValidator.valid = true;
+        expectRejected(first.getCursor());
+        assertEquals(0, cursors.getOpenCursorCount());
+    }
+
+    private ChunkedResult<TestResult> open(int itemCount) throws ActionException {
+        List<TestResult> items = new ArrayList<TestResult>();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new TestResult(true));
+        }
+
+        return cursors.open(new TestAction("test"), items.iterator(), 2);
+    }
+
+    private void expectRejected(String cursor) {
+        try {
+            cursors.next(cursor);
+            fail("The next chunk should not be served");
+        } catch (ActionException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandlervalidator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the lookups of {@link ClassTable}.
+ */
+public class ClassTableTest {
+    private static final Class<?>[] CLASSES = {String.class, Integer.class, Long.class, Short.class, Byte.class,
+            Double.class, Float.class, Character.class, Boolean.class, Object.class, Number.class, Math.class,
+            StringBuilder.class, Thread.class, Runnable.class, Map.class, HashMap.class, Collections.class,
+            ClassTable.class, ClassTableTest.class, Exception.class, RuntimeException.class, Error.class};
+
+    @Test
+    public void emptyTableFindsNothing() {
+        ClassTable<String> table = new ClassTable<String>(Collections.<Class<?>, String>emptyMap());
+
+        assertNull(table.get(String.class));
+    }
+
+    @Test
+    public void everyEntryIsFound() {
+        for (int size = 1; size <= CLASSES.length; size++) {
+            Map<Class<?>, String> entries = new HashMap<Class<?>, String>();
+            for (int i = 0; i < size; i++) {
+                entries.put(CLASSES[i], CLASSES[i].getName());
+            }
+
+            ClassTable<String> table = new ClassTable<String>(entries);
+
+            for (int i = 0; i < size; i++) {
+                assertEquals(CLASSES[i].getName(), table.get(CLASSES[i]));
+            }
+            for (int i = size; i < CLASSES.length; i++) {
+                assertNull(table.get(CLASSES[i]));
+            }
+        }
+    }
+}
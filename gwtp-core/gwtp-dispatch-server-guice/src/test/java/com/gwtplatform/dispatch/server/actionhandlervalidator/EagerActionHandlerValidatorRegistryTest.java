@@ -0,0 +1,146 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandlervalidator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.TestActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.MarkedAction;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.MarkedActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.MarkedOnlyAction;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.MarkedTestAction;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.SubTestAction;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.TestActionValidator;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.UnrelatedAction;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the lookups of {@link AbstractEagerActionHandlerValidatorRegistryImpl}.
+ */
+public class EagerActionHandlerValidatorRegistryTest {
+    private final ActionHandler<TestAction, TestResult> testActionHandler = new TestActionHandler();
+    private final ActionHandler<MarkedAction, TestResult> markedActionHandler = new MarkedActionHandler();
+
+    private AbstractEagerActionHandlerValidatorRegistryImpl registry;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        registry = new AbstractEagerActionHandlerValidatorRegistryImpl() {
+        };
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void subclassUsesTheHandlerOfItsSuperclass() {
+        registry.addActionHandlerValidator(TestAction.class, instanceOf(testActionHandler));
+
+        assertSame(testActionHandler, registry.findActionHandlerValidator(new SubTestAction()).getActionHandler());
+    }
+
+    @Test
+    public void actionUsesTheHandlerOfItsInterface() {
+        registry.addActionHandlerValidator(MarkedAction.class, instanceOf(markedActionHandler));
+
+        assertSame(markedActionHandler, registry.findActionHandlerValidator(new MarkedOnlyAction())
+                .getActionHandler());
+    }
+
+    @Test
+    public void superclassHandlerIsPreferredToInterfaceHandler() {
+        registry.addActionHandlerValidator(MarkedAction.class, instanceOf(markedActionHandler));
+        registry.addActionHandlerValidator(TestAction.class, instanceOf(testActionHandler));
+
+        assertSame(testActionHandler, registry.findActionHandlerValidator(new MarkedTestAction()).getActionHandler());
+    }
+
+    @Test
+    public void missingHandlerIsFoundOnceRegistered() {
+        registry.addActionHandlerValidator(TestAction.class, instanceOf(testActionHandler));
+        assertNull(registry.findActionHandlerValidator(new MarkedOnlyAction()));
+
+        registry.addActionHandlerValidator(MarkedAction.class, instanceOf(markedActionHandler));
+
+        assertSame(markedActionHandler, registry.findActionHandlerValidator(new MarkedOnlyAction())
+                .getActionHandler());
+    }
+
+    @Test
+    public void removedHandlerIsNotFoundAnymore() {
+        registry.addActionHandlerValidator(TestAction.class, instanceOf(testActionHandler));
+        registry.findActionHandlerValidator(new SubTestAction());
+
+        registry.removeActionHandlerValidator(TestAction.class);
+
+        assertNull(registry.findActionHandlerValidator(new SubTestAction()));
+    }
+
+    @Test(timeout = 10000)
+    public void lookupsSeeAConsistentRegistryWhileItChanges() throws Exception {
+        // Given
+        registry.addActionHandlerValidator(TestAction.class, instanceOf(testActionHandler));
+        final AtomicBoolean done = new AtomicBoolean();
+        Future<Void> reader = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                while (!done.get()) {
+                    assertSame(testActionHandler, registry.findActionHandlerValidator(new SubTestAction())
+                            .getActionHandler());
+                    ActionHandlerValidatorInstance marked = registry.findActionHandlerValidator(new MarkedOnlyAction());
+                    if (marked != null) {
+                        assertSame(markedActionHandler, marked.getActionHandler());
+                    }
+                    assertNull(registry.findActionHandlerValidator(new UnrelatedAction()));
+                }
+                return null;
+            }
+        });
+
+        // When
+        for (int i = 0; i < 2000; i++) {
+            registry.addActionHandlerValidator(MarkedAction.class, instanceOf(markedActionHandler));
+            registry.removeActionHandlerValidator(MarkedAction.class);
+        }
+        done.set(true);
+
+        // Then
+        reader.get();
+        assertNull(registry.findActionHandlerValidator(new MarkedOnlyAction()));
+    }
+
+    private ActionHandlerValidatorInstance instanceOf(ActionHandler<?, ?> handler) {
+        return new ActionHandlerValidatorInstance(new TestActionValidator(), handler);
+    }
+}
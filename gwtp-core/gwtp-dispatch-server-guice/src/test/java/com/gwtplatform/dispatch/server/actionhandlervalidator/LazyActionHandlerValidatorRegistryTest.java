@@ -0,0 +1,339 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandlervalidator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.server.actionhandler.TestActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.MarkedAction;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.MarkedActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.MarkedOnlyAction;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.MarkedTestAction;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.SubTestAction;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.TestActionValidator;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.RegistryTestActions.UnrelatedAction;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the creation of handlers by {@link AbstractLazyActionHandlerValidatorRegistryImpl}.
+ */
+public class LazyActionHandlerValidatorRegistryTest {
+    static class TestRegistry extends AbstractLazyActionHandlerValidatorRegistryImpl {
+        final AtomicInteger handlerCount = new AtomicInteger();
+        volatile int failures;
+        volatile int nulls;
+        volatile long creationMillis;
+
+        @Override
+        protected <B> B getInstance(Class<B> clazz) {
+            if (clazz != TestActionHandler.class) {
+                try {
+                    return clazz.newInstance();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            handlerCount.incrementAndGet();
+            sleep(creationMillis);
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("Handler creation failed");
+            }
+            if (nulls > 0) {
+                nulls--;
+                return null;
+            }
+            return clazz.cast(new TestActionHandler());
+        }
+
+        private void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final int THREADS = 8;
+
+    private static final ActionHandlerValidatorClass<TestAction, TestResult> TEST_ACTION_CLASSES =
+            new ActionHandlerValidatorClass<TestAction, TestResult>(TestActionHandler.class,
+                    TestActionValidator.class);
+    private static final ActionHandlerValidatorClass<MarkedAction, TestResult> MARKED_ACTION_CLASSES =
+            new ActionHandlerValidatorClass<MarkedAction, TestResult>(MarkedActionHandler.class,
+                    TestActionValidator.class);
+
+    private TestRegistry registry;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        registry = new TestRegistry();
+        registry.addActionHandlerValidatorClass(TestAction.class, TEST_ACTION_CLASSES);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentFirstLookupsCreateTheHandlerOnce() throws Exception {
+        // Given
+        registry.creationMillis = 100;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<ActionHandlerValidatorInstance>> lookups = new ArrayList<Future<ActionHandlerValidatorInstance>>();
+
+        // When
+        for (int i = 0; i < THREADS; i++) {
+            lookups.add(executor.submit(new Callable<ActionHandlerValidatorInstance>() {
+                @Override
+                public ActionHandlerValidatorInstance call() throws Exception {
+                    start.await();
+                    return registry.findActionHandlerValidator(new TestAction("test"));
+                }
+            }));
+        }
+        start.countDown();
+
+        // Then
+        ActionHandlerValidatorInstance first = lookups.get(0).get();
+        assertNotNull(first);
+        for (Future<ActionHandlerValidatorInstance> lookup : lookups) {
+            assertSame(first, lookup.get());
+        }
+        assertEquals(1, registry.handlerCount.get());
+    }
+
+    @Test
+    public void failedCreationIsRememberedUntilTheRetryDelay() {
+        // Given
+        registry.failures = 1;
+        expectCreationFailure();
+
+        // When
+        expectCreationFailure();
+        registry.setFailureRetryDelayMillis(0);
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new TestAction("test"));
+
+        // Then
+        assertNotNull(instance);
+        assertEquals(2, registry.handlerCount.get());
+    }
+
+    @Test
+    public void missingInstanceIsRememberedUntilTheRetryDelay() {
+        // Given
+        registry.nulls = 1;
+        assertNull(registry.findActionHandlerValidator(new TestAction("test")));
+
+        // When
+        ActionHandlerValidatorInstance remembered = registry.findActionHandlerValidator(new TestAction("test"));
+        registry.setFailureRetryDelayMillis(0);
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new TestAction("test"));
+
+        // Then
+        assertNull(remembered);
+        assertNotNull(instance);
+        assertEquals(2, registry.handlerCount.get());
+    }
+
+    @Test
+    public void failedCreationIsRetriedByTheNextLookup() {
+        // Given
+        registry.setFailureRetryDelayMillis(0);
+        registry.failures = 1;
+
+        // When
+        try {
+            registry.findActionHandlerValidator(new TestAction("test"));
+            fail("The creation failure should be reported");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new TestAction("test"));
+
+        // Then
+        assertNotNull(instance);
+        assertEquals(2, registry.handlerCount.get());
+    }
+
+    @Test
+    public void missingInstanceIsRetriedByTheNextLookup() {
+        // Given
+        registry.setFailureRetryDelayMillis(0);
+        registry.nulls = 1;
+
+        // When
+        ActionHandlerValidatorInstance missing = registry.findActionHandlerValidator(new TestAction("test"));
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new TestAction("test"));
+
+        // Then
+        assertEquals(null, missing);
+        assertNotNull(instance);
+        assertSame(instance, registry.findActionHandlerValidator(new TestAction("test")));
+        assertEquals(2, registry.handlerCount.get());
+    }
+
+    @Test
+    public void warmUpIgnoresFailuresUntilTheActionIsExecuted() {
+        // Given
+        registry.failures = 1;
+
+        // When
+        registry.warmUp();
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new TestAction("test"));
+
+        // Then
+        assertNotNull(instance);
+        assertEquals(2, registry.handlerCount.get());
+    }
+
+    @Test
+    public void handlerRemovedDuringItsCreationIsNotKept() throws Exception {
+        // Given
+        registry.creationMillis = 200;
+        Future<ActionHandlerValidatorInstance> lookup = executor.submit(new Callable<ActionHandlerValidatorInstance>() {
+            @Override
+            public ActionHandlerValidatorInstance call() {
+                return registry.findActionHandlerValidator(new TestAction("test"));
+            }
+        });
+        Thread.sleep(50);
+
+        // When
+        registry.removeActionHandlerValidatorClass(TestAction.class, TEST_ACTION_CLASSES);
+        ActionHandlerValidatorInstance removed = lookup.get();
+        registry.addActionHandlerValidatorClass(TestAction.class, TEST_ACTION_CLASSES);
+        registry.creationMillis = 0;
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new TestAction("test"));
+
+        // Then
+        assertNotNull(instance);
+        assertNotSame(removed, instance);
+        assertEquals(2, registry.handlerCount.get());
+    }
+
+    @Test
+    public void subclassUsesTheHandlerOfItsSuperclass() {
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new SubTestAction());
+
+        assertTrue(instance.getActionHandler() instanceof TestActionHandler);
+        assertSame(instance, registry.findActionHandlerValidator(new TestAction("test")));
+    }
+
+    @Test
+    public void actionUsesTheHandlerOfItsInterface() {
+        registry.addActionHandlerValidatorClass(MarkedAction.class, MARKED_ACTION_CLASSES);
+
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new MarkedOnlyAction());
+
+        assertTrue(instance.getActionHandler() instanceof MarkedActionHandler);
+    }
+
+    @Test
+    public void superclassHandlerIsPreferredToInterfaceHandler() {
+        registry.addActionHandlerValidatorClass(MarkedAction.class, MARKED_ACTION_CLASSES);
+
+        ActionHandlerValidatorInstance instance = registry.findActionHandlerValidator(new MarkedTestAction());
+
+        assertTrue(instance.getActionHandler() instanceof TestActionHandler);
+    }
+
+    @Test
+    public void missingHandlerIsFoundOnceRegistered() {
+        assertNull(registry.findActionHandlerValidator(new MarkedOnlyAction()));
+
+        registry.addActionHandlerValidatorClass(MarkedAction.class, MARKED_ACTION_CLASSES);
+
+        assertNotNull(registry.findActionHandlerValidator(new MarkedOnlyAction()));
+    }
+
+    @Test
+    public void removedHandlerIsNotFoundAnymore() {
+        registry.findActionHandlerValidator(new SubTestAction());
+
+        registry.removeActionHandlerValidatorClass(TestAction.class, TEST_ACTION_CLASSES);
+
+        assertNull(registry.findActionHandlerValidator(new SubTestAction()));
+    }
+
+    @Test(timeout = 10000)
+    public void lookupsSeeAConsistentRegistryWhileItChanges() throws Exception {
+        // Given
+        final AtomicBoolean done = new AtomicBoolean();
+        Future<Void> reader = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                while (!done.get()) {
+                    assertTrue(registry.findActionHandlerValidator(new SubTestAction())
+                            .getActionHandler() instanceof TestActionHandler);
+                    ActionHandlerValidatorInstance marked = registry.findActionHandlerValidator(new MarkedOnlyAction());
+                    if (marked != null) {
+                        assertTrue(marked.getActionHandler() instanceof MarkedActionHandler);
+                    }
+                    assertNull(registry.findActionHandlerValidator(new UnrelatedAction()));
+                }
+                return null;
+            }
+        });
+
+        // When
+        for (int i = 0; i < 2000; i++) {
+            registry.addActionHandlerValidatorClass(MarkedAction.class, MARKED_ACTION_CLASSES);
+            registry.removeActionHandlerValidatorClass(MarkedAction.class, MARKED_ACTION_CLASSES);
+        }
+        done.set(true);
+
+        // Then
+        reader.get();
+        assertNull(registry.findActionHandlerValidator(new MarkedOnlyAction()));
+    }
+
+    private void expectCreationFailure() {
+        try {
+            registry.findActionHandlerValidator(new TestAction("test"));
+            fail("The creation failure should be reported");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandlervalidator;
+
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractActionHandler;
+import com.gwtplatform.dispatch.server.actionvalidator.AbstractDefaultActionValidator;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+/**
+ * Actions, handlers and validators used to test the lookups of the registries.
+ */
+final class RegistryTestActions {
+    interface MarkedAction extends Action<TestResult> {
+    }
+
+    static class SubTestAction extends TestAction {
+        SubTestAction() {
+            super("sub");
+        }
+    }
+
+    static class MarkedTestAction extends TestAction implements MarkedAction {
+        MarkedTestAction() {
+            super("marked");
+        }
+    }
+
+    static class MarkedOnlyAction extends UnsecuredActionImpl<TestResult> implements MarkedAction {
+    }
+
+    static class UnrelatedAction extends UnsecuredActionImpl<TestResult> {
+    }
+
+    static class MarkedActionHandler extends AbstractActionHandler<MarkedAction, TestResult> {
+        MarkedActionHandler() {
+            super(MarkedAction.class);
+        }
+
+        @Override
+        public TestResult execute(MarkedAction action, ExecutionContext context) {
+            return new TestResult(true);
+        }
+
+        @Override
+        public void undo(MarkedAction action, TestResult result, ExecutionContext context) {
+        }
+    }
+
+    static class TestActionValidator extends AbstractDefaultActionValidator {
+    }
+
+    private RegistryTestActions() {
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractActionHandler;
+import com.gwtplatform.dispatch.server.guice.HandlerModule;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.ServiceOverloadedException;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the limits applied by {@link ConcurrencyLimitInterceptor}.
+ */
+public class ConcurrencyLimitInterceptorTest {
+    static class SingleExecutionLimitInterceptor extends ConcurrencyLimitInterceptor {
+        @Inject
+        SingleExecutionLimitInterceptor() {
+            super(1, 1, 1);
+        }
+    }
+
+    static class NestingActionHandler extends AbstractActionHandler<TestAction, TestResult> {
+        static final String NESTED_MESSAGE = "nested";
+
+        NestingActionHandler() {
+            super(TestAction.class);
+        }
+
+        @Override
+        public TestResult execute(TestAction action, ExecutionContext context) throws ActionException {
+            if (NESTED_MESSAGE.equals(action.getTestMessage())) {
+                return new TestResult(true);
+            }
+
+            try {
+                return context.execute(new TestAction(NESTED_MESSAGE));
+            } catch (ServiceException e) {
+                throw new ActionException(e);
+            }
+        }
+
+        @Override
+        public void undo(TestAction action, TestResult result, ExecutionContext context) {
+        }
+    }
+
+    static class TopLevelChain implements ActionInterceptorChain<TestAction, TestResult> {
+        private final ActionInterceptor interceptor;
+
+        TopLevelChain(ActionInterceptor interceptor) {
+            this.interceptor = interceptor;
+        }
+
+        @Override
+        public TestResult proceed() throws ActionException, ServiceException {
+            return interceptor.intercept(new TestAction("second"), null, new TopLevelChain(interceptor) {
+                @Override
+                public TestResult proceed() {
+                    return new TestResult(true);
+                }
+            });
+        }
+
+        @Override
+        public boolean isNested() {
+            return false;
+        }
+    }
+
+    @Test
+    public void nestedActionsAreNotLimited() throws Exception {
+        Dispatch dispatch = Guice.createInjector(new HandlerModule() {
+            @Override
+            protected void configureHandlers() {
+                bind(HttpServletRequest.class).toProvider(new Provider<HttpServletRequest>() {
+                    @Override
+                    public HttpServletRequest get() {
+                        return null;
+                    }
+                });
+                bindHandler(TestAction.class, NestingActionHandler.class);
+                bindActionInterceptor(SingleExecutionLimitInterceptor.class);
+            }
+        }).getInstance(Dispatch.class);
+
+        TestResult result = dispatch.execute(new TestAction("top-level"));
+
+        assertTrue(result.getResult());
+    }
+
+    @Test(expected = ServiceOverloadedException.class)
+    public void concurrentTopLevelActionsAreLimited() throws Exception {
+        ConcurrencyLimitInterceptor interceptor = new SingleExecutionLimitInterceptor();
+
+        interceptor.intercept(new TestAction("first"), null, new TopLevelChain(interceptor));
+    }
+}
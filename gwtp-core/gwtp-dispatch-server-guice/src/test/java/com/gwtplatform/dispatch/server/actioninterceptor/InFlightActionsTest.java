@@ -0,0 +1,168 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the coalescing of equal actions by {@link InFlightActions}.
+ */
+public class InFlightActionsTest {
+    private final TestAction action = new TestAction("test");
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentCallersShareTheResult() throws Exception {
+        // Given
+        final InFlightActions inFlightActions = new InFlightActions();
+        final CountDownLatch leaderStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestResult leaderResult = new TestResult(true);
+        Future<TestResult> leader = executor.submit(new Callable<TestResult>() {
+            @Override
+            public TestResult call() throws Exception {
+                return inFlightActions.execute(action, new Callable<TestResult>() {
+                    @Override
+                    public TestResult call() throws Exception {
+                        leaderStarted.countDown();
+                        release.await();
+                        return leaderResult;
+                    }
+                });
+            }
+        });
+        leaderStarted.await();
+        final AtomicInteger followerCalls = new AtomicInteger();
+
+        // When
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sleep(200);
+                release.countDown();
+            }
+        });
+        releaser.start();
+        TestResult followerResult = inFlightActions.execute(action, new Callable<TestResult>() {
+            @Override
+            public TestResult call() {
+                followerCalls.incrementAndGet();
+                return new TestResult(false);
+            }
+        });
+
+        // Then
+        assertSame(leaderResult, leader.get());
+        assertSame(leaderResult, followerResult);
+        assertEquals(0, followerCalls.get());
+    }
+
+    @Test(timeout = 10000)
+    public void reentrantExecutionRunsDirectly() throws Exception {
+        // Given
+        final InFlightActions inFlightActions = new InFlightActions();
+        final TestResult nestedResult = new TestResult(true);
+
+        // When
+        TestResult result = inFlightActions.execute(action, new Callable<TestResult>() {
+            @Override
+            public TestResult call() throws Exception {
+                return inFlightActions.execute(action, new Callable<TestResult>() {
+                    @Override
+                    public TestResult call() {
+                        return nestedResult;
+                    }
+                });
+            }
+        });
+
+        // Then
+        assertSame(nestedResult, result);
+    }
+
+    @Test(timeout = 10000)
+    public void callerOfHungExecutionRunsTheActionItself() throws Exception {
+        // Given
+        final InFlightActions inFlightActions = new InFlightActions(100);
+        final CountDownLatch leaderStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.submit(new Callable<TestResult>() {
+            @Override
+            public TestResult call() throws Exception {
+                return inFlightActions.execute(action, new Callable<TestResult>() {
+                    @Override
+                    public TestResult call() throws Exception {
+                        leaderStarted.countDown();
+                        release.await();
+                        return new TestResult(false);
+                    }
+                });
+            }
+        });
+        leaderStarted.await();
+
+        // When
+        TestResult result = inFlightActions.execute(action, new Callable<TestResult>() {
+            @Override
+            public TestResult call() {
+                return new TestResult(true);
+            }
+        });
+        release.countDown();
+
+        // Then
+        assertTrue(result.getResult());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
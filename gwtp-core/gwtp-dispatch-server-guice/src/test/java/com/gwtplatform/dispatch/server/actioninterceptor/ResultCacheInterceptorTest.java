@@ -0,0 +1,207 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractActionHandler;
+import com.gwtplatform.dispatch.server.guice.HandlerModule;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.CacheableAction;
+import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the caching of results by {@link ResultCacheInterceptor}.
+ */
+public class ResultCacheInterceptorTest {
+    @CacheableAction
+    static class CacheableTestAction extends UnsecuredActionImpl<TestResult> {
+        private final String key;
+
+        CacheableTestAction(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CacheableTestAction && key.equals(((CacheableTestAction) obj).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+    }
+
+    static class CacheableTestActionHandler extends AbstractActionHandler<CacheableTestAction, TestResult> {
+        static final AtomicInteger EXECUTIONS = new AtomicInteger();
+        static final AtomicInteger UNDOS = new AtomicInteger();
+
+        CacheableTestActionHandler() {
+            super(CacheableTestAction.class);
+        }
+
+        @Override
+        public TestResult execute(CacheableTestAction action, ExecutionContext context) {
+            EXECUTIONS.incrementAndGet();
+            return new TestResult(true);
+        }
+
+        @Override
+        public void undo(CacheableTestAction action, TestResult result, ExecutionContext context) {
+            UNDOS.incrementAndGet();
+        }
+    }
+
+    static class FailingNestingActionHandler extends AbstractActionHandler<TestAction, TestResult> {
+        FailingNestingActionHandler() {
+            super(TestAction.class);
+        }
+
+        @Override
+        public TestResult execute(TestAction action, ExecutionContext context) throws ActionException {
+            try {
+                context.execute(new CacheableTestAction(action.getTestMessage()));
+            } catch (ServiceException e) {
+                throw new ActionException(e);
+            }
+            throw new ActionException("Nested action executed, failing");
+        }
+
+        @Override
+        public void undo(TestAction action, TestResult result, ExecutionContext context) {
+        }
+    }
+
+    static class CountingChain implements ActionInterceptorChain<CacheableTestAction, TestResult> {
+        int calls;
+
+        @Override
+        public TestResult proceed() {
+            calls++;
+            return new TestResult(true);
+        }
+
+        @Override
+        public boolean isNested() {
+            return false;
+        }
+    }
+
+    private Dispatch dispatch;
+
+    @Before
+    public void setUp() {
+        CacheableTestActionHandler.EXECUTIONS.set(0);
+        CacheableTestActionHandler.UNDOS.set(0);
+        dispatch = Guice.createInjector(new HandlerModule() {
+            @Override
+            protected void configureHandlers() {
+                bind(HttpServletRequest.class).toProvider(new Provider<HttpServletRequest>() {
+                    @Override
+                    public HttpServletRequest get() {
+                        return null;
+                    }
+                });
+                bindHandler(CacheableTestAction.class, CacheableTestActionHandler.class);
+                bindHandler(TestAction.class, FailingNestingActionHandler.class);
+                bindActionInterceptor(ResultCacheInterceptor.class);
+            }
+        }).getInstance(Dispatch.class);
+    }
+
+    @Test
+    public void equalActionsShareTheCachedResult() throws Exception {
+        TestResult first = dispatch.execute(new CacheableTestAction("key"));
+        TestResult second = dispatch.execute(new CacheableTestAction("key"));
+
+        assertSame(first, second);
+        assertNotSame(first, dispatch.execute(new CacheableTestAction("other")));
+        assertEquals(2, CacheableTestActionHandler.EXECUTIONS.get());
+    }
+
+    @Test
+    public void cachedResultOfNestedActionIsNotUndone() throws Exception {
+        // Given
+        dispatch.execute(new CacheableTestAction("key"));
+
+        // When
+        executeFailingNestingAction("key");
+
+        // Then
+        assertEquals(1, CacheableTestActionHandler.EXECUTIONS.get());
+        assertEquals(0, CacheableTestActionHandler.UNDOS.get());
+    }
+
+    @Test
+    public void executedNestedActionIsUndone() throws Exception {
+        executeFailingNestingAction("key");
+
+        assertEquals(1, CacheableTestActionHandler.EXECUTIONS.get());
+        assertEquals(1, CacheableTestActionHandler.UNDOS.get());
+    }
+
+    @Test
+    public void leastRecentlyUsedResultsAreEvicted() throws Exception {
+        // Given
+        ResultCacheInterceptor interceptor = new ResultCacheInterceptor(10);
+        CountingChain chain = new CountingChain();
+        for (int i = 0; i < 10; i++) {
+            interceptor.intercept(new CacheableTestAction("key" + i), null, chain);
+            Thread.sleep(1);
+        }
+        interceptor.intercept(new CacheableTestAction("key0"), null, chain);
+
+        // When
+        interceptor.intercept(new CacheableTestAction("key10"), null, chain);
+        chain.calls = 0;
+        interceptor.intercept(new CacheableTestAction("key0"), null, chain);
+        interceptor.intercept(new CacheableTestAction("key10"), null, chain);
+        int cachedCalls = chain.calls;
+        interceptor.intercept(new CacheableTestAction("key1"), null, chain);
+
+        // Then
+        assertEquals(0, cachedCalls);
+        assertEquals(1, chain.calls);
+    }
+
+    private void executeFailingNestingAction(String key) throws ServiceException {
+        try {
+            dispatch.execute(new TestAction(key));
+            fail("The action should fail");
+        } catch (ActionException e) {
+            // Expected
+        }
+    }
+}
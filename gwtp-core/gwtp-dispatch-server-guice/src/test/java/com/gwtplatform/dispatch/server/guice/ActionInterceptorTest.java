@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandler.TestActionHandler;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptor;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptorChain;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ActionInterceptor}s surrounding the actions executed by {@link DispatchImpl}.
+ */
+public class ActionInterceptorTest {
+    static class CountingActionHandler extends TestActionHandler {
+        static final AtomicInteger EXECUTIONS = new AtomicInteger();
+
+        @Override
+        public TestResult execute(TestAction action, ExecutionContext context) throws ActionException {
+            EXECUTIONS.incrementAndGet();
+            return super.execute(action, context);
+        }
+    }
+
+    static class RetryingInterceptor implements ActionInterceptor {
+        @Override
+        public <A extends Action<R>, R extends Result> R intercept(A action, ExecutionContext context,
+                ActionInterceptorChain<A, R> chain) throws ActionException, ServiceException {
+            chain.proceed();
+            return chain.proceed();
+        }
+    }
+
+    static class CountingInterceptor implements ActionInterceptor {
+        static final AtomicInteger INTERCEPTIONS = new AtomicInteger();
+
+        @Override
+        public <A extends Action<R>, R extends Result> R intercept(A action, ExecutionContext context,
+                ActionInterceptorChain<A, R> chain) throws ActionException, ServiceException {
+            INTERCEPTIONS.incrementAndGet();
+            return chain.proceed();
+        }
+    }
+
+    private Dispatch dispatch;
+
+    @Before
+    public void setUp() {
+        CountingActionHandler.EXECUTIONS.set(0);
+        CountingInterceptor.INTERCEPTIONS.set(0);
+        dispatch = Guice.createInjector(new HandlerModule() {
+            @Override
+            protected void configureHandlers() {
+                bind(HttpServletRequest.class).toProvider(new Provider<HttpServletRequest>() {
+                    @Override
+                    public HttpServletRequest get() {
+                        return null;
+                    }
+                });
+                bindHandler(TestAction.class, CountingActionHandler.class);
+                bindActionInterceptor(RetryingInterceptor.class);
+                bindActionInterceptor(CountingInterceptor.class);
+            }
+        }).getInstance(Dispatch.class);
+    }
+
+    @Test
+    public void proceedingTwiceExecutesTheRestOfTheChainTwice() throws Exception {
+        TestResult result = dispatch.execute(new TestAction(TestActionHandler.MESSAGE));
+
+        assertTrue(result.getResult());
+        assertEquals(2, CountingInterceptor.INTERCEPTIONS.get());
+        assertEquals(2, CountingActionHandler.EXECUTIONS.get());
+    }
+}
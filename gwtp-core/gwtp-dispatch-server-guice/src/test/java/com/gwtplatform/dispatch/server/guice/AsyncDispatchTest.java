@@ -0,0 +1,259 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+import com.gwtplatform.dispatch.server.ActionCallback;
+import com.gwtplatform.dispatch.server.AsyncDispatch;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractAsyncActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.ActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.TestActionHandler;
+import com.gwtplatform.dispatch.server.actionvalidator.AbstractDefaultActionValidator;
+import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
+import com.gwtplatform.dispatch.server.guice.actionvalidator.DefaultActionValidator;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the asynchronous execution of actions by {@link DispatchImpl}.
+ */
+public class AsyncDispatchTest {
+    static class PendingActionHandler extends AbstractAsyncActionHandler<TestAction, TestResult> {
+        static volatile ActionCallback<TestResult> pending;
+        static volatile ExecutionContext pendingContext;
+
+        PendingActionHandler() {
+            super(TestAction.class, 0);
+        }
+
+        @Override
+        public void executeAsync(TestAction action, ExecutionContext context, ActionCallback<TestResult> callback) {
+            pendingContext = context;
+            pending = callback;
+        }
+
+        @Override
+        public void undo(TestAction action, TestResult result, ExecutionContext context) {
+        }
+    }
+
+    static class NestedAction extends UnsecuredActionImpl<TestResult> {
+    }
+
+    static class NestedActionHandler extends AbstractActionHandler<NestedAction, TestResult> {
+        static final AtomicInteger UNDONE = new AtomicInteger();
+
+        NestedActionHandler() {
+            super(NestedAction.class);
+        }
+
+        @Override
+        public TestResult execute(NestedAction action, ExecutionContext context) {
+            return new TestResult(true);
+        }
+
+        @Override
+        public void undo(NestedAction action, TestResult result, ExecutionContext context) {
+            UNDONE.incrementAndGet();
+        }
+    }
+
+    static class RejectingActionValidator extends AbstractDefaultActionValidator {
+        @Override
+        public boolean isValid(Action<? extends Result> action) {
+            return false;
+        }
+    }
+
+    static class RecordingCallback implements ActionCallback<TestResult> {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile TestResult result;
+        volatile Throwable caught;
+
+        @Override
+        public void onSuccess(TestResult result) {
+            this.result = result;
+            calls.incrementAndGet();
+        }
+
+        @Override
+        public void onFailure(Throwable caught) {
+            this.caught = caught;
+            calls.incrementAndGet();
+        }
+    }
+
+    private final TestAction action = new TestAction(TestActionHandler.MESSAGE);
+    private final RecordingCallback callback = new RecordingCallback();
+
+    @Before
+    public void setUp() {
+        PendingActionHandler.pending = null;
+        PendingActionHandler.pendingContext = null;
+        NestedActionHandler.UNDONE.set(0);
+    }
+
+    @Test
+    public void asyncHandlerCompletesAfterExecuteAsyncReturns() {
+        // Given
+        AsyncDispatch dispatch = createDispatch(PendingActionHandler.class, DefaultActionValidator.class);
+        dispatch.executeAsync(action, callback);
+        assertEquals(0, callback.calls.get());
+
+        // When
+        TestResult result = new TestResult(true);
+        PendingActionHandler.pending.onSuccess(result);
+
+        // Then
+        assertEquals(1, callback.calls.get());
+        assertSame(result, callback.result);
+    }
+
+    @Test
+    public void synchronousHandlerCompletesBeforeExecuteAsyncReturns() {
+        // Given
+        AsyncDispatch dispatch = createDispatch(TestActionHandler.class, DefaultActionValidator.class);
+
+        // When
+        dispatch.executeAsync(action, callback);
+
+        // Then
+        assertEquals(1, callback.calls.get());
+        assertTrue(callback.result.getResult());
+    }
+
+    @Test
+    public void failedAsyncActionRollsBackItsNestedActions() throws Exception {
+        // Given
+        AsyncDispatch dispatch = createDispatch(PendingActionHandler.class, DefaultActionValidator.class);
+        dispatch.executeAsync(action, callback);
+        PendingActionHandler.pendingContext.execute(new NestedAction());
+
+        // When
+        ActionException failure = new ActionException("failed");
+        PendingActionHandler.pending.onFailure(failure);
+
+        // Then
+        assertEquals(1, NestedActionHandler.UNDONE.get());
+        assertSame(failure, callback.caught);
+    }
+
+    @Test
+    public void unexpectedFailureIsReportedAsServiceException() {
+        // Given
+        AsyncDispatch dispatch = createDispatch(PendingActionHandler.class, DefaultActionValidator.class);
+        dispatch.executeAsync(action, callback);
+
+        // When
+        PendingActionHandler.pending.onFailure(new IllegalStateException());
+
+        // Then
+        assertTrue(callback.caught instanceof ServiceException);
+        assertTrue(callback.caught.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void rejectedActionDoesNotReachTheHandler() {
+        // Given
+        AsyncDispatch dispatch = createDispatch(PendingActionHandler.class, RejectingActionValidator.class);
+
+        // When
+        dispatch.executeAsync(action, callback);
+
+        // Then
+        assertNull(PendingActionHandler.pending);
+        assertTrue(callback.caught instanceof ServiceException);
+    }
+
+    @Test
+    public void callbackIsOnlyCalledOnce() {
+        // Given
+        AsyncDispatch dispatch = createDispatch(PendingActionHandler.class, DefaultActionValidator.class);
+        dispatch.executeAsync(action, callback);
+
+        // When
+        PendingActionHandler.pending.onSuccess(new TestResult(true));
+        PendingActionHandler.pending.onFailure(new ActionException("late"));
+
+        // Then
+        assertEquals(1, callback.calls.get());
+        assertNull(callback.caught);
+    }
+
+    @Test
+    public void asyncHandlerCanBeExecutedSynchronously() throws Exception {
+        // Given
+        final AsyncDispatch dispatch = createDispatch(PendingActionHandler.class, DefaultActionValidator.class);
+        Thread completer = new Thread() {
+            @Override
+            public void run() {
+                while (PendingActionHandler.pending == null) {
+                    Thread.yield();
+                }
+                PendingActionHandler.pending.onSuccess(new TestResult(true));
+            }
+        };
+        completer.start();
+
+        // When
+        TestResult result = dispatch.execute(action);
+
+        // Then
+        completer.join();
+        assertNotNull(result);
+        assertTrue(result.getResult());
+    }
+
+    private AsyncDispatch createDispatch(final Class<? extends ActionHandler<TestAction, TestResult>> handlerClass,
+            final Class<? extends ActionValidator> validatorClass) {
+        return (AsyncDispatch) Guice.createInjector(new HandlerModule() {
+            @Override
+            protected void configureHandlers() {
+                bind(HttpServletRequest.class).toProvider(new Provider<HttpServletRequest>() {
+                    @Override
+                    public HttpServletRequest get() {
+                        return null;
+                    }
+                });
+                bindHandler(TestAction.class, handlerClass, validatorClass);
+                bindHandler(NestedAction.class, NestedActionHandler.class);
+            }
+        }).getInstance(Dispatch.class);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.actionhandler.BatchActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.TestActionHandler;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.BatchAction;
+import com.gwtplatform.dispatch.shared.BatchResult;
+import com.gwtplatform.dispatch.shared.ParallelBatchAction;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the parallel execution of {@link ParallelBatchAction}s by {@link BatchActionHandler}.
+ */
+public class BatchActionHandlerTest {
+    static class TestParallelBatchAction extends ParallelBatchAction {
+        TestParallelBatchAction(Action<?>... actions) {
+            super(actions);
+        }
+
+        @Override
+        public String getServiceName() {
+            return "dispatch/";
+        }
+
+        @Override
+        public boolean isSecured() {
+            return false;
+        }
+    }
+
+    static class SingleThreadBatchActionHandler extends BatchActionHandler {
+        @Inject
+        SingleThreadBatchActionHandler() {
+            super(executor, 0);
+        }
+    }
+
+    private static ExecutorService executor;
+
+    private Dispatch dispatch;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        dispatch = Guice.createInjector(new HandlerModule() {
+            @Override
+            protected void configureHandlers() {
+                bind(HttpServletRequest.class).toProvider(new Provider<HttpServletRequest>() {
+                    @Override
+                    public HttpServletRequest get() {
+                        return null;
+                    }
+                });
+                bindHandler(TestAction.class, TestActionHandler.class);
+                bindHandler(BatchAction.class, SingleThreadBatchActionHandler.class);
+            }
+        }).getInstance(Dispatch.class);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void nestedParallelBatchDoesNotWaitOnTheExecutor() throws Exception {
+        TestParallelBatchAction nested = new TestParallelBatchAction(new TestAction(TestActionHandler.MESSAGE),
+                new TestAction(TestActionHandler.MESSAGE));
+
+        BatchResult result = dispatch.execute(new TestParallelBatchAction(nested));
+
+        BatchResult nestedResult = (BatchResult) result.getResults().get(0);
+        assertEquals(2, nestedResult.getResults().size());
+        assertTrue(((TestResult) nestedResult.getResults().get(0)).getResult());
+        assertTrue(((TestResult) nestedResult.getResults().get(1)).getResult());
+    }
+}
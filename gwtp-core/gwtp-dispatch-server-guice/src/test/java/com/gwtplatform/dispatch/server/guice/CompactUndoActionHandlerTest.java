@@ -0,0 +1,206 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.CompactUndoActionHandler;
+import com.gwtplatform.dispatch.server.undojournal.FileSpillingUndoJournalFactory;
+import com.gwtplatform.dispatch.server.undojournal.UndoJournalFactory;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the rollback of the nested actions of a {@link CompactUndoActionHandler}.
+ */
+public class CompactUndoActionHandlerTest {
+    static class CreateAction extends UnsecuredActionImpl<CreateResult> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int id;
+
+        CreateAction(int id) {
+            this.id = id;
+        }
+    }
+
+    static class CreateResult implements Result, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int id;
+        final byte[] content;
+
+        CreateResult(int id, byte[] content) {
+            this.id = id;
+            this.content = content;
+        }
+    }
+
+    static class CreateActionHandler extends AbstractActionHandler<CreateAction, CreateResult>
+            implements CompactUndoActionHandler<CreateAction, CreateResult> {
+        static final List<CreateResult> UNDONE = Collections.synchronizedList(new ArrayList<CreateResult>());
+
+        CreateActionHandler() {
+            super(CreateAction.class);
+        }
+
+        @Override
+        public CreateResult execute(CreateAction action, ExecutionContext context) {
+            return new CreateResult(action.id, new byte[1024]);
+        }
+
+        @Override
+        public CreateResult getUndoResult(CreateAction action, CreateResult result) {
+            return new CreateResult(result.id, null);
+        }
+
+        @Override
+        public void undo(CreateAction action, CreateResult result, ExecutionContext context) {
+            UNDONE.add(result);
+        }
+    }
+
+    static class CreateAllAction extends UnsecuredActionImpl<CreateResult> {
+        final int count;
+
+        CreateAllAction(int count) {
+            this.count = count;
+        }
+    }
+
+    static class FailingCreateAllActionHandler extends AbstractActionHandler<CreateAllAction, CreateResult> {
+        FailingCreateAllActionHandler() {
+            super(CreateAllAction.class);
+        }
+
+        @Override
+        public CreateResult execute(CreateAllAction action, ExecutionContext context) throws ActionException {
+            for (int id = 1; id <= action.count; id++) {
+                try {
+                    context.execute(new CreateAction(id));
+                } catch (ServiceException e) {
+                    throw new ActionException(e);
+                }
+            }
+            throw new ActionException("failed");
+        }
+
+        @Override
+        public void undo(CreateAllAction action, CreateResult result, ExecutionContext context) {
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        CreateActionHandler.UNDONE.clear();
+    }
+
+    @Test
+    public void undoReceivesTheCompactResult() throws Exception {
+        // Given
+        Dispatch dispatch = createDispatch(null);
+
+        // When
+        executeAndFail(dispatch, new CreateAllAction(1));
+
+        // Then
+        assertEquals(1, CreateActionHandler.UNDONE.size());
+        assertEquals(1, CreateActionHandler.UNDONE.get(0).id);
+        assertNull(CreateActionHandler.UNDONE.get(0).content);
+    }
+
+    @Test
+    public void spilledActionsAreUndoneInReverseOrder() throws Exception {
+        // Given
+        Dispatch dispatch = createDispatch(new FileSpillingUndoJournalFactory(1, folder.getRoot()));
+
+        // When
+        executeAndFail(dispatch, new CreateAllAction(4));
+
+        // Then
+        assertEquals(4, CreateActionHandler.UNDONE.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(4 - i, CreateActionHandler.UNDONE.get(i).id);
+            assertNull(CreateActionHandler.UNDONE.get(i).content);
+        }
+    }
+
+    @Test
+    public void journalFileIsDeletedAfterTheRollback() throws Exception {
+        // Given
+        Dispatch dispatch = createDispatch(new FileSpillingUndoJournalFactory(0, folder.getRoot()));
+
+        // When
+        executeAndFail(dispatch, new CreateAllAction(3));
+
+        // Then
+        assertEquals(3, CreateActionHandler.UNDONE.size());
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    private void executeAndFail(Dispatch dispatch, CreateAllAction action) throws ServiceException {
+        try {
+            dispatch.execute(action);
+            fail("The action should have failed");
+        } catch (ActionException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+
+    private Dispatch createDispatch(final UndoJournalFactory undoJournalFactory) {
+        return Guice.createInjector(new HandlerModule() {
+            @Override
+            protected void configureHandlers() {
+                bind(HttpServletRequest.class).toProvider(new Provider<HttpServletRequest>() {
+                    @Override
+                    public HttpServletRequest get() {
+                        return null;
+                    }
+                });
+                if (undoJournalFactory != null) {
+                    bind(UndoJournalFactory.class).toInstance(undoJournalFactory);
+                }
+                bindHandler(CreateAllAction.class, FailingCreateAllActionHandler.class);
+                bindHandler(CreateAction.class, CreateActionHandler.class);
+            }
+        }).getInstance(Dispatch.class);
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.server.metrics.DefaultDispatchMetrics;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the registration of the dispatch metrics MBean by {@link DispatchMetricsExporter}.
+ */
+public class DispatchMetricsExporterTest {
+    private DispatchMetricsExporter exporter;
+
+    @After
+    public void tearDown() {
+        if (exporter != null) {
+            exporter.unregister();
+        }
+    }
+
+    @Test
+    public void unregisteredMetricsCanBeReplaced() throws Exception {
+        // Given
+        new DispatchMetricsExporter(new DefaultDispatchMetrics()).unregister();
+
+        // When
+        exporter = new DispatchMetricsExporter(new DefaultDispatchMetrics());
+
+        // Then
+        assertTrue(isRegistered());
+    }
+
+    @Test
+    public void metricsOfAnotherInstanceStayRegistered() throws Exception {
+        // Given
+        exporter = new DispatchMetricsExporter(new DefaultDispatchMetrics());
+
+        // When
+        new DispatchMetricsExporter(new DefaultDispatchMetrics()).unregister();
+
+        // Then
+        assertTrue(isRegistered());
+    }
+
+    @Test
+    public void unregisterRemovesTheMetrics() throws Exception {
+        // Given
+        DispatchMetricsExporter registeredExporter = new DispatchMetricsExporter(new DefaultDispatchMetrics());
+
+        // When
+        registeredExporter.unregister();
+
+        // Then
+        assertFalse(isRegistered());
+    }
+
+    private boolean isRegistered() throws Exception {
+        return ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName(DefaultDispatchMetrics.OBJECT_NAME));
+    }
+}
@@ -0,0 +1,421 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link DispatchTransportClient} against an {@link AbstractDispatchTransportServlet}.
+ */
+public class DispatchTransportClientTest {
+    static class LargeResult implements Result, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        byte[] payload;
+
+        LargeResult(int size) {
+            payload = new byte[size];
+        }
+    }
+
+    static class LargeAction implements Action<LargeResult>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        byte[] payload;
+        int resultSize;
+
+        LargeAction(int size, int resultSize) {
+            payload = new byte[size];
+            this.resultSize = resultSize;
+        }
+
+        @Override
+        public String getServiceName() {
+            return Action.DEFAULT_SERVICE_NAME;
+        }
+
+        @Override
+        public boolean isSecured() {
+            return false;
+        }
+    }
+
+    static class UnreadableAction implements Action<LargeResult>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String getServiceName() {
+            return Action.DEFAULT_SERVICE_NAME;
+        }
+
+        @Override
+        public boolean isSecured() {
+            return false;
+        }
+
+        private void readObject(ObjectInputStream in) {
+            throw new IllegalStateException("Unreadable");
+        }
+    }
+
+    static class LargeResultDispatch implements Dispatch {
+        @SuppressWarnings("unchecked")
+        @Override
+        public <A extends Action<R>, R extends Result> R execute(A action) {
+            return (R) new LargeResult(((LargeAction) action).resultSize);
+        }
+
+        @Override
+        public <A extends Action<R>, R extends Result> void undo(A action, R result) {
+        }
+    }
+
+    static class AcceptingAuthenticator implements DispatchTransportAuthenticator {
+        @Override
+        public boolean isAuthenticated(HttpServletRequest request) {
+            return true;
+        }
+
+        @Override
+        public boolean isAuthorized(HttpServletRequest request, Action<?> action) {
+            return true;
+        }
+    }
+
+    static class TransportServlet extends AbstractDispatchTransportServlet {
+        private static final long serialVersionUID = 1L;
+
+        TransportServlet(DispatchCodec codec) {
+            super(Logger.getAnonymousLogger(), new LargeResultDispatch(), codec, new AcceptingAuthenticator());
+        }
+
+        void post(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            doPost(request, response);
+        }
+    }
+
+    /**
+     * A minimal HTTP server handing requests over to the servlet, with socket buffers small enough for the results to
+     * fill them.
+     */
+    static class SmallBufferServer extends Thread {
+        private final ServerSocket serverSocket;
+        private final TransportServlet servlet;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        SmallBufferServer(TransportServlet servlet) throws IOException {
+            this.servlet = servlet;
+            serverSocket = new ServerSocket();
+            serverSocket.setReceiveBufferSize(SOCKET_BUFFER_SIZE);
+            serverSocket.bind(new InetSocketAddress("127.0.0.1", 0));
+            setDaemon(true);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    requests.incrementAndGet();
+                    try {
+                        socket.setSendBufferSize(SOCKET_BUFFER_SIZE);
+                        serve(new BufferedInputStream(socket.getInputStream()), socket.getOutputStream());
+                    } finally {
+                        socket.close();
+                    }
+                }
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+
+        private void serve(InputStream socketIn, final OutputStream socketOut) throws IOException {
+            final Map<String, String> headers = new HashMap<String, String>();
+            readLine(socketIn);
+            String line;
+            while ((line = readLine(socketIn)).length() > 0) {
+                int colon = line.indexOf(':');
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+
+            final InputStream body = "chunked".equals(headers.get("transfer-encoding"))
+                    ? new ChunkedInputStream(socketIn) : socketIn;
+            HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if ("getContentType".equals(method.getName())) {
+                                return headers.get("content-type");
+                            }
+                            if ("getInputStream".equals(method.getName())) {
+                                return new SocketInputStream(body);
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+            HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{HttpServletResponse.class}, new InvocationHandler() {
+                        private String contentType;
+
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+                            if ("setContentType".equals(method.getName())) {
+                                contentType = (String) args[0];
+                                return null;
+                            }
+                            if ("getOutputStream".equals(method.getName())) {
+                                String head = "HTTP/1.1 200 OK\r\nContent-Type: " + contentType
+                                        + "\r\nConnection: close\r\n\r\n";
+                                socketOut.write(head.getBytes("US-ASCII"));
+                                return new SocketOutputStream(socketOut);
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+
+            servlet.post(request, response);
+            socketOut.flush();
+        }
+    }
+
+    /**
+     * Reads the chunked body sent by {@link java.net.HttpURLConnection#setChunkedStreamingMode(int)}.
+     */
+    static class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private int remaining;
+        private boolean ended;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0 && !nextChunk()) {
+                return -1;
+            }
+
+            int read = in.read(b, off, Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return Math.min(remaining, in.available());
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (ended) {
+                return false;
+            }
+
+            String line = readLine(in);
+            if (line.length() == 0) {
+                line = readLine(in);
+            }
+            remaining = Integer.parseInt(line.split(";")[0].trim(), 16);
+            if (remaining == 0) {
+                readLine(in);
+                ended = true;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    static class SocketInputStream extends ServletInputStream {
+        private final InputStream in;
+
+        SocketInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+    }
+
+    static class SocketOutputStream extends ServletOutputStream {
+        private final OutputStream out;
+
+        SocketOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static final int SOCKET_BUFFER_SIZE = 8 * 1024;
+    private static final int ACTION_SIZE = 2 * 1024 * 1024;
+    private static final int RESULT_SIZE = 1024 * 1024;
+
+    private SmallBufferServer server;
+    private DispatchTransportClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        SerializationDispatchCodec codec = new SerializationDispatchCodec(LargeAction.class, LargeResult.class,
+                UnreadableAction.class);
+        codec.setMaxArrayLength(ACTION_SIZE);
+
+        server = new SmallBufferServer(new TransportServlet(codec));
+        server.start();
+
+        URL url = new URL("http", "127.0.0.1", server.getPort(), "/transport");
+        client = new DispatchTransportClient(url, codec, 30000);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test(timeout = 60000)
+    public void resultsLargerThanTheSocketBuffersAreReceived() throws Exception {
+        // Given
+        List<LargeAction> actions = new ArrayList<LargeAction>();
+        for (int i = 0; i < 6; ++i) {
+            actions.add(new LargeAction(ACTION_SIZE, RESULT_SIZE));
+        }
+
+        // When
+        List<Object> outcomes = client.executeAll(actions);
+
+        // Then
+        assertEquals(actions.size(), outcomes.size());
+        for (Object outcome : outcomes) {
+            assertEquals(RESULT_SIZE, ((LargeResult) outcome).payload.length);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void actionFailingToBeReadIsReportedAsServiceException() throws Exception {
+        // Given
+        List<Action<?>> actions = new ArrayList<Action<?>>();
+        actions.add(new UnreadableAction());
+        actions.add(new LargeAction(16, 16));
+
+        // When
+        List<Object> outcomes = client.executeAll(actions);
+
+        // Then
+        assertEquals("Invalid action", ((ServiceException) outcomes.get(0)).getMessage());
+        assertEquals(16, ((LargeResult) outcomes.get(1)).payload.length);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    @Test(timeout = 60000)
+    public void smallActionsShareARequest() throws Exception {
+        // Given
+        List<LargeAction> actions = new ArrayList<LargeAction>();
+        for (int i = 0; i < 16; ++i) {
+            actions.add(new LargeAction(16, RESULT_SIZE / 16));
+        }
+
+        // When
+        List<Object> outcomes = client.executeAll(actions);
+
+        // Then
+        assertEquals(actions.size(), outcomes.size());
+    }
+}
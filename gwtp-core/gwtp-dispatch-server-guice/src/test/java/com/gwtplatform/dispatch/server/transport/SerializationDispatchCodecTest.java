@@ -0,0 +1,140 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests what {@link SerializationDispatchCodec} accepts to read.
+ */
+public class SerializationDispatchCodecTest {
+    static class PayloadResult implements Result, Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+    static class PayloadAction implements Action<PayloadResult>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        Object payload;
+
+        PayloadAction(Object payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public String getServiceName() {
+            return Action.DEFAULT_SERVICE_NAME;
+        }
+
+        @Override
+        public boolean isSecured() {
+            return false;
+        }
+    }
+
+    static class UnlistedValue implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private final SerializationDispatchCodec codec = new SerializationDispatchCodec(PayloadAction.class);
+
+    @Test
+    public void allowedActionIsRead() throws IOException {
+        List<Object> payload = new ArrayList<Object>();
+        payload.add("value");
+        payload.add(new int[]{1, 2, 3});
+
+        PayloadAction action = (PayloadAction) roundTrip(new PayloadAction(payload));
+
+        assertEquals("value", ((List<?>) action.payload).get(0));
+    }
+
+    @Test
+    public void unlistedClassIsRejected() {
+        expectRejected(new PayloadAction(new UnlistedValue()));
+    }
+
+    @Test
+    public void hashBasedCollectionIsRejected() {
+        expectRejected(new PayloadAction(new HashSet<String>()));
+    }
+
+    @Test
+    public void longArrayIsRejected() {
+        codec.setMaxArrayLength(10);
+
+        expectRejected(new PayloadAction(new int[11]));
+    }
+
+    @Test
+    public void deepGraphIsRejected() {
+        // Given
+        codec.setMaxDepth(5);
+        List<Object> payload = new ArrayList<Object>();
+        for (int i = 0; i < 10; ++i) {
+            List<Object> parent = new ArrayList<Object>();
+            parent.add(payload);
+            payload = parent;
+        }
+
+        // When / Then
+        expectRejected(new PayloadAction(payload));
+    }
+
+    @Test
+    public void largeGraphIsRejected() {
+        // Given
+        codec.setMaxReferences(100);
+        List<Object> payload = new ArrayList<Object>();
+        for (int i = 0; i < 200; ++i) {
+            payload.add(new int[]{i});
+        }
+
+        // When / Then
+        expectRejected(new PayloadAction(payload));
+    }
+
+    private Action<?> roundTrip(Action<?> action) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.writeAction(action, out);
+
+        return codec.readAction(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private void expectRejected(Action<?> action) {
+        try {
+            roundTrip(action);
+            fail("The action should not be read");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.undojournal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionResult;
+import com.gwtplatform.dispatch.server.undojournal.FileSpillingUndoJournalTest.CountAction;
+import com.gwtplatform.dispatch.server.undojournal.FileSpillingUndoJournalTest.CountResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests the journals created by {@link FileSpillingUndoJournalFactory}.
+ */
+public class FileSpillingUndoJournalFactoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void journalsSpillPastTheThresholdIntoTheDirectory() throws Exception {
+        // Given
+        UndoJournal journal = new FileSpillingUndoJournalFactory(1, folder.getRoot()).createUndoJournal();
+        record(journal, 1);
+
+        // When
+        record(journal, 2);
+
+        // Then
+        assertEquals(1, folder.getRoot().list().length);
+        journal.close();
+    }
+
+    @Test
+    public void journalsHaveTheirOwnFile() throws Exception {
+        // Given
+        FileSpillingUndoJournalFactory factory = new FileSpillingUndoJournalFactory(0, folder.getRoot());
+        UndoJournal first = factory.createUndoJournal();
+        UndoJournal second = factory.createUndoJournal();
+
+        // When
+        record(first, 1);
+        record(second, 2);
+
+        // Then
+        assertNotSame(first, second);
+        assertEquals(2, folder.getRoot().list().length);
+        assertEquals(1, ((CountAction) first.get(0).getAction()).count);
+        assertEquals(2, ((CountAction) second.get(0).getAction()).count);
+        first.close();
+        assertEquals(1, folder.getRoot().list().length);
+        second.close();
+    }
+
+    private void record(UndoJournal journal, int count) {
+        journal.record(new ActionResult<CountAction, CountResult>(new CountAction(count), new CountResult(count),
+                true));
+    }
+}
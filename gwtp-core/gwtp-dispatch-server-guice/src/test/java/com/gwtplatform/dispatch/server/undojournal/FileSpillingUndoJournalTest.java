@@ -0,0 +1,216 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.undojournal;
+
+import java.io.Serializable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionResult;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link FileSpillingUndoJournal} spills actions to its temporary file and reads them back.
+ */
+public class FileSpillingUndoJournalTest {
+    static class CountAction extends UnsecuredActionImpl<CountResult> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int count;
+
+        CountAction(int count) {
+            this.count = count;
+        }
+    }
+
+    static class CountResult implements Result, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int count;
+
+        CountResult(int count) {
+            this.count = count;
+        }
+    }
+
+    static class SerializableTestAction extends UnsecuredActionImpl<TestResult> implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileSpillingUndoJournal journal;
+
+    @Before
+    public void setUp() {
+        journal = new FileSpillingUndoJournal(2, folder.getRoot());
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    public void actionsUpToTheThresholdAreKeptInMemory() throws Exception {
+        // Given
+        ActionResult<CountAction, CountResult> first = record(1, true);
+        ActionResult<CountAction, CountResult> second = record(2, true);
+
+        // When
+        ActionResult<?, ?> read = journal.get(1);
+
+        // Then
+        assertEquals(0, folder.getRoot().list().length);
+        assertSame(second, read);
+        assertSame(first, journal.get(0));
+    }
+
+    @Test
+    public void actionsPastTheThresholdAreWrittenToAFile() throws Exception {
+        // Given
+        record(1, true);
+        record(2, true);
+
+        // When
+        ActionResult<CountAction, CountResult> third = record(3, true);
+
+        // Then
+        assertEquals(1, folder.getRoot().list().length);
+        ActionResult<?, ?> read = journal.get(2);
+        assertNotSame(third, read);
+        assertEquals(3, ((CountAction) read.getAction()).count);
+    }
+
+    @Test
+    public void spilledActionsAreReadBackInRecordingOrder() throws Exception {
+        // Given
+        for (int i = 0; i < 6; i++) {
+            record(i, i % 2 == 0);
+        }
+
+        // When
+        journal.get(5);
+
+        // Then
+        assertEquals(6, journal.size());
+        for (int i = 5; i >= 0; i--) {
+            ActionResult<?, ?> read = journal.get(i);
+            assertEquals(i, ((CountAction) read.getAction()).count);
+            assertEquals(i, ((CountResult) read.getResult()).count);
+            assertEquals(i % 2 == 0, read.isExecuted());
+        }
+    }
+
+    @Test
+    public void nullResultIsWrittenToTheFile() throws Exception {
+        // Given
+        record(1, true);
+        record(2, true);
+
+        // When
+        journal.record(new ActionResult<CountAction, CountResult>(new CountAction(3), null, false));
+
+        // Then
+        assertEquals(1, folder.getRoot().list().length);
+        assertNull(journal.get(2).getResult());
+    }
+
+    @Test
+    public void closeDeletesTheFile() throws Exception {
+        // Given
+        for (int i = 0; i < 4; i++) {
+            record(i, true);
+        }
+
+        // When
+        journal.close();
+
+        // Then
+        assertEquals(0, folder.getRoot().list().length);
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    public void nonSerializableActionIsKeptInMemory() throws Exception {
+        // Given
+        record(1, true);
+        record(2, true);
+
+        // When
+        ActionResult<TestAction, TestResult> nonSerializable = new ActionResult<TestAction, TestResult>(
+                new TestAction("message"), new TestResult(true), true);
+        journal.record(nonSerializable);
+
+        // Then
+        assertEquals(0, folder.getRoot().list().length);
+        assertSame(nonSerializable, journal.get(2));
+    }
+
+    @Test
+    public void serializableActionWithNonSerializableResultIsKeptInMemory() throws Exception {
+        // Given
+        record(1, true);
+        record(2, true);
+
+        // When
+        ActionResult<?, ?> nonSerializable = new ActionResult<UnsecuredActionImpl<TestResult>, TestResult>(
+                new SerializableTestAction(), new TestResult(true), true);
+        journal.record(nonSerializable);
+        record(3, true);
+
+        // Then
+        assertSame(nonSerializable, journal.get(2));
+        assertEquals(3, ((CountAction) journal.get(3).getAction()).count);
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void spilledActionsShareASingleFile() throws Exception {
+        // Given
+        journal = new FileSpillingUndoJournal(0, folder.getRoot());
+
+        // When
+        record(1, true);
+        record(2, true);
+
+        // Then
+        assertEquals(1, folder.getRoot().list().length);
+        assertTrue(folder.getRoot().listFiles()[0].getName().endsWith(".journal"));
+    }
+
+    private ActionResult<CountAction, CountResult> record(int count, boolean executed) {
+        ActionResult<CountAction, CountResult> actionResult = new ActionResult<CountAction, CountResult>(
+                new CountAction(count), new CountResult(count), executed);
+        journal.record(actionResult);
+        return actionResult;
+    }
+}
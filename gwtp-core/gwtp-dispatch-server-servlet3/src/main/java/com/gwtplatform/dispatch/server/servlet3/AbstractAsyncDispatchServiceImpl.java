@@ -0,0 +1,299 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.servlet3;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gwt.user.client.rpc.IncompatibleRemoteServiceException;
+import com.google.gwt.user.client.rpc.RpcTokenException;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.RPC;
+import com.google.gwt.user.server.rpc.RPCRequest;
+import com.google.gwt.user.server.rpc.RPCServletUtils;
+import com.gwtplatform.dispatch.server.AbstractDispatchServiceImpl;
+import com.gwtplatform.dispatch.server.ActionCallback;
+import com.gwtplatform.dispatch.server.AsyncDispatch;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * A {@link AbstractDispatchServiceImpl} that executes actions with {@link AsyncDispatch#executeAsync}, so that the
+ * container thread is released while an
+ * {@link com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler AsyncActionHandler} waits. The response is
+ * written and the request completed by the thread that completes the action.
+ * <p/>
+ * Requests are executed synchronously, like with {@link AbstractDispatchServiceImpl}, when the request doesn't support
+ * asynchronous processing or the {@link Dispatch} isn't an {@link AsyncDispatch}. The servlet, and every filter in
+ * front of it, must be declared with {@code <async-supported>true</async-supported>}.
+ * <p/>
+ * The security cookie is checked on the container thread. Handlers completing on another thread can't use the
+ * thread-local request.
+ */
+public abstract class AbstractAsyncDispatchServiceImpl extends AbstractDispatchServiceImpl {
+
+    /**
+     * How long an action may take by default before its request times out, in milliseconds.
+     */
+    public static final long DEFAULT_ASYNC_TIMEOUT_MILLIS = 30000;
+
+    private static final long serialVersionUID = 2871385712465342918L;
+    private static final String EXECUTE_METHOD_NAME = "execute";
+
+    /**
+     * Writes the response of an asynchronously executed action, only once, and completes the request.
+     */
+    private class AsyncResponse implements ActionCallback<Result>, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final RPCRequest rpcRequest;
+        private final Action<?> action;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        AsyncResponse(AsyncContext asyncContext, HttpServletRequest request, HttpServletResponse response,
+                RPCRequest rpcRequest, Action<?> action) {
+            this.asyncContext = asyncContext;
+            this.request = request;
+            this.response = response;
+            this.rpcRequest = rpcRequest;
+            this.action = action;
+        }
+
+        @Override
+        public void onSuccess(Result result) {
+            if (completed.get()) {
+                return;
+            }
+
+            String responsePayload;
+            try {
+                responsePayload = RPC.encodeResponseForSuccess(rpcRequest.getMethod(), result,
+                        rpcRequest.getSerializationPolicy(), rpcRequest.getFlags());
+            } catch (SerializationException e) {
+                completeWithUnexpectedFailure(e);
+                return;
+            }
+            complete(responsePayload);
+        }
+
+        @Override
+        public void onFailure(Throwable caught) {
+            if (completed.get()) {
+                return;
+            }
+
+            String responsePayload;
+            try {
+                responsePayload = RPC.encodeResponseForFailure(rpcRequest.getMethod(), toClientFailure(action, caught),
+                        rpcRequest.getSerializationPolicy(), rpcRequest.getFlags());
+            } catch (SerializationException e) {
+                completeWithUnexpectedFailure(e);
+                return;
+            }
+            complete(responsePayload);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            onFailure(new ServiceException("Timed out while executing " + action.getClass().getName()));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            if (completed.compareAndSet(false, true)) {
+                logger.log(Level.WARNING, "Error while executing " + action.getClass().getName(), event.getThrowable());
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        private void complete(String responsePayload) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                respond(request, response, action, responsePayload);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Couldn't write the result of " + action.getClass().getName(), e);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+        private void completeWithUnexpectedFailure(Throwable e) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                log("Exception while dispatching incoming RPC call", e);
+                RPCServletUtils.writeResponseForUnexpectedFailure(getServletContext(), response, e);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+    }
+
+    private volatile long asyncTimeoutMillis = DEFAULT_ASYNC_TIMEOUT_MILLIS;
+
+    protected AbstractAsyncDispatchServiceImpl(Logger logger, Dispatch dispatch, RequestProvider requestProvider) {
+        super(logger, dispatch, requestProvider);
+    }
+
+    /**
+     * Sets how long an action may take before its request times out. Defaults to
+     * {@link #DEFAULT_ASYNC_TIMEOUT_MILLIS}.
+     *
+     * @param asyncTimeoutMillis The timeout in milliseconds, or {@code 0} to never time out.
+     */
+    public void setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+    }
+
+    /**
+     * Sends POST requests through {@link #doAsyncPost}.
+     */
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+            IOException {
+        if ("POST".equals(request.getMethod())) {
+            doAsyncPost(request, response);
+        } else {
+            super.service(request, response);
+        }
+    }
+
+    /**
+     * Handles a POST request, executing the action asynchronously when possible and with {@link #doCompressedPost}
+     * otherwise. Use this instead of {@link #doPost} when requests are handed over without going through
+     * {@link #service}.
+     *
+     * @param request The request.
+     * @param response The response.
+     */
+    protected void doAsyncPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!request.isAsyncSupported() || !(dispatch instanceof AsyncDispatch)) {
+            doCompressedPost(request, response);
+            return;
+        }
+
+        synchronized (this) {
+            if (perThreadRequest == null) {
+                perThreadRequest = new ThreadLocal<HttpServletRequest>();
+            }
+            if (perThreadResponse == null) {
+                perThreadResponse = new ThreadLocal<HttpServletResponse>();
+            }
+        }
+
+        perThreadRequest.set(request);
+        perThreadResponse.set(response);
+        try {
+            processAsyncPost(request, response);
+        } catch (Throwable e) {
+            // Give a subclass a chance to either handle the exception or rethrow it
+            doUnexpectedFailure(e);
+        } finally {
+            perThreadRequest.set(null);
+            perThreadResponse.set(null);
+        }
+    }
+
+    /**
+     * Mirrors {@link #processPost}, but completes the execution of actions asynchronously.
+     */
+    private void processAsyncPost(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+            IOException, SerializationException {
+        String requestPayload = readContent(request);
+        onBeforeRequestDeserialized(requestPayload);
+
+        checkPermutationStrongName();
+
+        RPCRequest rpcRequest;
+        try {
+            rpcRequest = RPC.decodeRequest(requestPayload, getClass(), this);
+            onAfterRequestDeserialized(rpcRequest);
+        } catch (IncompatibleRemoteServiceException e) {
+            log("An IncompatibleRemoteServiceException was thrown while processing this call.", e);
+            respond(request, response, null, RPC.encodeResponseForFailure(null, e));
+            return;
+        } catch (RpcTokenException e) {
+            log("An RpcTokenException was thrown while processing this call.", e);
+            respond(request, response, null, RPC.encodeResponseForFailure(null, e));
+            return;
+        }
+
+        Method method = rpcRequest.getMethod();
+        Object[] parameters = rpcRequest.getParameters();
+        Action<?> action = (Action<?>) parameters[1];
+        if (!EXECUTE_METHOD_NAME.equals(method.getName())) {
+            String responsePayload = RPC.invokeAndEncodeResponse(this, method, parameters,
+                    rpcRequest.getSerializationPolicy(), rpcRequest.getFlags());
+            respond(request, response, action, responsePayload);
+            return;
+        }
+
+        try {
+            checkSecurityCookie((String) parameters[0], action);
+        } catch (ServiceException e) {
+            String responsePayload = RPC.encodeResponseForFailure(method, e, rpcRequest.getSerializationPolicy(),
+                    rpcRequest.getFlags());
+            respond(request, response, action, responsePayload);
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(asyncTimeoutMillis);
+        AsyncResponse asyncResponse = new AsyncResponse(asyncContext, request, response, rpcRequest, action);
+        asyncContext.addListener(asyncResponse);
+
+        executeAsync(action, asyncResponse);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeAsync(Action<?> action, ActionCallback<Result> callback) {
+        ((AsyncDispatch) dispatch).executeAsync((Action<Result>) action, callback);
+    }
+
+    private void respond(HttpServletRequest request, HttpServletResponse response, Action<?> action,
+            String responsePayload) throws IOException {
+        onAfterResponseSerialized(responsePayload);
+        writeActionResponse(request, response, action, responsePayload);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.servlet3.guice;
+
+import java.util.logging.Logger;
+
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+
+import com.google.inject.Inject;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.DispatchExceptionPolicy;
+import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.server.ResponseCompressionPolicy;
+import com.gwtplatform.dispatch.server.guice.actionhandlervalidator.ActionHandlerValidatorWarmUp;
+import com.gwtplatform.dispatch.server.guice.metrics.DispatchMetricsExporter;
+import com.gwtplatform.dispatch.server.servlet3.AbstractAsyncDispatchServiceImpl;
+import com.gwtplatform.dispatch.shared.SecurityCookie;
+
+/**
+ * The Guice implementation of {@link AbstractAsyncDispatchServiceImpl}, to serve in place of
+ * {@link com.gwtplatform.dispatch.server.guice.DispatchServiceImpl}. {@code GuiceFilter} must be declared with
+ * {@code <async-supported>true</async-supported>} in {@code web.xml}.
+ */
+@Singleton
+public class AsyncDispatchServiceImpl extends AbstractAsyncDispatchServiceImpl {
+
+    private static final long serialVersionUID = -6042373284391541773L;
+
+    @Inject(optional = true)
+    @SecurityCookie
+    protected String securityCookieName;
+
+    private ActionHandlerValidatorWarmUp warmUp;
+    private DispatchMetricsExporter metricsExporter;
+
+    @Inject
+    public AsyncDispatchServiceImpl(Logger logger, Dispatch dispatch, RequestProvider requestProvider) {
+        super(logger, dispatch, requestProvider);
+    }
+
+    /**
+     * Starts warming up the handlers, if requested with
+     * {@link com.gwtplatform.dispatch.server.guice.DispatchModule.Builder#warmUpHandlers(boolean)}.
+     */
+    @Override
+    public void init() throws ServletException {
+        super.init();
+
+        if (warmUp != null) {
+            warmUp.start();
+        }
+    }
+
+    /**
+     * Unregisters the dispatch metrics MBean, if requested with
+     * {@link com.gwtplatform.dispatch.server.guice.DispatchModule.Builder#dispatchMetrics(Class)}.
+     */
+    @Override
+    public void destroy() {
+        if (metricsExporter != null) {
+            metricsExporter.unregister();
+        }
+
+        super.destroy();
+    }
+
+    @Override
+    public String getSecurityCookieName() {
+        return securityCookieName;
+    }
+
+    @Override
+    @Inject(optional = true)
+    public void setExceptionPolicy(DispatchExceptionPolicy exceptionPolicy) {
+        super.setExceptionPolicy(exceptionPolicy);
+    }
+
+    @Inject(optional = true)
+    void setWarmUp(ActionHandlerValidatorWarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    @Inject(optional = true)
+    void setMetricsExporter(DispatchMetricsExporter metricsExporter) {
+        this.metricsExporter = metricsExporter;
+    }
+
+    @Override
+    @Inject(optional = true)
+    public void setCompressionPolicy(ResponseCompressionPolicy compressionPolicy) {
+        super.setCompressionPolicy(compressionPolicy);
+    }
+}
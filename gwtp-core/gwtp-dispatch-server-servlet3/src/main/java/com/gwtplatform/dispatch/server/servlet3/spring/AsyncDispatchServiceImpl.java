@@ -0,0 +1,93 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.servlet3.spring;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.context.ServletContextAware;
+
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.DispatchExceptionPolicy;
+import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.server.ResponseCompressionPolicy;
+import com.gwtplatform.dispatch.server.servlet3.AbstractAsyncDispatchServiceImpl;
+
+/**
+ * The Spring implementation of {@link AbstractAsyncDispatchServiceImpl}, to declare in place of
+ * {@link com.gwtplatform.dispatch.server.spring.DispatchServiceImpl}. The servlet handing requests over to it must be
+ * declared with {@code <async-supported>true</async-supported>} in {@code web.xml}.
+ */
+public class AsyncDispatchServiceImpl extends AbstractAsyncDispatchServiceImpl implements HttpRequestHandler,
+        ServletContextAware {
+
+    private static final long serialVersionUID = 4439581370291685012L;
+
+    private ServletContext servletContext;
+
+    @Autowired(required = false)
+    protected String securityCookieName;
+
+    @Autowired
+    public AsyncDispatchServiceImpl(Logger logger, Dispatch dispatch, RequestProvider requestProvider) {
+        super(logger, dispatch, requestProvider);
+    }
+
+    @Override
+    public String getSecurityCookieName() {
+        return securityCookieName;
+    }
+
+    public void setSecurityCookieName(String securityCookieName) {
+        this.securityCookieName = securityCookieName;
+    }
+
+    @Override
+    @Autowired(required = false)
+    public void setExceptionPolicy(DispatchExceptionPolicy exceptionPolicy) {
+        super.setExceptionPolicy(exceptionPolicy);
+    }
+
+    @Override
+    @Autowired(required = false)
+    public void setCompressionPolicy(ResponseCompressionPolicy compressionPolicy) {
+        super.setCompressionPolicy(compressionPolicy);
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        doAsyncPost(request, response);
+    }
+
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.spring;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.server.actionhandler.ChunkedResultCursors;
+import com.gwtplatform.dispatch.server.actionhandler.FetchChunkActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.shared.ChunkedResult;
+import com.gwtplatform.dispatch.shared.FetchChunkAction;
+
+/**
+ * Provides the {@link ChunkedResultCursors} needed by
+ * {@link com.gwtplatform.dispatch.server.actionhandler.AbstractChunkedActionHandler AbstractChunkedActionHandler}s
+ * and registers the handler of {@link FetchChunkAction}, which serves their next chunks. Import it in the
+ * configuration of the application to support chunked results.
+ * <p/>
+ * Fetching a chunk is a secured action, so a {@link com.gwtplatform.dispatch.shared.SecurityCookie SecurityCookie}
+ * must be configured, and a {@link RequestProvider} bean is needed to identify the client reading the chunks.
+ */
+@Configuration
+public class ChunkedResultsModule extends HandlerModule {
+
+    @Bean
+    public ChunkedResultCursors getChunkedResultCursors() {
+        return new ChunkedResultCursors(applicationContext.getBean(ActionHandlerValidatorRegistry.class),
+                applicationContext.getBean(RequestProvider.class));
+    }
+
+    @Bean
+    public FetchChunkActionHandler getFetchChunkActionHandler() {
+        return new FetchChunkActionHandler(getChunkedResultCursors());
+    }
+
+    @Override
+    protected void configureHandlers() {
+        this.<FetchChunkAction, ChunkedResult<?>>bindHandler(FetchChunkAction.class, FetchChunkActionHandler.class);
+    }
+}
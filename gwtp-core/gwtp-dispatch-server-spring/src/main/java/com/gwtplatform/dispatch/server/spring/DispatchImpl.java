@@ -20,6 +20,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import com.gwtplatform.dispatch.server.AbstractDispatchImpl;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.metrics.DispatchMetrics;
+import com.gwtplatform.dispatch.server.undojournal.UndoJournalFactory;
 
 /**
  * @author Peter Simun
@@ -30,4 +32,16 @@ public class DispatchImpl extends AbstractDispatchImpl {
     public DispatchImpl(ActionHandlerValidatorRegistry actionHandlerValidatorRegistry) {
         super(actionHandlerValidatorRegistry);
     }
+
+    @Override
+    @Autowired(required = false)
+    public void setDispatchMetrics(DispatchMetrics dispatchMetrics) {
+        super.setDispatchMetrics(dispatchMetrics);
+    }
+
+    @Override
+    @Autowired(required = false)
+    public void setUndoJournalFactory(UndoJournalFactory undoJournalFactory) {
+        super.setUndoJournalFactory(undoJournalFactory);
+    }
 }
@@ -22,9 +22,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 
+import com.gwtplatform.dispatch.server.AbstractDispatchImpl;
 import com.gwtplatform.dispatch.server.Dispatch;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.LazyActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptorLinkerHelper;
 import com.gwtplatform.dispatch.server.spring.actionhandlervalidator.ActionHandlerValidatorLinker;
 import com.gwtplatform.dispatch.server.spring.actionhandlervalidator.LazyActionHandlerValidatorRegistryImpl;
 import com.gwtplatform.dispatch.server.spring.utils.SpringUtils;
@@ -82,6 +84,12 @@ public class DispatchModule {
     @Bean
     public Dispatch getDispatch() {
         Dispatch instance = SpringUtils.getOrCreate(context, dispatchClass);
+
+        if (instance instanceof AbstractDispatchImpl) {
+            ActionInterceptorLinkerHelper.linkInterceptors(new SpringBeanProvider(context),
+                    (AbstractDispatchImpl) instance);
+        }
+
         return instance;
     }
 }
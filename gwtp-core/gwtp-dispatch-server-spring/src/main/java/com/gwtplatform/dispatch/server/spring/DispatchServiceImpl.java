@@ -31,7 +31,9 @@ import org.springframework.web.context.ServletContextAware;
 
 import com.gwtplatform.dispatch.server.AbstractDispatchServiceImpl;
 import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.DispatchExceptionPolicy;
 import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.server.ResponseCompressionPolicy;
 
 /**
  * @author Peter Simun
@@ -62,10 +64,22 @@ public class DispatchServiceImpl extends AbstractDispatchServiceImpl implements
         this.securityCookieName = securityCookieName;
     }
 
+    @Override
+    @Autowired(required = false)
+    public void setExceptionPolicy(DispatchExceptionPolicy exceptionPolicy) {
+        super.setExceptionPolicy(exceptionPolicy);
+    }
+
+    @Override
+    @Autowired(required = false)
+    public void setCompressionPolicy(ResponseCompressionPolicy compressionPolicy) {
+        super.setCompressionPolicy(compressionPolicy);
+    }
+
     @Override
     public void handleRequest(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        doPost(request, response);
+        doCompressedPost(request, response);
     }
 
     @Override
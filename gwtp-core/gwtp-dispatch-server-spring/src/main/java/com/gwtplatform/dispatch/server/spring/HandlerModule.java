@@ -23,6 +23,8 @@ import org.springframework.context.annotation.Import;
 import com.gwtplatform.dispatch.server.actionhandler.ActionHandler;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorClass;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorMapImpl;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptor;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptorClass;
 import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
 import com.gwtplatform.dispatch.server.spring.actionvalidator.DefaultActionValidator;
 import com.gwtplatform.dispatch.server.spring.utils.SpringUtils;
@@ -53,5 +55,13 @@ public abstract class HandlerModule {
                 actionValidator)));
     }
 
+    /**
+     * Registers an {@link ActionInterceptor} around the execution of every action. Interceptors are called in the
+     * order they are bound and must be available as beans.
+     */
+    protected void bindActionInterceptor(Class<? extends ActionInterceptor> actionInterceptorClass) {
+        SpringUtils.registerBean(applicationContext, new ActionInterceptorClass(actionInterceptorClass));
+    }
+
     protected abstract void configureHandlers();
 }
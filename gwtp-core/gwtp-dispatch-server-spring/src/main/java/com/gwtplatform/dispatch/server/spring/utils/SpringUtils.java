@@ -21,7 +21,6 @@ import org.springframework.beans.factory.BeanDefinitionStoreException;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
-import org.springframework.beans.factory.support.DefaultBeanNameGenerator;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.ApplicationContext;
@@ -59,9 +58,7 @@ public class SpringUtils {
         if (applicationContext instanceof GenericApplicationContext) {
             DefaultListableBeanFactory beanFactory = ((GenericApplicationContext) applicationContext)
                     .getDefaultListableBeanFactory();
-            beanFactory.registerSingleton(
-                    new DefaultBeanNameGenerator().generateBeanName(createBeanDefinition(instance), beanFactory),
-                    instance);
+            beanFactory.registerSingleton(generateName(beanFactory, createBeanDefinition(instance)), instance);
         } else if (applicationContext instanceof AbstractRefreshableWebApplicationContext) {
             ConfigurableListableBeanFactory beanFactory = ((AbstractRefreshableWebApplicationContext)
                     applicationContext).getBeanFactory();
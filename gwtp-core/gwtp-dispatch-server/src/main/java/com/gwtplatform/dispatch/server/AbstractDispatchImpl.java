@@ -16,13 +16,26 @@
 
 package com.gwtplatform.dispatch.server;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptor;
+import com.gwtplatform.dispatch.server.actioninterceptor.ActionInterceptorChain;
 
 import com.gwtplatform.dispatch.server.actionhandler.ActionHandler;
 import com.gwtplatform.dispatch.server.actionhandler.ActionResult;
+import com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.CompactUndoActionHandler;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
 import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
+import com.gwtplatform.dispatch.server.actionvalidator.MemoizedActionValidator;
+import com.gwtplatform.dispatch.server.metrics.DispatchMetrics;
+import com.gwtplatform.dispatch.server.undojournal.InMemoryUndoJournal;
+import com.gwtplatform.dispatch.server.undojournal.UndoJournal;
+import com.gwtplatform.dispatch.server.undojournal.UndoJournalFactory;
 import com.gwtplatform.dispatch.shared.Action;
 import com.gwtplatform.dispatch.shared.ActionException;
 import com.gwtplatform.dispatch.shared.Result;
@@ -46,30 +59,149 @@ import com.gwtplatform.dispatch.shared.UnsupportedActionException;
  * @see com.gwtplatform.dispatch.shared.DispatchServiceAsync
  * @see com.gwtplatform.dispatch.server.guice.DispatchServiceImpl
  */
-public abstract class AbstractDispatchImpl implements Dispatch {
+public abstract class AbstractDispatchImpl implements AsyncDispatch {
+
+    /**
+     * How an action reaches {@link #doExecute(Action, DefaultExecutionContext, Nesting)}.
+     */
+    private enum Nesting {
+        /**
+         * Sent to the dispatch.
+         */
+        TOP_LEVEL,
+        /**
+         * Executed by another action, or by a rollback, and not recorded.
+         */
+        NESTED,
+        /**
+         * Executed by another action and recorded, to be undone if the surrounding action fails.
+         */
+        NESTED_RECORDED
+    }
+
+    /**
+     * Identifies the verdict of a {@link MemoizedActionValidator} for actions with a non-null validation key.
+     */
+    private static class ValidationKey {
+        private final Class<?> actionValidatorClass;
+        private final Object key;
+
+        private ValidationKey(Class<?> actionValidatorClass, Object key) {
+            this.actionValidatorClass = actionValidatorClass;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ValidationKey)) {
+                return false;
+            }
+
+            ValidationKey other = (ValidationKey) obj;
+            return actionValidatorClass == other.actionValidatorClass && key.equals(other.key);
+        }
 
+        @Override
+        public int hashCode() {
+            return 31 * actionValidatorClass.hashCode() + key.hashCode();
+        }
+    }
+
+    /**
+     * Most actions never execute nested actions, so the journal of executed actions is only created when the first
+     * nested action is recorded. The verdicts of {@link MemoizedActionValidator}s are likewise only allocated when
+     * one is used.
+     */
     private static class DefaultExecutionContext implements ExecutionContext {
 
-        private final List<ActionResult<?, ?>> actionResults;
         private final AbstractDispatchImpl dispatch;
+        private UndoJournal undoJournal;
+        private boolean closed;
+        private Map<Object, Boolean> validations;
 
         private DefaultExecutionContext(AbstractDispatchImpl dispatch) {
             this.dispatch = dispatch;
-            this.actionResults = new java.util.ArrayList<ActionResult<?, ?>>();
         }
 
+        /**
+         * Executes a nested action. It is recorded once its handler returns, so that results returned by an
+         * {@link ActionInterceptor} without calling the handler, such as cached results, are not undone.
+         */
         @Override
         public <A extends Action<R>, R extends Result> R execute(A action) throws ActionException, ServiceException {
-            R result = dispatch.doExecute(action, this);
-            actionResults.add(new ActionResult<A, R>(action, result, true));
-            return result;
+            return dispatch.doExecute(action, this, Nesting.NESTED_RECORDED);
         }
 
         @Override
         public <A extends Action<R>, R extends Result> void undo(A action, R result) throws ActionException,
                 ServiceException {
-            dispatch.doExecute(action, this);
-            actionResults.add(new ActionResult<A, R>(action, result, false));
+            dispatch.doExecute(action, this, Nesting.NESTED);
+            // Rolling back an undo executes the action again, which doesn't need the result.
+            record(new ActionResult<A, R>(action, null, false));
+        }
+
+        /**
+         * Logs an executed or undone action. Synchronized since actions of a
+         * {@link com.gwtplatform.dispatch.shared.ParallelBatchAction ParallelBatchAction} share this context across
+         * threads. Actions completing after the context was closed, such as timed out actions of a parallel batch,
+         * are not logged.
+         */
+        private synchronized void record(ActionResult<?, ?> actionResult) {
+            if (closed) {
+                return;
+            }
+            if (undoJournal == null) {
+                undoJournal = dispatch.createUndoJournal();
+            }
+            undoJournal.record(actionResult);
+        }
+
+        /**
+         * Closes the context and returns its journal, which the caller has to close.
+         */
+        private synchronized UndoJournal close() {
+            closed = true;
+            UndoJournal journal = undoJournal;
+            undoJournal = null;
+            return journal;
+        }
+
+        private void closeJournal() {
+            UndoJournal journal = close();
+            if (journal != null) {
+                journal.close();
+            }
+        }
+
+        /**
+         * Validates an action, reusing the verdict of a {@link MemoizedActionValidator} given earlier in this context.
+         * Actions validated concurrently by the same validator may both call it.
+         */
+        private boolean isValid(ActionValidator actionValidator, Action<?> action) throws ActionException {
+            if (!(actionValidator instanceof MemoizedActionValidator)) {
+                return actionValidator.isValid(action);
+            }
+
+            Object key = ((MemoizedActionValidator) actionValidator).getValidationKey(action);
+            Object validationKey = key == null ? actionValidator.getClass()
+                    : new ValidationKey(actionValidator.getClass(), key);
+
+            synchronized (this) {
+                Boolean valid = validations == null ? null : validations.get(validationKey);
+                if (valid != null) {
+                    return valid;
+                }
+            }
+
+            boolean valid = actionValidator.isValid(action);
+            synchronized (this) {
+                if (validations == null) {
+                    validations = new HashMap<Object, Boolean>();
+                }
+                validations.put(validationKey, valid);
+            }
+
+            return valid;
         }
 
         /**
@@ -79,43 +211,243 @@ public abstract class AbstractDispatchImpl implements Dispatch {
          * @throws ServiceException If there is a low level problem while rolling back.
          */
         private void rollback() throws ActionException, ServiceException {
+            UndoJournal journal = close();
+            if (journal == null) {
+                return;
+            }
+
             DefaultExecutionContext ctx = new DefaultExecutionContext(dispatch);
-            for (int i = actionResults.size() - 1; i >= 0; i--) {
-                ActionResult<?, ?> actionResult = actionResults.get(i);
-                rollback(actionResult, ctx);
+            try {
+                for (int i = journal.size() - 1; i >= 0; i--) {
+                    ActionResult<?, ?> actionResult = journal.get(i);
+                    rollback(actionResult, ctx);
+                }
+            } finally {
+                journal.close();
+                ctx.closeJournal();
             }
         }
 
         private <A extends Action<R>, R extends Result> void rollback(ActionResult<A, R> actionResult,
-                ExecutionContext ctx) throws ActionException,
+                DefaultExecutionContext ctx) throws ActionException,
                 ServiceException {
             if (actionResult.isExecuted()) {
                 dispatch.doUndo(actionResult.getAction(), actionResult.getResult(), ctx);
             } else {
-                dispatch.doExecute(actionResult.getAction(), ctx);
+                dispatch.doExecute(actionResult.getAction(), ctx, Nesting.NESTED);
             }
         }
     }
 
+    /**
+     * Walks the {@link ActionInterceptor}s of the dispatch before calling the handler. A chain is only created when
+     * interceptors are registered. Each interceptor is given its own immutable position in the chain, so that
+     * {@link #proceed()} can be called again, or from another thread.
+     */
+    private static class DefaultActionInterceptorChain<A extends Action<R>, R extends Result>
+            implements ActionInterceptorChain<A, R> {
+
+        private final AbstractDispatchImpl dispatch;
+        private final ActionInterceptor[] actionInterceptors;
+        private final int index;
+        private final ActionHandler<A, R> handler;
+        private final A action;
+        private final DefaultExecutionContext ctx;
+        private final Nesting nesting;
+
+        private DefaultActionInterceptorChain(AbstractDispatchImpl dispatch, ActionInterceptor[] actionInterceptors,
+                int index, ActionHandler<A, R> handler, A action, DefaultExecutionContext ctx, Nesting nesting) {
+            this.dispatch = dispatch;
+            this.actionInterceptors = actionInterceptors;
+            this.index = index;
+            this.handler = handler;
+            this.action = action;
+            this.ctx = ctx;
+            this.nesting = nesting;
+        }
+
+        @Override
+        public R proceed() throws ActionException, ServiceException {
+            if (index < actionInterceptors.length) {
+                return actionInterceptors[index].intercept(action, ctx, new DefaultActionInterceptorChain<A, R>(
+                        dispatch, actionInterceptors, index + 1, handler, action, ctx, nesting));
+            }
+
+            return dispatch.executeHandler(handler, action, ctx, nesting);
+        }
+
+        @Override
+        public boolean isNested() {
+            return nesting != Nesting.TOP_LEVEL;
+        }
+    }
+
+    /**
+     * Completes an asynchronous top-level action: rolls back its nested actions if it failed, records its metrics and
+     * notifies the caller, only once.
+     */
+    private static class DispatchCallback<A extends Action<R>, R extends Result> implements ActionCallback<R> {
+        private final A action;
+        private final DefaultExecutionContext ctx;
+        private final DispatchMetrics metrics;
+        private final long start;
+        private final ActionCallback<R> callback;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private DispatchCallback(A action, DefaultExecutionContext ctx, DispatchMetrics metrics,
+                ActionCallback<R> callback) {
+            this.action = action;
+            this.ctx = ctx;
+            this.metrics = metrics;
+            this.start = metrics == null ? 0 : System.nanoTime();
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess(R result) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+
+            ctx.closeJournal();
+            if (metrics != null) {
+                metrics.onExecuted(action.getClass(), System.nanoTime() - start);
+            }
+            callback.onSuccess(result);
+        }
+
+        @Override
+        public void onFailure(Throwable caught) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+
+            Exception failure = toDispatchFailure(action, caught);
+            try {
+                ctx.rollback();
+            } catch (ActionException e) {
+                failure = e;
+            } catch (ServiceException e) {
+                failure = e;
+            } finally {
+                ctx.closeJournal();
+            }
+
+            if (metrics != null) {
+                metrics.onFailed(action.getClass(), failure, System.nanoTime() - start);
+            }
+            callback.onFailure(failure);
+        }
+    }
+
+    private static final ActionInterceptor[] NO_INTERCEPTORS = new ActionInterceptor[0];
+
     private static final String actionValidatorMessage = " couldn't allow access to action : ";
 
     private final ActionHandlerValidatorRegistry actionHandlerValidatorRegistry;
 
+    private volatile DispatchMetrics dispatchMetrics;
+    private volatile ActionInterceptor[] actionInterceptors = NO_INTERCEPTORS;
+    private volatile UndoJournalFactory undoJournalFactory;
+
     protected AbstractDispatchImpl(ActionHandlerValidatorRegistry actionHandlerValidatorRegistry) {
         this.actionHandlerValidatorRegistry = actionHandlerValidatorRegistry;
     }
 
+    /**
+     * Sets the {@link DispatchMetrics} notified of every executed action. Nothing is measured while no metrics are
+     * set.
+     *
+     * @param dispatchMetrics The {@link DispatchMetrics}, or {@code null} to stop recording.
+     */
+    public void setDispatchMetrics(DispatchMetrics dispatchMetrics) {
+        this.dispatchMetrics = dispatchMetrics;
+    }
+
+    /**
+     * Sets the factory of the {@link UndoJournal}s keeping the nested actions that will be rolled back if the
+     * surrounding action fails. By default they are kept in memory.
+     *
+     * @param undoJournalFactory The {@link UndoJournalFactory}, or {@code null} to keep the nested actions in memory.
+     */
+    public void setUndoJournalFactory(UndoJournalFactory undoJournalFactory) {
+        this.undoJournalFactory = undoJournalFactory;
+    }
+
+    /**
+     * Sets the {@link ActionInterceptor}s surrounding the execution of every action, replacing any previously set.
+     *
+     * @param actionInterceptors The interceptors, in the order they are called.
+     */
+    public void setActionInterceptors(List<? extends ActionInterceptor> actionInterceptors) {
+        this.actionInterceptors = actionInterceptors.toArray(new ActionInterceptor[actionInterceptors.size()]);
+    }
+
     @Override
     public <A extends Action<R>, R extends Result> R execute(A action) throws ActionException, ServiceException {
         DefaultExecutionContext ctx = new DefaultExecutionContext(this);
         try {
-            return doExecute(action, ctx);
+            return doExecute(action, ctx, Nesting.TOP_LEVEL);
         } catch (ActionException e) {
             ctx.rollback();
             throw e;
         } catch (ServiceException e) {
             ctx.rollback();
             throw e;
+        } finally {
+            ctx.closeJournal();
+        }
+    }
+
+    /**
+     * Executes the action with {@link AsyncActionHandler#executeAsync} if its handler is an {@link AsyncActionHandler},
+     * after validating it. Other actions are executed synchronously, and so are all actions while
+     * {@link ActionInterceptor}s are set, since interceptors wrap a synchronous call.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <A extends Action<R>, R extends Result> void executeAsync(A action, ActionCallback<R> callback) {
+        ActionHandlerValidatorInstance handlerValidator;
+        try {
+            handlerValidator = findHandlerValidator(action);
+        } catch (UnsupportedActionException e) {
+            callback.onFailure(e);
+            return;
+        } catch (RuntimeException e) {
+            callback.onFailure(toDispatchFailure(action, e));
+            return;
+        }
+
+        ActionHandler<?, ?> handler = handlerValidator.getActionHandler();
+        if (!(handler instanceof AsyncActionHandler) || actionInterceptors.length > 0) {
+            R result;
+            try {
+                result = execute(action);
+            } catch (Exception e) {
+                callback.onFailure(toDispatchFailure(action, e));
+                return;
+            }
+            callback.onSuccess(result);
+            return;
+        }
+
+        DispatchMetrics metrics = dispatchMetrics;
+        DefaultExecutionContext ctx = new DefaultExecutionContext(this);
+        DispatchCallback<A, R> dispatchCallback = new DispatchCallback<A, R>(action, ctx, metrics, callback);
+        ActionValidator actionValidator = handlerValidator.getActionValidator();
+        try {
+            if (!ctx.isValid(actionValidator, action)) {
+                if (metrics != null) {
+                    metrics.onRejected(action.getClass(), actionValidator.getClass());
+                }
+                dispatchCallback.onFailure(new ServiceException(actionValidator.getClass().getName()
+                        + actionValidatorMessage + action.getClass().getName()));
+                return;
+            }
+
+            ((AsyncActionHandler<A, R>) handler).executeAsync(action, ctx, dispatchCallback);
+        } catch (Exception e) {
+            dispatchCallback.onFailure(e);
         }
     }
 
@@ -131,52 +463,87 @@ public abstract class AbstractDispatchImpl implements Dispatch {
         } catch (ServiceException e) {
             ctx.rollback();
             throw e;
+        } finally {
+            ctx.closeJournal();
         }
     }
 
     /**
-     * Every single action will be executed by this function and validated by the {@link ActionValidator}.
+     * Every single action will be executed by this function and validated by the {@link ActionValidator}. Accepted
+     * actions go through the {@link ActionInterceptor}s before reaching their {@link ActionHandler}.
      *
      * @param <A>    Type of associated {@link Action} type.
      * @param <R>    Type of associated {@link Result} type.
      * @param action The {@link Action} to execute
      * @param ctx    The {@link ExecutionContext} associated with the {@link Action}
+     * @param nesting How the action is executed, and whether to record it in {@code ctx}
      * @return The {@link Result} to the client
      * @throws ActionException
      * @throws ServiceException
      */
-    private <A extends Action<R>, R extends Result> R doExecute(A action,
-            ExecutionContext ctx) throws ActionException, ServiceException {
-        ActionHandler<A, R> handler = findHandler(action);
+    private <A extends Action<R>, R extends Result> R doExecute(A action, DefaultExecutionContext ctx,
+            Nesting nesting) throws ActionException, ServiceException {
+        ActionHandlerValidatorInstance handlerValidator = findHandlerValidator(action);
 
-        ActionValidator actionValidator = findActionValidator(action);
+        DispatchMetrics metrics = dispatchMetrics;
+        if (metrics == null) {
+            return doExecute(action, ctx, nesting, handlerValidator, null);
+        }
 
+        long start = System.nanoTime();
         try {
-            if (actionValidator.isValid(action)) {
-                return handler.execute(action, ctx);
+            R result = doExecute(action, ctx, nesting, handlerValidator, metrics);
+            metrics.onExecuted(action.getClass(), System.nanoTime() - start);
+            return result;
+        } catch (ActionException e) {
+            metrics.onFailed(action.getClass(), e, System.nanoTime() - start);
+            throw e;
+        } catch (ServiceException e) {
+            metrics.onFailed(action.getClass(), e, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A extends Action<R>, R extends Result> R doExecute(A action, DefaultExecutionContext ctx,
+            Nesting nesting, ActionHandlerValidatorInstance handlerValidator, DispatchMetrics metrics)
+            throws ActionException, ServiceException {
+        ActionHandler<A, R> handler = (ActionHandler<A, R>) handlerValidator.getActionHandler();
+        ActionValidator actionValidator = handlerValidator.getActionValidator();
+
+        try {
+            if (ctx.isValid(actionValidator, action)) {
+                ActionInterceptor[] interceptors = actionInterceptors;
+                if (interceptors.length == 0) {
+                    return executeHandler(handler, action, ctx, nesting);
+                }
+                return new DefaultActionInterceptorChain<A, R>(this, interceptors, 0, handler, action, ctx,
+                        nesting).proceed();
             } else {
+                if (metrics != null) {
+                    metrics.onRejected(action.getClass(), actionValidator.getClass());
+                }
                 throw new ServiceException(actionValidator.getClass().getName() + actionValidatorMessage + action
                         .getClass().getName());
             }
         } catch (ActionException e) {
             throw e;
+        } catch (ServiceException e) {
+            throw e;
         } catch (Exception e) {
-            String newMessage = "Service exception executing action \"" + action.getClass().getSimpleName() + "\", " +
-                    "" + e.toString();
-            ServiceException rethrown = new ServiceException(newMessage);
-            rethrown.initCause(e);
-            throw rethrown;
+            throw (ServiceException) toDispatchFailure(action, e);
         }
     }
 
+    @SuppressWarnings("unchecked")
     private <A extends Action<R>, R extends Result> void doUndo(A action, R result,
-            ExecutionContext ctx) throws ActionException, ServiceException {
+            DefaultExecutionContext ctx) throws ActionException, ServiceException {
+        ActionHandlerValidatorInstance handlerValidator = findHandlerValidator(action);
+        ActionHandler<A, R> handler = (ActionHandler<A, R>) handlerValidator.getActionHandler();
+        ActionValidator actionValidator = handlerValidator.getActionValidator();
 
-        ActionValidator actionValidator = findActionValidator(action);
-
-        ActionHandler<A, R> handler = findHandler(action);
         try {
-            if (actionValidator.isValid(action)) {
+            if (ctx.isValid(actionValidator, action)) {
                 handler.undo(action, result, ctx);
             } else {
                 throw new ServiceException(actionValidator.getClass().getName() + actionValidatorMessage + action
@@ -189,24 +556,64 @@ public abstract class AbstractDispatchImpl implements Dispatch {
         }
     }
 
-    private <A extends Action<R>, R extends Result> ActionValidator findActionValidator(A action) throws
-            UnsupportedActionException {
-        ActionHandlerValidatorInstance handlerValidator = actionHandlerValidatorRegistry.findActionHandlerValidator(action);
-        if (handlerValidator == null) {
-            throw new UnsupportedActionException(action);
+    private <A extends Action<R>, R extends Result> R executeHandler(ActionHandler<A, R> handler, A action,
+            DefaultExecutionContext ctx, Nesting nesting) throws ActionException {
+        R result = handler.execute(action, ctx);
+        if (nesting == Nesting.NESTED_RECORDED) {
+            ctx.record(new ActionResult<A, R>(action, getUndoResult(handler, action, result), true));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns {@code caught} if it is an {@link ActionException} or a {@link ServiceException}, or wraps it in a
+     * {@link ServiceException}.
+     */
+    private static Exception toDispatchFailure(Action<?> action, Throwable caught) {
+        if (caught instanceof ActionException || caught instanceof ServiceException) {
+            return (Exception) caught;
         }
 
-        return handlerValidator.getActionValidator();
+        String newMessage = "Service exception executing action \"" + action.getClass().getSimpleName() + "\", " +
+                "" + caught.toString();
+        ServiceException rethrown = new ServiceException(newMessage);
+        rethrown.initCause(caught);
+        return rethrown;
+    }
+
+    private UndoJournal createUndoJournal() {
+        UndoJournalFactory factory = undoJournalFactory;
+        return factory == null ? new InMemoryUndoJournal() : factory.createUndoJournal();
     }
 
+    /**
+     * Returns the part of the result of a nested action needed to roll it back.
+     */
     @SuppressWarnings("unchecked")
-    private <A extends Action<R>, R extends Result> ActionHandler<A, R> findHandler(A action) throws UnsupportedActionException {
-        ActionHandlerValidatorInstance handlerValidator = actionHandlerValidatorRegistry.findActionHandlerValidator(action);
+    private <A extends Action<R>, R extends Result> R getUndoResult(ActionHandler<A, R> handler, A action,
+            R result) {
+        if (handler instanceof CompactUndoActionHandler) {
+            return ((CompactUndoActionHandler<A, R>) handler).getUndoResult(action, result);
+        }
+
+        return result;
+    }
 
+    /**
+     * Resolves the {@link ActionHandler} and the {@link ActionValidator} of an action with a single registry lookup.
+     *
+     * @param action The {@link Action} to resolve.
+     * @return The {@link ActionHandlerValidatorInstance} pairing the handler with its validator, never {@code null}.
+     * @throws UnsupportedActionException If no handler is registered for the action.
+     */
+    private <A extends Action<R>, R extends Result> ActionHandlerValidatorInstance findHandlerValidator(A action)
+            throws UnsupportedActionException {
+        ActionHandlerValidatorInstance handlerValidator = actionHandlerValidatorRegistry.findActionHandlerValidator(action);
         if (handlerValidator == null) {
             throw new UnsupportedActionException(action);
         }
 
-        return (ActionHandler<A, R>) handlerValidator.getActionHandler();
+        return handlerValidator;
     }
 }
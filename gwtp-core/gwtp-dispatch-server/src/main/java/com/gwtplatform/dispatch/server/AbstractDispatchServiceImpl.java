@@ -16,18 +16,22 @@
 
 package com.gwtplatform.dispatch.server;
 
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.servlet.http.Cookie;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import com.google.gwt.user.server.rpc.RPCServletUtils;
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import com.gwtplatform.dispatch.shared.Action;
 import com.gwtplatform.dispatch.shared.ActionException;
 import com.gwtplatform.dispatch.shared.DispatchService;
 import com.gwtplatform.dispatch.shared.Result;
 import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.ServiceOverloadedException;
 
 /**
  * This is the server-side implementation of the {@link DispatchService}, for which the client-side async service is
@@ -54,11 +58,18 @@ public abstract class AbstractDispatchServiceImpl extends RemoteServiceServlet i
     private static final String xsrfAttackMessage = "Cookie provided by RPC doesn't match request cookie, " +
             "aborting action, possible XSRF attack. (Maybe you forgot to set the security cookie?)";
 
+    private static final ThreadLocal<CompressingResponseWrapper> compressingResponse =
+            new ThreadLocal<CompressingResponseWrapper>();
+
     protected final Dispatch dispatch;
     protected final Logger logger;
 
     protected RequestProvider requestProvider;
 
+    private volatile String cachedSecurityCookieName;
+    private volatile DispatchExceptionPolicy exceptionPolicy = new DispatchExceptionPolicy();
+    private volatile ResponseCompressionPolicy compressionPolicy;
+
     protected AbstractDispatchServiceImpl(final Logger logger, final Dispatch dispatch,
             RequestProvider requestProvider) {
         this.logger = logger;
@@ -70,42 +81,46 @@ public abstract class AbstractDispatchServiceImpl extends RemoteServiceServlet i
         return null;
     }
 
-    @Override
-    public Result execute(String cookieSentByRPC, Action<?> action) throws ActionException, ServiceException {
+    /**
+     * Sets how failed actions are logged and reported to the client. Defaults to a {@link DispatchExceptionPolicy}
+     * logging every stack trace.
+     *
+     * @param exceptionPolicy The {@link DispatchExceptionPolicy}.
+     */
+    public void setExceptionPolicy(DispatchExceptionPolicy exceptionPolicy) {
+        this.exceptionPolicy = exceptionPolicy;
+    }
 
-        if (action.isSecured() && !cookieMatch(cookieSentByRPC)) {
-            String message = xsrfAttackMessage + " While executing action: " + action.getClass().getName();
+    /**
+     * Sets how responses are compressed. Without a {@link ResponseCompressionPolicy}, the default behavior of
+     * {@link RemoteServiceServlet} is used.
+     *
+     * @param compressionPolicy The {@link ResponseCompressionPolicy}.
+     */
+    public void setCompressionPolicy(ResponseCompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+    }
 
-            logger.severe(message);
-            throw new ServiceException(message);
-        }
+    @Override
+    public Result execute(String cookieSentByRPC, Action<?> action) throws ActionException, ServiceException {
+        setCompressedAction(action);
+        checkSecurityCookie(cookieSentByRPC, action);
 
         try {
             return dispatch.execute(action);
         } catch (ActionException e) {
-            if (logger.isLoggable(Level.WARNING)) {
-                logger.log(Level.WARNING, "Action exception while executing " + action.getClass().getName() + ": " +
-                        e.getMessage(), e);
-            }
-            throw e;
+            throw (ActionException) toClientFailure(action, e);
         } catch (ServiceException e) {
-            if (logger.isLoggable(Level.WARNING)) {
-                logger.log(Level.WARNING, "Service exception while executing " + action.getClass().getName() + ": " +
-                        e.getMessage(), e);
-            }
-            throw e;
+            throw (ServiceException) toClientFailure(action, e);
         } catch (RuntimeException e) {
-            if (logger.isLoggable(Level.WARNING)) {
-                logger.log(Level.WARNING, "Unexpected exception while executing " + action.getClass().getName() + ": " +
-                        "" + e.getMessage(), e);
-            }
-            throw new ServiceException(e);
+            throw (ServiceException) toClientFailure(action, e);
         }
     }
 
     @Override
     public void undo(String cookieSentByRPC, Action<Result> action, Result result) throws ActionException,
             ServiceException {
+        setCompressedAction(action);
 
         if (action.isSecured() && !cookieMatch(cookieSentByRPC)) {
             String message = xsrfAttackMessage + " While undoing action: " + action.getClass().getName();
@@ -121,10 +136,136 @@ public abstract class AbstractDispatchServiceImpl extends RemoteServiceServlet i
             throw e;
         } catch (ServiceException e) {
             logger.warning("Service exception while undoing " + action.getClass().getName() + ": " + e.getMessage());
-            throw e;
+            throw exceptionPolicy.toClientException(action, e);
         } catch (RuntimeException e) {
             logger.warning("Unexpected exception while undoing " + action.getClass().getName() + ": " + e.getMessage());
-            throw new ServiceException(e);
+            ServiceException rethrown = new ServiceException(e);
+            rethrown.initCause(e);
+            throw exceptionPolicy.toClientException(action, rethrown);
+        }
+    }
+
+    /**
+     * Sends POST requests through {@link #doCompressedPost}, so that the {@link ResponseCompressionPolicy} applies.
+     */
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+            IOException {
+        if ("POST".equals(request.getMethod())) {
+            doCompressedPost(request, response);
+        } else {
+            super.service(request, response);
+        }
+    }
+
+    /**
+     * Handles a POST request with {@link #doPost}. When a {@link ResponseCompressionPolicy} is set and the client
+     * accepts gzip, the response is buffered and compressed by the policy once complete. Use this instead of
+     * {@link #doPost} when requests are handed over without going through {@link #service}.
+     *
+     * @param request The request.
+     * @param response The response.
+     */
+    protected void doCompressedPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ResponseCompressionPolicy policy = compressionPolicy;
+        if (policy == null || !RPCServletUtils.acceptsGzipEncoding(request)) {
+            doPost(request, response);
+            return;
+        }
+
+        CompressingResponseWrapper wrapper = new CompressingResponseWrapper(response, policy);
+        compressingResponse.set(wrapper);
+        try {
+            doPost(request, wrapper);
+        } finally {
+            compressingResponse.remove();
+        }
+        wrapper.finish();
+    }
+
+    /**
+     * Rejects a secured action whose security cookie doesn't match the one in the http request.
+     *
+     * @param cookieSentByRPC The content of the security cookie sent by RPC.
+     * @param action The action to execute.
+     * @throws ServiceException If the action is secured and the cookies don't match.
+     */
+    protected void checkSecurityCookie(String cookieSentByRPC, Action<?> action) throws ServiceException {
+        if (action.isSecured() && !cookieMatch(cookieSentByRPC)) {
+            String message = xsrfAttackMessage + " While executing action: " + action.getClass().getName();
+
+            logger.severe(message);
+            throw new ServiceException(message);
+        }
+    }
+
+    /**
+     * Logs the failure of an executed action and converts it to what is reported to the client, according to the
+     * {@link DispatchExceptionPolicy}.
+     *
+     * @param action The action that failed.
+     * @param caught Why it failed.
+     * @return The {@link ActionException} or {@link ServiceException} to report to the client.
+     */
+    protected Exception toClientFailure(Action<?> action, Throwable caught) {
+        if (caught instanceof ActionException) {
+            exceptionPolicy.logFailure(logger, "Action exception while executing ", action, caught);
+            return (ActionException) caught;
+        } else if (caught instanceof ServiceOverloadedException) {
+            // Shed load as cheaply as possible, the client is expected to retry.
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Rejected " + action.getClass().getName() + ": " + caught.getMessage());
+            }
+            return (ServiceException) caught;
+        } else if (caught instanceof ServiceException) {
+            exceptionPolicy.logFailure(logger, "Service exception while executing ", action, caught);
+            return exceptionPolicy.toClientException(action, (ServiceException) caught);
+        }
+
+        exceptionPolicy.logFailure(logger, "Unexpected exception while executing ", action, caught);
+        ServiceException rethrown = new ServiceException(caught);
+        rethrown.initCause(caught);
+        return exceptionPolicy.toClientException(action, rethrown);
+    }
+
+    /**
+     * Writes an encoded RPC response outside of {@link #doPost}, compressing it the same way.
+     *
+     * @param request The request.
+     * @param response The response.
+     * @param action The executed action, or {@code null} if unknown.
+     * @param responsePayload The encoded RPC response.
+     */
+    protected void writeActionResponse(HttpServletRequest request, HttpServletResponse response, Action<?> action,
+            String responsePayload) throws IOException {
+        ResponseCompressionPolicy policy = compressionPolicy;
+        boolean acceptsGzip = RPCServletUtils.acceptsGzipEncoding(request);
+        if (policy == null || !acceptsGzip) {
+            boolean gzipEncode = acceptsGzip && shouldCompressResponse(request, response, responsePayload);
+            RPCServletUtils.writeResponse(getServletContext(), response, responsePayload, gzipEncode);
+            return;
+        }
+
+        CompressingResponseWrapper wrapper = new CompressingResponseWrapper(response, policy);
+        wrapper.setAction(action);
+        RPCServletUtils.writeResponse(getServletContext(), wrapper, responsePayload, false);
+        wrapper.finish();
+    }
+
+    /**
+     * The compression policy compresses the response itself, once it is complete.
+     */
+    @Override
+    protected boolean shouldCompressResponse(HttpServletRequest request, HttpServletResponse response,
+            String responsePayload) {
+        return !(response instanceof CompressingResponseWrapper)
+                && super.shouldCompressResponse(request, response, responsePayload);
+    }
+
+    private void setCompressedAction(Action<?> action) {
+        CompressingResponseWrapper wrapper = compressingResponse.get();
+        if (wrapper != null) {
+            wrapper.setAction(action);
         }
     }
 
@@ -136,11 +277,8 @@ public abstract class AbstractDispatchServiceImpl extends RemoteServiceServlet i
      * @throws ServiceException If you forgot to bind a {@link com.gwtplatform.dispatch.shared.SecurityCookie}.
      */
     private boolean cookieMatch(String cookieSentByRPC) throws ServiceException {
-
-        // Make sure the specified cookie matches the
-        HttpServletRequest request = requestProvider.getServletRequest();
-
-        if (getSecurityCookieName() == null) {
+        String cookieName = getCachedSecurityCookieName();
+        if (cookieName == null) {
             logger.info(noSecurityCookieMessage);
             return false;
         }
@@ -152,22 +290,27 @@ public abstract class AbstractDispatchServiceImpl extends RemoteServiceServlet i
         }
 
         // Try to match session tokens to prevent XSRF
-        Cookie[] cookies = request.getCookies();
-        String cookieInRequest = null;
-        if (cookies != null) {
-            for (Cookie cookie : cookies) {
-                if (cookie.getName().equals(getSecurityCookieName())) {
-                    cookieInRequest = cookie.getValue();
-                    break;
-                }
-            }
-        }
+        HttpServletRequest request = requestProvider.getServletRequest();
+        String cookieInRequest = SecurityCookieUtils.getCookieValue(request, cookieName);
 
         if (cookieInRequest == null) {
-            logger.info("Cookie \"" + getSecurityCookieName() + "\" not found in HttpServletRequest!");
+            logger.info("Cookie \"" + cookieName + "\" not found in HttpServletRequest!");
             return false;
         }
 
-        return cookieInRequest.equals(cookieSentByRPC);
+        return SecurityCookieUtils.constantTimeEquals(cookieInRequest, cookieSentByRPC);
+    }
+
+    /**
+     * The security cookie name is injected once, so it is only resolved on the first secured action.
+     */
+    private String getCachedSecurityCookieName() {
+        String cookieName = cachedSecurityCookieName;
+        if (cookieName == null) {
+            cookieName = getSecurityCookieName();
+            cachedSecurityCookieName = cookieName;
+        }
+
+        return cookieName;
     }
 }
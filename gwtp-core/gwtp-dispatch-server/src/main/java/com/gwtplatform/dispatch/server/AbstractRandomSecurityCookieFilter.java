@@ -17,7 +17,7 @@
 package com.gwtplatform.dispatch.server;
 
 import java.io.IOException;
-import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
 import javax.servlet.Filter;
@@ -42,17 +42,58 @@ import javax.servlet.http.HttpServletResponse;
  * </pre>
  * <p/>
  * You also have to use a {@code .jsp} file instead of a {@code .html} as your main GWT file.
+ * <p/>
+ * Each thread draws its tokens from its own {@link SecureRandom}, of the same algorithm as the given one, so that
+ * concurrent requests don't contend on a single generator. By default a new cookie is set on every request going
+ * through the filter. Subclasses can instead only set one when the request doesn't already carry a well-formed token,
+ * which saves a {@code Set-Cookie} header on most responses but lets a cookie planted by a third party (for instance
+ * from a sibling sub-domain) stay in use.
  *
  * @author Philippe Beaudoin
  */
 public abstract class AbstractRandomSecurityCookieFilter implements Filter {
 
+    /**
+     * The generator and the scratch buffers of one thread.
+     */
+    private static class TokenGenerator {
+        private final SecureRandom random;
+        private final byte[] bytes = new byte[TOKEN_BYTES];
+        private final char[] chars = new char[TOKEN_LENGTH];
+
+        TokenGenerator(SecureRandom random) {
+            this.random = random;
+        }
+    }
+
+    /**
+     * 130 random bits, encoded in base 32 like {@code new BigInteger(130, random).toString(32)}.
+     */
+    private static final int TOKEN_LENGTH = 26;
+    private static final int TOKEN_BYTES = 17;
+    private static final char[] ALPHABET = "0123456789abcdefghijklmnopqrstuv".toCharArray();
+
     protected final SecureRandom random;
     protected final String securityCookieName;
 
+    private final boolean mintOnlyWhenMissing;
+    private final ThreadLocal<TokenGenerator> generators = new ThreadLocal<TokenGenerator>();
+
     protected AbstractRandomSecurityCookieFilter(String securityCookieName, SecureRandom random) {
+        this(securityCookieName, random, false);
+    }
+
+    /**
+     * @param securityCookieName  The name of the security cookie.
+     * @param random              The generator whose algorithm and provider each thread uses for the tokens.
+     * @param mintOnlyWhenMissing {@code true} to only set a cookie when the request doesn't carry a well-formed one,
+     *                            {@code false} to set a new cookie on every request.
+     */
+    protected AbstractRandomSecurityCookieFilter(String securityCookieName, SecureRandom random,
+            boolean mintOnlyWhenMissing) {
         this.securityCookieName = securityCookieName;
         this.random = random;
+        this.mintOnlyWhenMissing = mintOnlyWhenMissing;
     }
 
     public void destroy() {
@@ -61,9 +102,10 @@ public abstract class AbstractRandomSecurityCookieFilter implements Filter {
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
             ServletException {
 
-        if (request instanceof HttpServletRequest) {
+        if (request instanceof HttpServletRequest && !(mintOnlyWhenMissing
+                && hasValidToken((HttpServletRequest) request))) {
             HttpServletResponse httpResponse = (HttpServletResponse) response;
-            Cookie securityCookie = new Cookie(securityCookieName, new BigInteger(130, random).toString(32));
+            Cookie securityCookie = new Cookie(securityCookieName, nextToken());
             securityCookie.setMaxAge(-1);
             securityCookie.setPath("/");
             httpResponse.addCookie(securityCookie);
@@ -74,4 +116,57 @@ public abstract class AbstractRandomSecurityCookieFilter implements Filter {
     public void init(FilterConfig filterConfig) throws ServletException {
     }
 
+    private boolean hasValidToken(HttpServletRequest request) {
+        String token = SecurityCookieUtils.getCookieValue(request, securityCookieName);
+        if (token == null || token.length() == 0 || token.length() > TOKEN_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'v'))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private String nextToken() {
+        TokenGenerator generator = generators.get();
+        if (generator == null) {
+            generator = new TokenGenerator(newThreadRandom());
+            generators.set(generator);
+        }
+
+        byte[] bytes = generator.bytes;
+        generator.random.nextBytes(bytes);
+
+        char[] chars = generator.chars;
+        int bitBuffer = 0;
+        int bitCount = 0;
+        int byteIndex = 0;
+        for (int i = 0; i < TOKEN_LENGTH; i++) {
+            if (bitCount < 5) {
+                bitBuffer = (bitBuffer << 8) | (bytes[byteIndex++] & 0xff);
+                bitCount += 8;
+            }
+            bitCount -= 5;
+            chars[i] = ALPHABET[(bitBuffer >>> bitCount) & 0x1f];
+        }
+
+        return new String(chars);
+    }
+
+    private SecureRandom newThreadRandom() {
+        if (random.getProvider() == null) {
+            return new SecureRandom();
+        }
+
+        try {
+            return SecureRandom.getInstance(random.getAlgorithm(), random.getProvider());
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
 }
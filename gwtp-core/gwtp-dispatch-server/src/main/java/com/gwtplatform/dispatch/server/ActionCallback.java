@@ -0,0 +1,42 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * Receives the outcome of an action executed asynchronously. Exactly one of its methods is called, once, either before
+ * the execution is started or later from another thread.
+ *
+ * @param <R> The type of the result extending {@link Result}.
+ * @see AsyncDispatch
+ * @see com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler
+ */
+public interface ActionCallback<R extends Result> {
+    /**
+     * @param result The result of the action.
+     */
+    void onSuccess(R result);
+
+    /**
+     * @param caught Why the action failed. The dispatch reports an
+     *               {@link com.gwtplatform.dispatch.shared.ActionException ActionException} or a
+     *               {@link com.gwtplatform.dispatch.shared.ServiceException ServiceException}, handlers may report any
+     *               exception.
+     */
+    void onFailure(Throwable caught);
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * A {@link Dispatch} that can execute actions without blocking the calling thread while an
+ * {@link com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler AsyncActionHandler} waits for its result.
+ * Actions handled by other handlers are executed synchronously, before {@link #executeAsync} returns.
+ */
+public interface AsyncDispatch extends Dispatch {
+    /**
+     * Executes the specified action and passes its result, or the
+     * {@link com.gwtplatform.dispatch.shared.ActionException ActionException} or
+     * {@link com.gwtplatform.dispatch.shared.ServiceException ServiceException} it failed with, to {@code callback}.
+     *
+     * @param <A>      The {@link Action} type.
+     * @param <R>      The {@link Result} type.
+     * @param action   The {@link Action}.
+     * @param callback The {@link ActionCallback}, called exactly once.
+     */
+    <A extends Action<R>, R extends Result> void executeAsync(A action, ActionCallback<R> callback);
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import com.google.gwt.user.server.rpc.RPCServletUtils;
+import com.gwtplatform.dispatch.shared.Action;
+
+/**
+ * Buffers a response so that it can be compressed by a {@link ResponseCompressionPolicy} once complete.
+ */
+class CompressingResponseWrapper extends HttpServletResponseWrapper {
+
+    /**
+     * Gives access to the internal buffer, to avoid copying it.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private final ResponseCompressionPolicy compressionPolicy;
+    private final Buffer buffer = new Buffer();
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+    private Action<?> action;
+
+    CompressingResponseWrapper(HttpServletResponse response, ResponseCompressionPolicy compressionPolicy) {
+        super(response);
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    void setAction(Action<?> action) {
+        this.action = action;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called on this response.");
+        }
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    buffer.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    buffer.write(b, off, len);
+                }
+            };
+        }
+
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (outputStream != null) {
+            throw new IllegalStateException("getOutputStream() has already been called on this response.");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(buffer, getCharacterEncoding()));
+        }
+
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // Known once the response is compressed
+    }
+
+    @Override
+    public void flushBuffer() {
+        // Nothing is sent before the response is complete
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        buffer.reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        buffer.reset();
+    }
+
+    /**
+     * Compresses the buffered response if the policy allows it, and writes it to the wrapped response.
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+
+        int length = buffer.size();
+        if (length == 0) {
+            return;
+        }
+
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        byte[] compressed = compressionPolicy.compress(action, buffer.array(), length);
+        if (compressed == null) {
+            response.setContentLength(length);
+            response.getOutputStream().write(buffer.array(), 0, length);
+        } else {
+            RPCServletUtils.setGzipEncodingHeader(response);
+            response.setContentLength(compressed.length);
+            response.getOutputStream().write(compressed);
+        }
+    }
+}
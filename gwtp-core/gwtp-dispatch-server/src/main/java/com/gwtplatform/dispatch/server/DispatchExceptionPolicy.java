@@ -0,0 +1,127 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ExpectedActionException;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * Decides how {@link AbstractDispatchServiceImpl} logs failed actions and what it sends back to the client.
+ * <ul>
+ * <li>Expected failures, by default {@link ExpectedActionException}s, are logged at {@link Level#FINE} without a
+ * stack trace.</li>
+ * <li>Other failures are logged at {@link Level#WARNING}, with a stack trace for at most a given number of failures
+ * per minute.</li>
+ * <li>Optionally, the {@link ServiceException}s wrapping unexpected errors are replaced by a short message before
+ * being sent to the client. GWT-RPC only serializes the message of exceptions, so their causes and stack traces
+ * never reach the client anyway.</li>
+ * </ul>
+ * The default policy logs every stack trace and sends the messages unchanged.
+ */
+public class DispatchExceptionPolicy {
+
+    public static final int UNLIMITED = -1;
+
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final int maxStackTracesPerMinute;
+    private final boolean compactServiceExceptions;
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicInteger stackTracesInWindow = new AtomicInteger();
+
+    public DispatchExceptionPolicy() {
+        this(UNLIMITED, false);
+    }
+
+    /**
+     * @param maxStackTracesPerMinute  The maximum number of stack traces logged per minute, or {@link #UNLIMITED}.
+     * @param compactServiceExceptions {@code true} to send a short message instead of the description of the
+     *                                 unexpected errors wrapped in {@link ServiceException}s.
+     */
+    public DispatchExceptionPolicy(int maxStackTracesPerMinute, boolean compactServiceExceptions) {
+        this.maxStackTracesPerMinute = maxStackTracesPerMinute;
+        this.compactServiceExceptions = compactServiceExceptions;
+    }
+
+    /**
+     * Logs a failed action.
+     *
+     * @param logger  The {@link Logger} to use.
+     * @param message The description of the failure, followed by the action class name and the exception message.
+     * @param action  The action that failed.
+     * @param e       The exception thrown while executing the action.
+     */
+    public void logFailure(Logger logger, String message, Action<?> action, Throwable e) {
+        if (isExpected(e)) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(message + action.getClass().getName() + ": " + e.getMessage());
+            }
+        } else if (logger.isLoggable(Level.WARNING)) {
+            String description = message + action.getClass().getName() + ": " + e.getMessage();
+            if (tryLogStackTrace()) {
+                logger.log(Level.WARNING, description, e);
+            } else {
+                logger.warning(description + " (stack trace omitted)");
+            }
+        }
+    }
+
+    /**
+     * Returns the exception to send to the client in place of a {@link ServiceException} thrown by the dispatch.
+     *
+     * @param action The action that failed.
+     * @param e      The exception thrown while executing the action.
+     * @return The exception to send to the client.
+     */
+    public ServiceException toClientException(Action<?> action, ServiceException e) {
+        if (compactServiceExceptions && e.getClass() == ServiceException.class && e.getCause() != null) {
+            return new ServiceException("Service exception executing action \"" + action.getClass().getSimpleName()
+                    + "\"");
+        }
+
+        return e;
+    }
+
+    /**
+     * @param e The exception thrown while executing an action.
+     * @return {@code true} if the exception is an expected outcome that doesn't deserve a warning.
+     */
+    protected boolean isExpected(Throwable e) {
+        return e instanceof ExpectedActionException;
+    }
+
+    private boolean tryLogStackTrace() {
+        if (maxStackTracesPerMinute == UNLIMITED) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_MILLIS && windowStart.compareAndSet(start, now)) {
+            stackTracesInWindow.set(0);
+        }
+
+        return stackTracesInWindow.incrementAndGet() <= maxStackTracesPerMinute;
+    }
+}
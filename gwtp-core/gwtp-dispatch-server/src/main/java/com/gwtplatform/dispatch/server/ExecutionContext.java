@@ -26,6 +26,9 @@ import com.gwtplatform.dispatch.shared.ServiceException;
  * {@link com.gwtplatform.dispatch.server.actionhandler.ActionHandler ActionHandler}s,
  * and allows them to execute sub-actions. These actions can be automatically rolled back
  * if any part of the action handler fails.
+ * <p/>
+ * A context can be shared by several threads, for example when the actions of a
+ * {@link com.gwtplatform.dispatch.shared.ParallelBatchAction ParallelBatchAction} are executed concurrently.
  *
  * @author David Peterson
  */
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.gwtplatform.dispatch.shared.Action;
+
+/**
+ * Decides whether and how much {@link AbstractDispatchServiceImpl} compresses its responses, replacing the fixed
+ * heuristic of {@link com.google.gwt.user.server.rpc.RemoteServiceServlet RemoteServiceServlet}.
+ * <p/>
+ * Responses smaller than a minimum size are sent as is, the others are gzipped at the default level unless a level
+ * was set for the class of the action. Use {@link #DO_NOT_COMPRESS} for actions returning data that is already
+ * compressed. Compressed responses that turn out to be larger than the original are sent uncompressed.
+ * <p/>
+ * {@link Deflater}s are expensive to create, so they are pooled and reused. The policy also counts the responses and
+ * bytes it handled, see {@link #getCompressionRatio()}.
+ */
+public class ResponseCompressionPolicy {
+
+    /**
+     * The compression level for responses that must not be compressed.
+     */
+    public static final int DO_NOT_COMPRESS = -2;
+    public static final int DEFAULT_MINIMUM_SIZE = 256;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    /**
+     * A {@link Deflater} along with the buffers used to compress a response.
+     */
+    private static class PooledDeflater {
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[8192];
+
+        PooledDeflater(int level) {
+            deflater = new Deflater(level, true);
+        }
+    }
+
+    private final int minimumSize;
+    private final int defaultLevel;
+    private final ConcurrentMap<Class<?>, Integer> actionLevels = new ConcurrentHashMap<Class<?>, Integer>();
+    private final BlockingQueue<PooledDeflater> deflaters;
+    private final AtomicLong compressedResponses = new AtomicLong();
+    private final AtomicLong uncompressedResponses = new AtomicLong();
+    private final AtomicLong bytesBeforeCompression = new AtomicLong();
+    private final AtomicLong bytesAfterCompression = new AtomicLong();
+
+    public ResponseCompressionPolicy() {
+        this(DEFAULT_MINIMUM_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param minimumSize  The size in bytes below which responses are never compressed.
+     * @param defaultLevel The compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     *                     or {@link Deflater#DEFAULT_COMPRESSION}, used for actions without a specific level.
+     */
+    public ResponseCompressionPolicy(int minimumSize, int defaultLevel) {
+        this.minimumSize = minimumSize;
+        this.defaultLevel = defaultLevel;
+        this.deflaters = new ArrayBlockingQueue<PooledDeflater>(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Sets the compression level of the responses to an action class.
+     *
+     * @param actionClass The class of the action.
+     * @param level       The compression level, or {@link #DO_NOT_COMPRESS}.
+     */
+    public void setCompressionLevel(Class<? extends Action<?>> actionClass, int level) {
+        actionLevels.put(actionClass, level);
+    }
+
+    /**
+     * Compresses a response in the gzip format.
+     *
+     * @param action  The action the response is for, or <code>null</code> if unknown.
+     * @param payload The bytes of the response.
+     * @param length  The number of bytes of the response in {@code payload}.
+     * @return The compressed response, or <code>null</code> if the response must be sent as is.
+     */
+    public byte[] compress(Action<?> action, byte[] payload, int length) {
+        int level = getCompressionLevel(action, length);
+        if (level == DO_NOT_COMPRESS) {
+            uncompressedResponses.incrementAndGet();
+            return null;
+        }
+
+        PooledDeflater pooled = deflaters.poll();
+        if (pooled == null) {
+            pooled = new PooledDeflater(level);
+        } else {
+            pooled.deflater.setLevel(level);
+        }
+
+        byte[] compressed;
+        try {
+            compressed = deflate(pooled, payload, length);
+        } finally {
+            pooled.deflater.reset();
+            if (!deflaters.offer(pooled)) {
+                pooled.deflater.end();
+            }
+        }
+
+        bytesBeforeCompression.addAndGet(length);
+        if (compressed.length >= length) {
+            bytesAfterCompression.addAndGet(length);
+            uncompressedResponses.incrementAndGet();
+            return null;
+        }
+
+        bytesAfterCompression.addAndGet(compressed.length);
+        compressedResponses.incrementAndGet();
+        return compressed;
+    }
+
+    public long getCompressedResponseCount() {
+        return compressedResponses.get();
+    }
+
+    public long getUncompressedResponseCount() {
+        return uncompressedResponses.get();
+    }
+
+    /**
+     * @return The ratio between the size of the responses after and before compression, for the responses that were
+     *         large enough to be considered for compression. Lower is better.
+     */
+    public double getCompressionRatio() {
+        long before = bytesBeforeCompression.get();
+        return before == 0 ? 1 : (double) bytesAfterCompression.get() / before;
+    }
+
+    /**
+     * @param action        The action the response is for, or <code>null</code> if unknown.
+     * @param payloadLength The size of the response, in bytes.
+     * @return The compression level to use, or {@link #DO_NOT_COMPRESS}.
+     */
+    protected int getCompressionLevel(Action<?> action, int payloadLength) {
+        if (payloadLength < minimumSize) {
+            return DO_NOT_COMPRESS;
+        }
+
+        if (action != null) {
+            Integer level = actionLevels.get(action.getClass());
+            if (level != null) {
+                return level;
+            }
+        }
+
+        return defaultLevel;
+    }
+
+    private static byte[] deflate(PooledDeflater pooled, byte[] payload, int length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + GZIP_HEADER.length + GZIP_TRAILER_LENGTH);
+        out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+
+        Deflater deflater = pooled.deflater;
+        deflater.setInput(payload, 0, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int count = deflater.deflate(pooled.buffer);
+            out.write(pooled.buffer, 0, count);
+        }
+
+        pooled.crc.reset();
+        pooled.crc.update(payload, 0, length);
+        writeIntLittleEndian(out, (int) pooled.crc.getValue());
+        writeIntLittleEndian(out, length);
+
+        return out.toByteArray();
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import java.util.Enumeration;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Utility methods to read and check the security cookie without materializing every cookie of the request.
+ */
+public class SecurityCookieUtils {
+
+    private static final String COOKIE_HEADER = "Cookie";
+
+    /**
+     * Finds the value of a cookie by scanning the raw {@code Cookie} headers of the request. Only the value of the
+     * requested cookie is allocated. Falls back to {@link HttpServletRequest#getCookies()} if the container doesn't
+     * give access to the headers.
+     *
+     * @param request    The request.
+     * @param cookieName The name of the cookie.
+     * @return The value of the cookie, or {@code null} if the request doesn't have it.
+     */
+    public static String getCookieValue(HttpServletRequest request, String cookieName) {
+        Enumeration<?> headers = request.getHeaders(COOKIE_HEADER);
+        if (headers == null) {
+            return getCookieValueFromCookies(request, cookieName);
+        }
+
+        while (headers.hasMoreElements()) {
+            String value = getCookieValue((String) headers.nextElement(), cookieName);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the value of a cookie in a {@code Cookie} header such as {@code "a=1; b=\"2\""}.
+     *
+     * @param header     The value of the {@code Cookie} header.
+     * @param cookieName The name of the cookie.
+     * @return The value of the cookie without surrounding quotes, or {@code null} if the header doesn't have it.
+     */
+    public static String getCookieValue(String header, String cookieName) {
+        int length = header.length();
+        int nameLength = cookieName.length();
+
+        int start = 0;
+        while (start < length) {
+            int end = header.indexOf(';', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            int nameStart = skipWhitespace(header, start, end);
+            int equals = header.indexOf('=', nameStart);
+            if (equals >= 0 && equals < end && trimEnd(header, nameStart, equals) - nameStart == nameLength
+                    && header.regionMatches(nameStart, cookieName, 0, nameLength)) {
+                int valueStart = skipWhitespace(header, equals + 1, end);
+                int valueEnd = trimEnd(header, valueStart, end);
+                if (valueEnd - valueStart >= 2 && header.charAt(valueStart) == '"'
+                        && header.charAt(valueEnd - 1) == '"') {
+                    valueStart++;
+                    valueEnd--;
+                }
+
+                return header.substring(valueStart, valueEnd);
+            }
+
+            start = end + 1;
+        }
+
+        return null;
+    }
+
+    /**
+     * Compares two strings in a time that only depends on their length, so that an attacker can't guess a secret
+     * one character at a time by measuring response times.
+     *
+     * @param expected The secret value.
+     * @param actual   The value to check.
+     * @return {@code true} if both strings are equal, {@code false} otherwise or if any of them is {@code null}.
+     */
+    public static boolean constantTimeEquals(String expected, String actual) {
+        if (expected == null || actual == null || expected.length() != actual.length()) {
+            return false;
+        }
+
+        int difference = 0;
+        for (int i = 0; i < expected.length(); i++) {
+            difference |= expected.charAt(i) ^ actual.charAt(i);
+        }
+
+        return difference == 0;
+    }
+
+    private static String getCookieValueFromCookies(HttpServletRequest request, String cookieName) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (cookie.getName().equals(cookieName)) {
+                    return cookie.getValue();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static int skipWhitespace(String value, int start, int end) {
+        int index = start;
+        while (index < end && Character.isWhitespace(value.charAt(index))) {
+            index++;
+        }
+
+        return index;
+    }
+
+    private static int trimEnd(String value, int start, int end) {
+        int index = end;
+        while (index > start && Character.isWhitespace(value.charAt(index - 1))) {
+            index--;
+        }
+
+        return index;
+    }
+
+    private SecurityCookieUtils() {
+    }
+}
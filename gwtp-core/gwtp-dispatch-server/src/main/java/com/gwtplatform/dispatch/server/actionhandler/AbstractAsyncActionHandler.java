@@ -0,0 +1,102 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.gwtplatform.dispatch.server.ActionCallback;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * Simple abstract super-class for {@link AsyncActionHandler} implementations. Its
+ * {@link #execute(Action, ExecutionContext)} waits at most the configured timeout for
+ * {@link #executeAsync(Action, ExecutionContext, ActionCallback)} to complete, so that the handler also works with the
+ * synchronous dispatch and for nested actions.
+ *
+ * @param <A> The {@link Action} type.
+ * @param <R> The {@link Result} type.
+ */
+public abstract class AbstractAsyncActionHandler<A extends Action<R>, R extends Result>
+        extends AbstractActionHandler<A, R> implements AsyncActionHandler<A, R> {
+
+    /**
+     * Keeps the outcome of an asynchronous execution for the waiting thread.
+     */
+    private static class WaitingCallback<R extends Result> implements ActionCallback<R> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile R result;
+        private volatile Throwable caught;
+
+        @Override
+        public void onSuccess(R result) {
+            this.result = result;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable caught) {
+            this.caught = caught;
+            done.countDown();
+        }
+    }
+
+    private final long timeoutMillis;
+
+    /**
+     * @param actionType    The type of {@link Action} supported by this handler.
+     * @param timeoutMillis The maximum time {@link #execute(Action, ExecutionContext)} waits for the result, or
+     *                      {@code 0} to wait indefinitely.
+     */
+    public AbstractAsyncActionHandler(Class<A> actionType, long timeoutMillis) {
+        super(actionType);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public R execute(A action, ExecutionContext context) throws ActionException {
+        WaitingCallback<R> callback = new WaitingCallback<R>();
+        executeAsync(action, context, callback);
+
+        try {
+            if (timeoutMillis <= 0) {
+                callback.done.await();
+            } else if (!callback.done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ActionException("Timed out after " + timeoutMillis + "ms while executing "
+                        + action.getClass().getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ActionException("Interrupted while executing " + action.getClass().getName());
+        }
+
+        Throwable caught = callback.caught;
+        if (caught == null) {
+            return callback.result;
+        }
+        if (caught instanceof ActionException) {
+            throw (ActionException) caught;
+        }
+        if (caught instanceof RuntimeException) {
+            throw (RuntimeException) caught;
+        }
+        throw new ActionException(caught);
+    }
+}
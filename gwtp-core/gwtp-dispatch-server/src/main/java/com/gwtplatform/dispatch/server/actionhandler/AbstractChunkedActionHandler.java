@@ -0,0 +1,76 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import java.util.Iterator;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.ChunkedResult;
+
+/**
+ * Simple abstract super-class for handlers of actions returning large results as a sequence of
+ * {@link ChunkedResult}s. Implement {@link #openItems(Object, ExecutionContext)} to return the items lazily, for example
+ * from a database cursor; the first chunk is returned by this handler and the following ones are served by the
+ * {@link FetchChunkActionHandler}, which must be bound as well. The following chunks are only served to the client
+ * that executed the action, and only while the validator of the action still accepts it.
+ *
+ * @param <A> The type of the action.
+ * @param <T> The type of the items.
+ */
+public abstract class AbstractChunkedActionHandler<A extends Action<ChunkedResult<T>>, T extends IsSerializable>
+        extends AbstractActionHandler<A, ChunkedResult<T>> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private final ChunkedResultCursors cursors;
+    private final int chunkSize;
+
+    protected AbstractChunkedActionHandler(Class<A> actionType, ChunkedResultCursors cursors) {
+        this(actionType, cursors, DEFAULT_CHUNK_SIZE);
+    }
+
+    protected AbstractChunkedActionHandler(Class<A> actionType, ChunkedResultCursors cursors, int chunkSize) {
+        super(actionType);
+        this.cursors = cursors;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public ChunkedResult<T> execute(A action, ExecutionContext context) throws ActionException {
+        return cursors.open(action, openItems(action, context), chunkSize);
+    }
+
+    @Override
+    public void undo(A action, ChunkedResult<T> result, ExecutionContext context) throws ActionException {
+        // Nothing to undo, chunked results are read-only
+    }
+
+    /**
+     * Returns the items of the result. The iterator is read after this action has completed, from the requests
+     * fetching the next chunks, so it must not use {@code context} nor request-scoped objects. If it implements
+     * {@link java.io.Closeable}, it is closed once exhausted, abandoned or expired.
+     *
+     * @param action  The action.
+     * @param context The {@link ExecutionContext}, only valid during this call.
+     * @return The items of the result.
+     * @throws ActionException If the result cannot be produced.
+     */
+    protected abstract Iterator<? extends T> openItems(A action, ExecutionContext context) throws ActionException;
+}
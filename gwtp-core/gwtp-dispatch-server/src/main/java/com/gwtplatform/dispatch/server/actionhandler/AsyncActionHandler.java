@@ -0,0 +1,52 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import com.gwtplatform.dispatch.server.ActionCallback;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * An {@link ActionHandler} that produces its {@link Result} asynchronously, typically because it waits on remote
+ * calls. When the action is sent through an {@link com.gwtplatform.dispatch.server.AsyncDispatch AsyncDispatch}, such
+ * as the one used by the Servlet 3 dispatch servlets, {@link #executeAsync} is called instead of
+ * {@link #execute(Action, ExecutionContext)} and no thread waits while the result is being produced.
+ * <p/>
+ * Asynchronous handlers are registered like any other handler, and still have to implement
+ * {@link #execute(Action, ExecutionContext)} for the nested actions and the synchronous dispatch. Extend
+ * {@link AbstractAsyncActionHandler} to get an implementation waiting for {@link #executeAsync}.
+ *
+ * @param <A> The type of the action extending {@link Action}.
+ * @param <R> The type of the result extending {@link Result}.
+ */
+public interface AsyncActionHandler<A extends Action<R>, R extends Result> extends ActionHandler<A, R> {
+
+    /**
+     * Starts handling the specified action, and returns without waiting for its result. The callback must be called
+     * once the action completes, with its result or with an
+     * {@link com.gwtplatform.dispatch.shared.ActionException ActionException} if there is a problem performing it.
+     * <p/>
+     * The {@link ExecutionContext} can be used until the callback is called, nested actions executed through it are
+     * rolled back if the action fails.
+     *
+     * @param action   The action.
+     * @param context  The {@link ExecutionContext}.
+     * @param callback The {@link ActionCallback} to call exactly once.
+     */
+    void executeAsync(A action, ExecutionContext context, ActionCallback<R> callback);
+}
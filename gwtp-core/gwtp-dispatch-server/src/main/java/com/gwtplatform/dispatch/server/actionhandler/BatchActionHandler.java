@@ -16,7 +16,15 @@
 
 package com.gwtplatform.dispatch.server.actionhandler;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.gwtplatform.dispatch.server.ExecutionContext;
 import com.gwtplatform.dispatch.shared.Action;
@@ -24,26 +32,73 @@ import com.gwtplatform.dispatch.shared.ActionException;
 import com.gwtplatform.dispatch.shared.BatchAction;
 import com.gwtplatform.dispatch.shared.BatchAction.OnException;
 import com.gwtplatform.dispatch.shared.BatchResult;
+import com.gwtplatform.dispatch.shared.ParallelBatchAction;
 import com.gwtplatform.dispatch.shared.Result;
 
 /**
  * This handles {@link BatchAction} requests, which are a set of multiple
  * actions that need to all be executed successfully in sequence for the whole
  * action to succeed.
+ * <p/>
+ * {@link ParallelBatchAction} requests are executed concurrently if the handler
+ * was created with an {@link Executor}. To enable this, extend this class and
+ * pass your own executor to {@link #BatchActionHandler(Executor, long)}. Keep in
+ * mind that the actions will then be executed outside of the request thread, so
+ * their handlers and validators must not depend on request-scoped objects.
+ * <p/>
+ * A parallel batch executed by an action of another parallel batch runs its actions
+ * in sequence, in the thread of the enclosing action. Otherwise the enclosing actions
+ * could fill the executor while waiting for nested actions queued behind them.
+ * <p/>
+ * Actions that time out are cancelled by interrupting their thread, but handlers
+ * that ignore interruption keep running: they may still commit their side effects
+ * after the batch returned, and are not rolled back if it fails.
  *
  * @author David Peterson
  */
 public class BatchActionHandler extends
         AbstractActionHandler<BatchAction, BatchResult> {
 
+    /**
+     * Set while an action of a parallel batch is executed, so that nested parallel batches don't wait on the
+     * executor from one of its threads.
+     */
+    private static final ThreadLocal<Boolean> executingBatchAction = new ThreadLocal<Boolean>();
+
+    private final Executor executor;
+    private final long timeoutMillis;
+
     public BatchActionHandler() {
+        this(null, 0);
+    }
+
+    /**
+     * Creates a handler that executes the actions of a {@link ParallelBatchAction}
+     * concurrently.
+     *
+     * @param executor      The {@link Executor} used to run the actions, or
+     *                      {@code null} to always execute them in sequence.
+     * @param timeoutMillis The maximum time to wait for each action, measured
+     *                      from the moment the batch is submitted. Actions that
+     *                      do not complete in time are cancelled and have a
+     *                      <code>null</code> result, although they may still
+     *                      complete afterwards. Use {@code 0} to wait
+     *                      indefinitely.
+     */
+    public BatchActionHandler(Executor executor, long timeoutMillis) {
         super(BatchAction.class);
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
     }
 
     public BatchResult execute(BatchAction action, ExecutionContext context)
             throws ActionException {
+        if (executor != null && action instanceof ParallelBatchAction && executingBatchAction.get() == null) {
+            return executeInParallel(action, context);
+        }
+
         OnException onException = action.getOnException();
-        List<Result> results = new java.util.ArrayList<Result>();
+        List<Result> results = new ArrayList<Result>();
         for (Action<?> a : action.getActions()) {
             Result result = null;
             try {
@@ -71,4 +126,71 @@ public class BatchActionHandler extends
         // No action necessary - the sub actions should automatically rollback
     }
 
+    private BatchResult executeInParallel(BatchAction action, ExecutionContext context) throws ActionException {
+        Action<?>[] actions = action.getActions();
+        List<FutureTask<Result>> tasks = new ArrayList<FutureTask<Result>>(actions.length);
+        for (Action<?> a : actions) {
+            FutureTask<Result> task = new FutureTask<Result>(new ActionCallable(a, context));
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The executor is saturated, run the action in the request thread instead
+                task.run();
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Result> results = new ArrayList<Result>(actions.length);
+        for (FutureTask<Result> task : tasks) {
+            try {
+                results.add(awaitResult(task, deadline));
+            } catch (InterruptedException e) {
+                for (FutureTask<Result> pending : tasks) {
+                    pending.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new ActionException("Interrupted while executing the batch", e);
+            }
+        }
+
+        return new BatchResult(results);
+    }
+
+    private Result awaitResult(FutureTask<Result> task, long deadline) throws InterruptedException {
+        try {
+            if (timeoutMillis <= 0) {
+                return task.get();
+            }
+            return task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            return null;
+        }
+    }
+
+    /**
+     * Executes a single action of a parallel batch in the batch's {@link ExecutionContext}.
+     */
+    private static class ActionCallable implements Callable<Result> {
+        private final Action<?> action;
+        private final ExecutionContext context;
+
+        ActionCallable(Action<?> action, ExecutionContext context) {
+            this.action = action;
+            this.context = context;
+        }
+
+        @Override
+        public Result call() throws Exception {
+            executingBatchAction.set(Boolean.TRUE);
+            try {
+                return context.execute(action);
+            } finally {
+                executingBatchAction.remove();
+            }
+        }
+    }
 }
@@ -0,0 +1,330 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.ChunkedResult;
+
+/**
+ * Holds the open cursors of chunked results between the requests that fetch their chunks. Items are pulled from the
+ * handler's {@link Iterator} only when a chunk is requested, so at most one chunk per result is held in memory.
+ * <p/>
+ * Cursors that are not read for a while are closed, as are cursors whose items are exhausted. If the iterator
+ * implements {@link Closeable}, it is closed at that point.
+ * <p/>
+ * A cursor can only be read by the client that opened it: each fetch must come from the same
+ * {@link HttpSession} and the same authenticated user, and must still be accepted by the
+ * {@link ActionValidator} of the action that produced the result. Cursor identifiers are also random and hard to
+ * guess.
+ * <p/>
+ * A single instance must be shared by the {@link AbstractChunkedActionHandler}s and the
+ * {@link FetchChunkActionHandler}.
+ */
+public class ChunkedResultCursors {
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    public static final int DEFAULT_MAX_OPEN_CURSORS = 1000;
+
+    private static final char[] ID_ALPHABET = "0123456789abcdefghijklmnopqrstuv".toCharArray();
+    private static final String UNKNOWN_CURSOR_MESSAGE = "Unknown or expired chunked result cursor.";
+
+    /**
+     * The remaining items of a chunked result.
+     */
+    private static class Cursor {
+        private final Iterator<? extends IsSerializable> items;
+        private final int chunkSize;
+        private final Action<?> action;
+        private final ActionValidator actionValidator;
+        private final String sessionId;
+        private final String userName;
+        private volatile long lastAccessNanos;
+        private boolean closed;
+
+        Cursor(Iterator<? extends IsSerializable> items, int chunkSize, Action<?> action,
+                ActionValidator actionValidator, String sessionId, String userName) {
+            this.items = items;
+            this.chunkSize = chunkSize;
+            this.action = action;
+            this.actionValidator = actionValidator;
+            this.sessionId = sessionId;
+            this.userName = userName;
+            this.lastAccessNanos = System.nanoTime();
+        }
+    }
+
+    private final ActionHandlerValidatorRegistry actionHandlerValidatorRegistry;
+    private final RequestProvider requestProvider;
+    private final ConcurrentMap<String, Cursor> cursors = new ConcurrentHashMap<String, Cursor>();
+    private final SecureRandom random = new SecureRandom();
+    private final long idleTimeoutNanos;
+    private final int maxOpenCursors;
+    private volatile long nextPurgeNanos;
+
+    /**
+     * @param actionHandlerValidatorRegistry The registry of the dispatch, to find the validator of chunked actions.
+     * @param requestProvider                The provider of the current request, to identify the client.
+     */
+    public ChunkedResultCursors(ActionHandlerValidatorRegistry actionHandlerValidatorRegistry,
+            RequestProvider requestProvider) {
+        this(actionHandlerValidatorRegistry, requestProvider, DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_MAX_OPEN_CURSORS);
+    }
+
+    /**
+     * @param actionHandlerValidatorRegistry The registry of the dispatch, to find the validator of chunked actions.
+     * @param requestProvider                The provider of the current request, to identify the client.
+     * @param idleTimeoutMillis              How long a cursor is kept open without being read.
+     * @param maxOpenCursors                 The maximum number of cursors open at once. Chunked actions fail with
+     *                                       an {@link ActionException} above that.
+     */
+    public ChunkedResultCursors(ActionHandlerValidatorRegistry actionHandlerValidatorRegistry,
+            RequestProvider requestProvider, long idleTimeoutMillis, int maxOpenCursors) {
+        this.actionHandlerValidatorRegistry = actionHandlerValidatorRegistry;
+        this.requestProvider = requestProvider;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.maxOpenCursors = maxOpenCursors;
+        this.nextPurgeNanos = System.nanoTime() + idleTimeoutNanos;
+    }
+
+    /**
+     * Reads the first chunk of {@code items} and, if there are more, keeps them open behind a new cursor. The cursor
+     * belongs to the session and the user of the current request.
+     *
+     * @param action    The action whose result is chunked.
+     * @param items     The items of the result.
+     * @param chunkSize The maximum number of items per chunk.
+     * @param <T>       The type of the items.
+     * @return The first chunk.
+     * @throws ActionException If too many cursors are open.
+     */
+    public <T extends IsSerializable> ChunkedResult<T> open(Action<?> action, Iterator<? extends T> items,
+            int chunkSize) throws ActionException {
+        purgeIfDue();
+        if (cursors.size() >= maxOpenCursors) {
+            purge();
+            if (cursors.size() >= maxOpenCursors) {
+                close(items);
+                throw new ActionException("Too many chunked results are open, try again later.");
+            }
+        }
+
+        List<T> chunk = readChunk(items, chunkSize);
+        if (!items.hasNext()) {
+            close(items);
+            return new ChunkedResult<T>(chunk, null);
+        }
+
+        ActionValidator actionValidator = findActionValidator(action);
+        if (actionValidator == null) {
+            close(items);
+            throw new ActionException("No validator found for " + action.getClass().getName());
+        }
+
+        HttpServletRequest request = requestProvider.getServletRequest();
+        String id = newId();
+        cursors.put(id, new Cursor(items, chunkSize, action, actionValidator, getSessionId(request),
+                getUserName(request)));
+        return new ChunkedResult<T>(chunk, id);
+    }
+
+    /**
+     * Reads the next chunk of an open cursor. The cursor is closed once its items are exhausted, or when the
+     * validator of its action rejects the request.
+     *
+     * @param id The cursor returned with the previous chunk.
+     * @return The next chunk.
+     * @throws ActionException If the cursor does not exist, has expired, is exhausted or belongs to another client.
+     */
+    @SuppressWarnings("unchecked")
+    public ChunkedResult<?> next(String id) throws ActionException {
+        Cursor cursor = getOwnCursor(id);
+        if (!cursor.actionValidator.isValid(cursor.action)) {
+            closeCursor(id);
+            throw new ActionException(cursor.actionValidator.getClass().getName()
+                    + " no longer allows access to the result of " + cursor.action.getClass().getName());
+        }
+
+        List<IsSerializable> chunk;
+        boolean exhausted;
+        synchronized (cursor) {
+            if (cursor.closed) {
+                throw new ActionException(UNKNOWN_CURSOR_MESSAGE);
+            }
+
+            cursor.lastAccessNanos = System.nanoTime();
+            try {
+                chunk = readChunk((Iterator<IsSerializable>) cursor.items, cursor.chunkSize);
+                exhausted = !cursor.items.hasNext();
+            } catch (RuntimeException e) {
+                closeCursor(id);
+                throw e;
+            }
+        }
+
+        if (exhausted) {
+            closeCursor(id);
+            return new ChunkedResult<IsSerializable>(chunk, null);
+        }
+
+        return new ChunkedResult<IsSerializable>(chunk, id);
+    }
+
+    /**
+     * Closes a cursor of the current client and discards its remaining items. Unknown cursors are ignored.
+     *
+     * @param id The cursor to close.
+     * @throws ActionException If the cursor belongs to another client.
+     */
+    public void close(String id) throws ActionException {
+        Cursor cursor = id == null ? null : cursors.get(id);
+        if (cursor != null && isOwner(cursor)) {
+            closeCursor(id);
+        } else if (cursor != null) {
+            throw new ActionException(UNKNOWN_CURSOR_MESSAGE);
+        }
+    }
+
+    /**
+     * @return The number of cursors currently open.
+     */
+    public int getOpenCursorCount() {
+        return cursors.size();
+    }
+
+    private Cursor getOwnCursor(String id) throws ActionException {
+        Cursor cursor = id == null ? null : cursors.get(id);
+        if (cursor == null || !isOwner(cursor)) {
+            // Other clients' cursors are reported like unknown ones
+            throw new ActionException(UNKNOWN_CURSOR_MESSAGE);
+        }
+
+        return cursor;
+    }
+
+    private boolean isOwner(Cursor cursor) {
+        HttpServletRequest request = requestProvider.getServletRequest();
+        return equal(cursor.sessionId, getSessionId(request)) && equal(cursor.userName, getUserName(request));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ActionValidator findActionValidator(Action<?> action) {
+        ActionHandlerValidatorInstance handlerValidator =
+                actionHandlerValidatorRegistry.findActionHandlerValidator((Action) action);
+        return handlerValidator == null ? null : handlerValidator.getActionValidator();
+    }
+
+    private void closeCursor(String id) {
+        Cursor cursor = id == null ? null : cursors.remove(id);
+        if (cursor != null) {
+            synchronized (cursor) {
+                cursor.closed = true;
+                close(cursor.items);
+            }
+        }
+    }
+
+    private void purgeIfDue() {
+        long now = System.nanoTime();
+        if (now - nextPurgeNanos >= 0) {
+            nextPurgeNanos = now + idleTimeoutNanos / 4;
+            purge();
+        }
+    }
+
+    private void purge() {
+        long now = System.nanoTime();
+        for (String id : cursors.keySet()) {
+            Cursor cursor = cursors.get(id);
+            if (cursor != null && now - cursor.lastAccessNanos > idleTimeoutNanos) {
+                closeCursor(id);
+            }
+        }
+    }
+
+    private String newId() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+
+        // 5 bits per character, the last character only uses the remaining 3 bits
+        char[] id = new char[26];
+        int buffer = 0;
+        int bits = 0;
+        int index = 0;
+        for (byte b : bytes) {
+            buffer = (buffer << 8) | (b & 0xff);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                id[index++] = ID_ALPHABET[(buffer >>> bits) & 0x1f];
+            }
+        }
+        id[index] = ID_ALPHABET[(buffer << (5 - bits)) & 0x1f];
+
+        return new String(id);
+    }
+
+    private static String getSessionId(HttpServletRequest request) {
+        HttpSession session = request == null ? null : request.getSession(false);
+        return session == null ? null : session.getId();
+    }
+
+    private static String getUserName(HttpServletRequest request) {
+        return request == null || request.getUserPrincipal() == null ? null : request.getUserPrincipal().getName();
+    }
+
+    private static boolean equal(String value1, String value2) {
+        return value1 == null ? value2 == null : value1.equals(value2);
+    }
+
+    private static <T> List<T> readChunk(Iterator<? extends T> items, int chunkSize) {
+        List<T> chunk = new ArrayList<T>(chunkSize);
+        while (chunk.size() < chunkSize && items.hasNext()) {
+            chunk.add(items.next());
+        }
+
+        return chunk;
+    }
+
+    private static void close(Iterator<?> items) {
+        if (items instanceof Closeable) {
+            try {
+                ((Closeable) items).close();
+            } catch (IOException e) {
+                // Nothing more can be done with the remaining items
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * An {@link ActionHandler} whose {@link #undo} only needs part of the {@link Result} of the action. When the action
+ * is executed as a nested action, the dispatch keeps the result returned by {@link #getUndoResult} instead of the
+ * full result until the surrounding action completes.
+ *
+ * @param <A> The type of the action extending {@link Action}.
+ * @param <R> The type of the result extending {@link Result}.
+ */
+public interface CompactUndoActionHandler<A extends Action<R>, R extends Result> extends ActionHandler<A, R> {
+
+    /**
+     * @param action The executed action.
+     * @param result The result of the action.
+     * @return The result that will be passed to {@link #undo} if the action is rolled back, for instance a result
+     *         only holding the identifiers of the created entities.
+     */
+    R getUndoResult(A action, R result);
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import java.util.Collections;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.ChunkedResult;
+import com.gwtplatform.dispatch.shared.FetchChunkAction;
+
+/**
+ * This handles {@link FetchChunkAction} requests, serving the chunks that follow the first chunk returned by an
+ * {@link AbstractChunkedActionHandler}. It must share its {@link ChunkedResultCursors} with those handlers, which
+ * check that the chunks are fetched by the client that executed the action.
+ */
+public class FetchChunkActionHandler extends AbstractActionHandler<FetchChunkAction, ChunkedResult<?>> {
+
+    private final ChunkedResultCursors cursors;
+
+    public FetchChunkActionHandler(ChunkedResultCursors cursors) {
+        super(FetchChunkAction.class);
+        this.cursors = cursors;
+    }
+
+    @Override
+    public ChunkedResult<?> execute(FetchChunkAction action, ExecutionContext context) throws ActionException {
+        if (action.isClose()) {
+            cursors.close(action.getCursor());
+            return new ChunkedResult<IsSerializable>(Collections.<IsSerializable>emptyList(), null);
+        }
+
+        return cursors.next(action.getCursor());
+    }
+
+    @Override
+    public void undo(FetchChunkAction action, ChunkedResult<?> result, ExecutionContext context)
+            throws ActionException {
+        // Nothing to undo, chunked results are read-only
+    }
+}
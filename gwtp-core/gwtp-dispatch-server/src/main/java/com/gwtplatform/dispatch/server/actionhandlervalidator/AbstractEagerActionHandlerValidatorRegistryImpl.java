@@ -16,8 +16,11 @@
 
 package com.gwtplatform.dispatch.server.actionhandlervalidator;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
 import com.gwtplatform.dispatch.shared.Action;
@@ -27,67 +30,153 @@ import com.gwtplatform.dispatch.shared.Result;
  * This is a eager-loading implementation of the registry. It will create action handlers and validators at startup. All
  * {@link com.gwtplatform.dispatch.server.actionhandler.ActionHandler ActionHandler}
  * and {@link ActionValidator} implementations <b>must</b> have a public, default constructor.
+ * <p/>
+ * The registry is copy-on-write: every change builds a new immutable snapshot, published atomically, so handlers can
+ * be registered or removed while requests are being served and lookups never lock.
+ * <p/>
+ * When no handler is registered for the exact class of an action, the handler of its nearest superclass or interface
+ * is used. That search is done once per action class and remembered, whether it succeeds or not, until the
+ * registrations change.
  *
  * @author Christian Goudreau
  */
 public abstract class AbstractEagerActionHandlerValidatorRegistryImpl implements EagerActionHandlerValidatorRegistry {
 
-    private final Map<Class<? extends Action<? extends Result>>, ActionHandlerValidatorInstance>
-            actionHandlerValidatorInstances;
-    private final Map<Class<? extends ActionValidator>, ActionValidator> validators;
+    /**
+     * An immutable state of the registry. The maps are never modified once the snapshot is published.
+     */
+    private static class Snapshot {
+        private static final ActionHandlerValidatorInstance NOT_FOUND = new ActionHandlerValidatorInstance(null, null);
+
+        private final Map<Class<?>, ActionHandlerValidatorInstance> actionHandlerValidatorInstances;
+        private final Map<Class<? extends ActionValidator>, ActionValidator> validators;
+        private final Map<Class<? extends ActionValidator>, Integer> validatorUseCounts;
+        private final ClassTable<ActionHandlerValidatorInstance> lookupTable;
+        private final ConcurrentMap<Class<?>, ActionHandlerValidatorInstance> resolvedInstances =
+                new ConcurrentHashMap<Class<?>, ActionHandlerValidatorInstance>();
+
+        private Snapshot(Map<Class<?>, ActionHandlerValidatorInstance> actionHandlerValidatorInstances,
+                Map<Class<? extends ActionValidator>, ActionValidator> validators,
+                Map<Class<? extends ActionValidator>, Integer> validatorUseCounts) {
+            this.actionHandlerValidatorInstances = actionHandlerValidatorInstances;
+            this.validators = validators;
+            this.validatorUseCounts = validatorUseCounts;
+            this.lookupTable = new ClassTable<ActionHandlerValidatorInstance>(actionHandlerValidatorInstances);
+        }
+
+        private ActionHandlerValidatorInstance find(Class<?> actionClass) {
+            ActionHandlerValidatorInstance instance = lookupTable.get(actionClass);
+            if (instance == null && !actionHandlerValidatorInstances.isEmpty()) {
+                instance = resolvedInstances.get(actionClass);
+                if (instance == null) {
+                    instance = resolve(actionClass);
+                    resolvedInstances.putIfAbsent(actionClass, instance);
+                }
+                if (instance == NOT_FOUND) {
+                    instance = null;
+                }
+            }
+
+            return instance;
+        }
+
+        private ActionHandlerValidatorInstance resolve(Class<?> actionClass) {
+            for (Class<?> supertype : ActionClassHierarchy.getSupertypes(actionClass)) {
+                ActionHandlerValidatorInstance instance = actionHandlerValidatorInstances.get(supertype);
+                if (instance != null) {
+                    return instance;
+                }
+            }
+
+            return NOT_FOUND;
+        }
+    }
+
+    private static final Snapshot EMPTY_SNAPSHOT = new Snapshot(
+            Collections.<Class<?>, ActionHandlerValidatorInstance>emptyMap(),
+            Collections.<Class<? extends ActionValidator>, ActionValidator>emptyMap(),
+            Collections.<Class<? extends ActionValidator>, Integer>emptyMap());
+
+    private volatile Snapshot snapshot = EMPTY_SNAPSHOT;
 
     protected AbstractEagerActionHandlerValidatorRegistryImpl() {
-        actionHandlerValidatorInstances = new HashMap<Class<? extends Action<? extends Result>>,
-                ActionHandlerValidatorInstance>();
-        validators = new HashMap<Class<? extends ActionValidator>, ActionValidator>();
     }
 
     @Override
-    public <A extends Action<R>, R extends Result> void addActionHandlerValidator(Class<A> actionClass,
+    public synchronized <A extends Action<R>, R extends Result> void addActionHandlerValidator(Class<A> actionClass,
             ActionHandlerValidatorInstance actionHandlerValidatorInstance) {
-        actionHandlerValidatorInstances.put(actionClass, actionHandlerValidatorInstance);
-        validators.put(actionHandlerValidatorInstance.getActionValidator().getClass(),
-                actionHandlerValidatorInstance.getActionValidator());
+        Snapshot current = snapshot;
+        Map<Class<?>, ActionHandlerValidatorInstance> instances =
+                new HashMap<Class<?>, ActionHandlerValidatorInstance>(current.actionHandlerValidatorInstances);
+        Map<Class<? extends ActionValidator>, ActionValidator> validators =
+                new HashMap<Class<? extends ActionValidator>, ActionValidator>(current.validators);
+        Map<Class<? extends ActionValidator>, Integer> useCounts =
+                new HashMap<Class<? extends ActionValidator>, Integer>(current.validatorUseCounts);
+
+        ActionHandlerValidatorInstance previous = instances.put(actionClass, actionHandlerValidatorInstance);
+        if (previous != null) {
+            releaseValidator(previous.getActionValidator(), validators, useCounts);
+        }
+
+        ActionValidator actionValidator = actionHandlerValidatorInstance.getActionValidator();
+        Integer useCount = useCounts.get(actionValidator.getClass());
+        useCounts.put(actionValidator.getClass(), useCount == null ? 1 : useCount + 1);
+        validators.put(actionValidator.getClass(), actionValidator);
+
+        snapshot = new Snapshot(instances, validators, useCounts);
     }
 
     @Override
-    public void clearActionHandlerValidators() {
-        actionHandlerValidatorInstances.clear();
-        validators.clear();
+    public synchronized void clearActionHandlerValidators() {
+        snapshot = EMPTY_SNAPSHOT;
     }
 
     @Override
     public <A extends Action<R>, R extends Result> ActionHandlerValidatorInstance findActionHandlerValidator(A action) {
-        return actionHandlerValidatorInstances.get(action.getClass());
+        return snapshot.find(action.getClass());
     }
 
     @Override
     public ActionValidator findActionValidator(Class<? extends ActionValidator> actionValidatorClass) {
-        return validators.get(actionValidatorClass);
+        return snapshot.validators.get(actionValidatorClass);
     }
 
     @Override
-    public <A extends Action<R>, R extends Result> boolean removeActionHandlerValidator(Class<A> actionClass) {
-        ActionHandlerValidatorInstance instance = actionHandlerValidatorInstances.remove(actionClass);
-
-        if (instance != null) {
-            if (!containValidator(instance.getActionValidator())) {
-                return validators.remove(instance.getActionValidator().getClass()) != null;
-            }
-        } else {
+    public synchronized <A extends Action<R>, R extends Result> boolean removeActionHandlerValidator(
+            Class<A> actionClass) {
+        Snapshot current = snapshot;
+        ActionHandlerValidatorInstance instance = current.actionHandlerValidatorInstances.get(actionClass);
+        if (instance == null) {
             return false;
         }
 
-        return actionHandlerValidatorInstances.remove(actionClass) != null;
+        Map<Class<?>, ActionHandlerValidatorInstance> instances =
+                new HashMap<Class<?>, ActionHandlerValidatorInstance>(current.actionHandlerValidatorInstances);
+        Map<Class<? extends ActionValidator>, ActionValidator> validators =
+                new HashMap<Class<? extends ActionValidator>, ActionValidator>(current.validators);
+        Map<Class<? extends ActionValidator>, Integer> useCounts =
+                new HashMap<Class<? extends ActionValidator>, Integer>(current.validatorUseCounts);
+
+        instances.remove(actionClass);
+        releaseValidator(instance.getActionValidator(), validators, useCounts);
+
+        snapshot = new Snapshot(instances, validators, useCounts);
+        return true;
     }
 
-    private boolean containValidator(ActionValidator actionValidator) {
-        for (ActionHandlerValidatorInstance validator : actionHandlerValidatorInstances.values()) {
-            if (validator.getActionValidator().getClass().equals(actionValidator.getClass())) {
-                return true;
-            }
+    /**
+     * Forgets a validator once no registered handler uses its class anymore.
+     */
+    private void releaseValidator(ActionValidator actionValidator,
+            Map<Class<? extends ActionValidator>, ActionValidator> validators,
+            Map<Class<? extends ActionValidator>, Integer> useCounts) {
+        Class<? extends ActionValidator> validatorClass = actionValidator.getClass();
+        Integer useCount = useCounts.get(validatorClass);
+        if (useCount == null || useCount <= 1) {
+            useCounts.remove(validatorClass);
+            validators.remove(validatorClass);
+        } else {
+            useCounts.put(validatorClass, useCount - 1);
         }
-
-        return false;
     }
 }
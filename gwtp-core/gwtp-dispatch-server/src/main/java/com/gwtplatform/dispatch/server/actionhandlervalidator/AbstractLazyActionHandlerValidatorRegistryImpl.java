@@ -0,0 +1,342 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandlervalidator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionHandler;
+import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * This is a lazy-loading implementation of the registry. It will only create action handlers and validators when they
+ * are first used.
+ * <p/>
+ * Creation is single-flight: when many threads look up the same action class concurrently, only one of them asks
+ * {@link #getInstance(Class)} for the handler and its validator while the others wait for and share the result.
+ * Failures and missing instances are memoized too, but only for {@link #setFailureRetryDelayMillis(long)}: the first
+ * lookup after that delay tries again, so that a transient error does not disable the action for good. Call
+ * {@link #warmUp()} once the registry is linked to create every registered handler ahead of time.
+ * <p/>
+ * When no handler is registered for the exact class of an action, the handler of its nearest superclass or interface
+ * is used. That search is done once per action class and remembered, whether it succeeds or not, until the
+ * registrations change.
+ */
+public abstract class AbstractLazyActionHandlerValidatorRegistryImpl implements LazyActionHandlerValidatorRegistry {
+
+    public static final long DEFAULT_FAILURE_RETRY_DELAY_MILLIS = 5000;
+
+    private static final Class<?> NOT_FOUND = Void.class;
+
+    /**
+     * Creates an instance once, and remembers when it failed or found no instance.
+     */
+    private static final class CreationTask<V> extends FutureTask<V> {
+        private volatile long failedAtNanos;
+        private volatile boolean failed;
+
+        private CreationTask(Callable<V> factory) {
+            super(factory);
+        }
+
+        @Override
+        public void run() {
+            super.run();
+            if (isFailedOrNull(this)) {
+                failedAtNanos = System.nanoTime();
+                failed = true;
+            }
+        }
+
+        private boolean isFailed() {
+            return failed;
+        }
+
+        private boolean isExpired(long retryDelayNanos) {
+            return failed && System.nanoTime() - failedAtNanos >= retryDelayNanos;
+        }
+    }
+
+    private final ConcurrentMap<Class<? extends Action<?>>, ActionHandlerValidatorClass<? extends Action<?>,
+            ? extends Result>> actionHandlerValidatorClasses;
+    private final ConcurrentMap<Class<? extends Action<?>>, CreationTask<ActionHandlerValidatorInstance>>
+            actionHandlerValidatorInstances;
+    private final ConcurrentMap<Class<? extends ActionValidator>, CreationTask<ActionValidator>> validators;
+    private volatile ConcurrentMap<Class<?>, Class<?>> resolvedActionClasses;
+    private volatile long failureRetryDelayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FAILURE_RETRY_DELAY_MILLIS);
+
+    protected AbstractLazyActionHandlerValidatorRegistryImpl() {
+        actionHandlerValidatorClasses = new ConcurrentHashMap<Class<? extends Action<?>>,
+                ActionHandlerValidatorClass<? extends Action<?>, ? extends Result>>();
+        actionHandlerValidatorInstances = new ConcurrentHashMap<Class<? extends Action<?>>,
+                CreationTask<ActionHandlerValidatorInstance>>();
+        validators = new ConcurrentHashMap<Class<? extends ActionValidator>, CreationTask<ActionValidator>>();
+        resolvedActionClasses = new ConcurrentHashMap<Class<?>, Class<?>>();
+    }
+
+    /**
+     * Sets how long a failed creation, or one that found no instance, is remembered. Lookups made in the meantime get
+     * the same failure without asking {@link #getInstance(Class)} again.
+     *
+     * @param failureRetryDelayMillis The delay in milliseconds, {@code 0} to try again on every lookup.
+     */
+    public void setFailureRetryDelayMillis(long failureRetryDelayMillis) {
+        this.failureRetryDelayNanos = TimeUnit.MILLISECONDS.toNanos(failureRetryDelayMillis);
+    }
+
+    @Override
+    public <A extends Action<R>, R extends Result> void addActionHandlerValidatorClass(Class<A> actionClass,
+            ActionHandlerValidatorClass<A, R> actionHandlerValidatorClass) {
+        actionHandlerValidatorClasses.put(actionClass, actionHandlerValidatorClass);
+        resolvedActionClasses = new ConcurrentHashMap<Class<?>, Class<?>>();
+    }
+
+    @Override
+    public void clearActionHandlerValidators() {
+        actionHandlerValidatorInstances.clear();
+        validators.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <A extends Action<R>, R extends Result> ActionHandlerValidatorInstance findActionHandlerValidator(A action) {
+        return findActionHandlerValidator((Class<? extends Action<?>>) action.getClass());
+    }
+
+    @Override
+    public ActionValidator findActionValidator(Class<? extends ActionValidator> actionValidatorClass) {
+        CreationTask<ActionValidator> task = validators.get(actionValidatorClass);
+        if (task == null || !task.isDone()) {
+            return null;
+        }
+
+        try {
+            return getResult(task);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public <A extends Action<R>, R extends Result> void removeActionHandlerValidatorClass(Class<A> actionClass,
+            ActionHandlerValidatorClass<A, R> actionHandlerValidatorClass) {
+        if (actionHandlerValidatorClasses.remove(actionClass, actionHandlerValidatorClass)) {
+            actionHandlerValidatorInstances.remove(actionClass);
+            resolvedActionClasses = new ConcurrentHashMap<Class<?>, Class<?>>();
+
+            Class<? extends ActionValidator> actionValidatorClass =
+                    actionHandlerValidatorClass.getActionValidatorClass();
+            if (!containValidator(actionValidatorClass)) {
+                validators.remove(actionValidatorClass);
+            }
+        }
+    }
+
+    /**
+     * Creates the handler and validator of every registered action, so that the first requests do not pay for it.
+     * Handlers that fail to be created are ignored, and their failures are not remembered: they are created again
+     * when their action is first executed.
+     */
+    public void warmUp() {
+        for (Class<? extends Action<?>> actionClass : actionHandlerValidatorClasses.keySet()) {
+            try {
+                findActionHandlerValidator(actionClass);
+            } catch (RuntimeException e) {
+                // Retried, and reported if it fails again, when the action is executed
+            }
+            forgetFailure(actionHandlerValidatorInstances, actionClass);
+
+            ActionHandlerValidatorClass<?, ?> actionHandlerValidatorClass =
+                    actionHandlerValidatorClasses.get(actionClass);
+            if (actionHandlerValidatorClass != null) {
+                forgetFailure(validators, actionHandlerValidatorClass.getActionValidatorClass());
+            }
+        }
+    }
+
+    /**
+     * Obtains an instance of an {@link ActionHandler} or an {@link ActionValidator} from the dependency injection
+     * container.
+     *
+     * @param clazz The class of the instance to obtain.
+     * @return The instance.
+     */
+    protected abstract <B> B getInstance(Class<B> clazz);
+
+    private ActionHandlerValidatorInstance findActionHandlerValidator(final Class<? extends Action<?>> actionClass) {
+        CreationTask<ActionHandlerValidatorInstance> task = actionHandlerValidatorInstances.get(actionClass);
+
+        if (task == null || task.isExpired(failureRetryDelayNanos)) {
+            final ActionHandlerValidatorClass<? extends Action<?>, ? extends Result> actionHandlerValidatorClass =
+                    actionHandlerValidatorClasses.get(actionClass);
+            if (actionHandlerValidatorClass == null) {
+                Class<? extends Action<?>> registeredClass = resolveRegisteredClass(actionClass);
+                return registeredClass == null ? null : findActionHandlerValidator(registeredClass);
+            }
+
+            task = getOrCreate(actionHandlerValidatorInstances, actionClass,
+                    new Callable<ActionHandlerValidatorInstance>() {
+                        @Override
+                        public ActionHandlerValidatorInstance call() {
+                            return createInstance(actionHandlerValidatorClass);
+                        }
+                    });
+
+            if (actionHandlerValidatorClasses.get(actionClass) != actionHandlerValidatorClass) {
+                // Unregistered during the creation: do not keep an instance that removeActionHandlerValidatorClass
+                // may already have tried to remove
+                actionHandlerValidatorInstances.remove(actionClass, task);
+                Class<? extends ActionValidator> actionValidatorClass =
+                        actionHandlerValidatorClass.getActionValidatorClass();
+                if (!containValidator(actionValidatorClass)) {
+                    validators.remove(actionValidatorClass);
+                }
+            }
+        }
+
+        return getResult(task);
+    }
+
+    /**
+     * Finds the nearest supertype of {@code actionClass} that has a registered handler, remembering the answer.
+     */
+    @SuppressWarnings("unchecked")
+    private Class<? extends Action<?>> resolveRegisteredClass(Class<? extends Action<?>> actionClass) {
+        ConcurrentMap<Class<?>, Class<?>> resolved = resolvedActionClasses;
+        Class<?> registeredClass = resolved.get(actionClass);
+        if (registeredClass == null) {
+            registeredClass = NOT_FOUND;
+            for (Class<?> supertype : ActionClassHierarchy.getSupertypes(actionClass)) {
+                if (actionHandlerValidatorClasses.containsKey(supertype)) {
+                    registeredClass = supertype;
+                    break;
+                }
+            }
+            resolved.putIfAbsent(actionClass, registeredClass);
+        }
+
+        return registeredClass == NOT_FOUND ? null : (Class<? extends Action<?>>) registeredClass;
+    }
+
+    private boolean containValidator(Class<? extends ActionValidator> actionValidatorClass) {
+        for (ActionHandlerValidatorClass<?, ?> actionHandlerValidatorClass : actionHandlerValidatorClasses.values()) {
+            if (actionHandlerValidatorClass.getActionValidatorClass().equals(actionValidatorClass)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private ActionHandlerValidatorInstance createInstance(
+            ActionHandlerValidatorClass<? extends Action<?>, ? extends Result> actionHandlerValidatorClass) {
+        ActionValidator actionValidator = getOrCreateValidator(actionHandlerValidatorClass.getActionValidatorClass());
+        ActionHandler<?, ?> actionHandler = getInstance(actionHandlerValidatorClass.getActionHandlerClass());
+
+        if (actionHandler == null || actionValidator == null) {
+            return null;
+        }
+
+        return new ActionHandlerValidatorInstance(actionValidator, actionHandler);
+    }
+
+    private ActionValidator getOrCreateValidator(final Class<? extends ActionValidator> actionValidatorClass) {
+        CreationTask<ActionValidator> task = getOrCreate(validators, actionValidatorClass,
+                new Callable<ActionValidator>() {
+                    @Override
+                    public ActionValidator call() {
+                        return getInstance(actionValidatorClass);
+                    }
+                });
+
+        return getResult(task);
+    }
+
+    /**
+     * Returns the task associated with {@code key}, atomically registering and running a new task built from
+     * {@code factory} if there is none. Only the thread that registers the task runs it. A task that failed or
+     * returned {@code null} is replaced once it is older than the failure retry delay.
+     */
+    private <K, V> CreationTask<V> getOrCreate(ConcurrentMap<K, CreationTask<V>> tasks, K key, Callable<V> factory) {
+        CreationTask<V> task = tasks.get(key);
+        while (task == null || task.isExpired(failureRetryDelayNanos)) {
+            if (task != null) {
+                tasks.remove(key, task);
+            }
+
+            CreationTask<V> newTask = new CreationTask<V>(factory);
+            task = tasks.putIfAbsent(key, newTask);
+            if (task == null) {
+                newTask.run();
+                return newTask;
+            }
+        }
+
+        return task;
+    }
+
+    private static <K, V> void forgetFailure(ConcurrentMap<K, CreationTask<V>> tasks, K key) {
+        CreationTask<V> task = tasks.get(key);
+        if (task != null && task.isFailed()) {
+            tasks.remove(key, task);
+        }
+    }
+
+    private static boolean isFailedOrNull(FutureTask<?> completedTask) {
+        try {
+            return completedTask.get() == null;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (InterruptedException e) {
+            // Not thrown, the task is completed
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private static <V> V getResult(FutureTask<V> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
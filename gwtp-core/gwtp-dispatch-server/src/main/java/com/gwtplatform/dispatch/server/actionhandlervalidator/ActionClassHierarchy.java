@@ -0,0 +1,58 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandlervalidator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lists the types a handler can be registered against for a given action class, in the order they are searched when
+ * there is no handler for the exact class.
+ */
+final class ActionClassHierarchy {
+
+    private ActionClassHierarchy() {
+    }
+
+    /**
+     * Returns the superclasses of {@code actionClass}, nearest first, followed by all the interfaces it implements,
+     * breadth-first. {@link Object} and {@code actionClass} itself are not included.
+     *
+     * @param actionClass The concrete class of an action.
+     * @return The supertypes to search, in order.
+     */
+    static List<Class<?>> getSupertypes(Class<?> actionClass) {
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (Class<?> type = actionClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            classes.add(type);
+        }
+
+        Set<Class<?>> supertypes = new LinkedHashSet<Class<?>>(classes.subList(1, classes.size()));
+        List<Class<?>> pending = new ArrayList<Class<?>>(classes);
+        for (int i = 0; i < pending.size(); ++i) {
+            for (Class<?> anInterface : pending.get(i).getInterfaces()) {
+                if (supertypes.add(anInterface)) {
+                    pending.add(anInterface);
+                }
+            }
+        }
+
+        return new ArrayList<Class<?>>(supertypes);
+    }
+}
@@ -34,7 +34,8 @@ public interface ActionHandlerValidatorRegistry {
     /**
      * Searches the registry and returns the first {@link ActionValidator} which
      * supports the specified {@link Action} , or <code>null</code> if none is
-     * available.
+     * available. If nothing is registered for the exact class of the action,
+     * implementations may fall back on its superclasses and interfaces.
      *
      * @param <A>    Type of associated {@link Action}
      * @param <R>    Type of associated {@link Result}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandlervalidator;
+
+import java.util.Map;
+
+/**
+ * An immutable map from classes to values, built once with a load factor of at most one half and read with linear
+ * probing on class identity. Lookups never lock nor allocate.
+ *
+ * @param <V> The type of the values.
+ */
+class ClassTable<V> {
+
+    private final Class<?>[] keys;
+    private final Object[] values;
+    private final int mask;
+
+    ClassTable(Map<? extends Class<?>, ? extends V> entries) {
+        int capacity = Integer.highestOneBit(Math.max(1, entries.size()) * 2 - 1) << 1;
+        keys = new Class<?>[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+
+        for (Map.Entry<? extends Class<?>, ? extends V> entry : entries.entrySet()) {
+            int index = indexOf(entry.getKey());
+            while (keys[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = entry.getKey();
+            values[index] = entry.getValue();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Class<?> key) {
+        int index = indexOf(key);
+        Class<?> candidate;
+        while ((candidate = keys[index]) != null) {
+            if (candidate == key) {
+                return (V) values[index];
+            }
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    private int indexOf(Class<?> key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * Surrounds the execution of every action, nested actions included, once its
+ * {@link com.gwtplatform.dispatch.server.actionvalidator.ActionValidator ActionValidator} accepted it. Interceptors
+ * are called in the order they were bound and each one decides whether to call {@link ActionInterceptorChain#proceed()}
+ * to reach the next interceptor and finally the
+ * {@link com.gwtplatform.dispatch.server.actionhandler.ActionHandler ActionHandler}, or to return a result of its own.
+ * <p/>
+ * Interceptors are singletons shared by all the requests and must be thread-safe. Use
+ * {@code HandlerModule#bindActionInterceptor} to register one.
+ */
+public interface ActionInterceptor {
+
+    /**
+     * @param action  The action being executed.
+     * @param context The {@link ExecutionContext} of the action.
+     * @param chain   The rest of the chain, ending with the action handler.
+     * @return The {@link Result} of the action.
+     * @throws ActionException  If the action failed. Exceptions thrown by {@code chain} should usually be rethrown.
+     * @throws ServiceException If the action could not be executed.
+     */
+    <A extends Action<R>, R extends Result> R intercept(A action, ExecutionContext context,
+            ActionInterceptorChain<A, R> chain) throws ActionException, ServiceException;
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * The remaining {@link ActionInterceptor}s and the {@link com.gwtplatform.dispatch.server.actionhandler.ActionHandler
+ * ActionHandler} of an action being executed.
+ * <p/>
+ * A chain stands for a fixed position: it always continues with the interceptor that follows the one it was given
+ * to. Calling {@link #proceed()} more than once, for instance to retry a failed action, executes the rest of the
+ * chain and the handler again. The chain may be kept and called from another thread, but only while the
+ * {@link com.gwtplatform.dispatch.server.ExecutionContext ExecutionContext} of the action is still open.
+ *
+ * @param <A> Type of the {@link Action}.
+ * @param <R> Type of the {@link Result}.
+ */
+public interface ActionInterceptorChain<A extends Action<R>, R extends Result> {
+
+    /**
+     * Calls the next interceptor, or the action handler if this is the end of the chain. Each call executes them
+     * again.
+     *
+     * @return The {@link Result} of the action.
+     * @throws ActionException  If the action failed.
+     * @throws ServiceException If the action could not be executed.
+     */
+    R proceed() throws ActionException, ServiceException;
+
+    /**
+     * @return {@code true} if the action is executed by another action, through
+     *         {@link com.gwtplatform.dispatch.server.ExecutionContext#execute(Action) ExecutionContext#execute}, or by
+     *         a rollback, {@code false} if it was sent to the dispatch.
+     */
+    boolean isNested();
+}
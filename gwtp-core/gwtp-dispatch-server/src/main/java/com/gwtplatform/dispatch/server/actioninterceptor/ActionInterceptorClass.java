@@ -0,0 +1,32 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+/**
+ * Convenience class to store the {@link ActionInterceptor} class definitions bound by handler modules.
+ */
+public class ActionInterceptorClass {
+    private final Class<? extends ActionInterceptor> actionInterceptorClass;
+
+    public ActionInterceptorClass(Class<? extends ActionInterceptor> actionInterceptorClass) {
+        this.actionInterceptorClass = actionInterceptorClass;
+    }
+
+    public Class<? extends ActionInterceptor> getActionInterceptorClass() {
+        return actionInterceptorClass;
+    }
+}
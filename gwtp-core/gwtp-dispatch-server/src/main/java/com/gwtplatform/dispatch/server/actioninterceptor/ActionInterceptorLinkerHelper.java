@@ -0,0 +1,49 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.gwtplatform.dispatch.server.AbstractDispatchImpl;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorLinkerHelper.BeanProvider;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorLinkerHelper.BeanProvider
+        .BindingDescriptor;
+
+/**
+ * Creates the bound {@link ActionInterceptor}s and links them, in binding order, with the dispatch.
+ */
+public class ActionInterceptorLinkerHelper {
+
+    public static void linkInterceptors(BeanProvider beanProvider, AbstractDispatchImpl dispatch) {
+        Iterator<BindingDescriptor<ActionInterceptorClass>> bindings =
+                beanProvider.getBindings(ActionInterceptorClass.class);
+
+        List<ActionInterceptor> actionInterceptors = new ArrayList<ActionInterceptor>();
+        while (bindings.hasNext()) {
+            Class<? extends ActionInterceptor> actionInterceptorClass =
+                    bindings.next().getBean().getActionInterceptorClass();
+            actionInterceptors.add(beanProvider.getInstance(actionInterceptorClass));
+        }
+
+        dispatch.setActionInterceptors(actionInterceptors);
+    }
+
+    private ActionInterceptorLinkerHelper() {
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+/**
+ * A concurrency limit adjusted with additive increase and multiplicative decrease (AIMD). The limit grows by about
+ * one every {@code limit} executions while it is being used and latencies stay close to the lowest latency observed
+ * recently. It shrinks by {@link #BACKOFF_RATIO}, at most once every {@code limit} executions, when the smoothed
+ * latency exceeds that lowest latency by {@link #LATENCY_TOLERANCE} or when an execution reports an overload.
+ */
+class AimdConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double SMOOTHING = 0.1;
+    private static final int MIN_LATENCY_WINDOW = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private int inFlight;
+    private double smoothedLatencyNanos;
+    private long minLatencyNanos = Long.MAX_VALUE;
+    private int samples;
+    private int samplesSinceDecrease;
+
+    AimdConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+
+        inFlight++;
+        return true;
+    }
+
+    synchronized void release(long latencyNanos, boolean overloaded) {
+        int used = inFlight;
+        inFlight--;
+
+        if (++samples >= MIN_LATENCY_WINDOW) {
+            // Forget the old minimum from time to time so the limit follows lasting changes in latency.
+            samples = 0;
+            minLatencyNanos = latencyNanos;
+        } else {
+            minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+        }
+        smoothedLatencyNanos = smoothedLatencyNanos == 0 ? latencyNanos
+                : smoothedLatencyNanos + SMOOTHING * (latencyNanos - smoothedLatencyNanos);
+        samplesSinceDecrease++;
+
+        if (overloaded || smoothedLatencyNanos > LATENCY_TOLERANCE * minLatencyNanos) {
+            if (samplesSinceDecrease >= limit) {
+                samplesSinceDecrease = 0;
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            }
+        } else if (used * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.CoalescableAction;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * Coalesces the concurrent executions of equal actions annotated with {@link CoalescableAction}. The first one runs
+ * its handler while the ones arriving before it completes wait and share its {@link Result} or exception. Nothing is
+ * kept once the execution completes; use {@link ResultCacheInterceptor} to also reuse results afterwards.
+ * <p/>
+ * The nested actions executed by the handler are recorded in the {@link ExecutionContext} of the first execution
+ * only, which is why this should be restricted to actions that don't modify data.
+ * <p/>
+ * Register it with {@code HandlerModule#bindActionInterceptor(CoalescingInterceptor.class)}.
+ */
+public class CoalescingInterceptor implements ActionInterceptor {
+
+    private final ConcurrentMap<Class<?>, Boolean> coalescableClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+    private final InFlightActions inFlightActions = new InFlightActions();
+
+    @Override
+    public <A extends Action<R>, R extends Result> R intercept(A action, ExecutionContext context,
+            final ActionInterceptorChain<A, R> chain) throws ActionException, ServiceException {
+        if (!isCoalescable(action.getClass())) {
+            return chain.proceed();
+        }
+
+        return inFlightActions.execute(action, new Callable<R>() {
+            @Override
+            public R call() throws Exception {
+                return chain.proceed();
+            }
+        });
+    }
+
+    private boolean isCoalescable(Class<?> actionClass) {
+        Boolean coalescable = coalescableClasses.get(actionClass);
+        if (coalescable == null) {
+            coalescable = actionClass.isAnnotationPresent(CoalescableAction.class);
+            coalescableClasses.put(actionClass, coalescable);
+        }
+
+        return coalescable;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.ServiceOverloadedException;
+
+/**
+ * Limits the number of concurrent executions of each kind of action, so that a slow kind of action can't hold every
+ * container thread. Actions exceeding the limit are rejected immediately with a {@link ServiceOverloadedException}.
+ * Only the actions sent to the dispatch are limited: the nested actions they execute are covered by the admission of
+ * the surrounding action, and rejecting them would fail an action that was already admitted.
+ * <p/>
+ * Each limit adapts to the observed latencies: it grows while executions are as fast as usual and shrinks when they
+ * slow down. By default actions are limited per class, override {@link #getLimitKey(Action)} to group them
+ * differently, for instance by {@link Action#getServiceName()}.
+ * <p/>
+ * Register it with {@code HandlerModule#bindActionInterceptor(ConcurrencyLimitInterceptor.class)}. To change the
+ * limits, bind a subclass calling {@link #ConcurrencyLimitInterceptor(int, int, int)}.
+ */
+public class ConcurrencyLimitInterceptor implements ActionInterceptor {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 4;
+    public static final int DEFAULT_MAX_LIMIT = 500;
+
+    private final ConcurrentMap<Object, AimdConcurrencyLimit> limits =
+            new ConcurrentHashMap<Object, AimdConcurrencyLimit>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+
+    public ConcurrencyLimitInterceptor() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * @param initialLimit The number of concurrent executions allowed before any latency was observed.
+     * @param minLimit     The lowest number of concurrent executions the limit can shrink to.
+     * @param maxLimit     The highest number of concurrent executions the limit can grow to.
+     */
+    public ConcurrencyLimitInterceptor(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @Override
+    public <A extends Action<R>, R extends Result> R intercept(A action, ExecutionContext context,
+            ActionInterceptorChain<A, R> chain) throws ActionException, ServiceException {
+        if (chain.isNested()) {
+            return chain.proceed();
+        }
+
+        Object key = getLimitKey(action);
+        if (key == null) {
+            return chain.proceed();
+        }
+
+        AimdConcurrencyLimit limit = getLimit(key);
+        if (!limit.tryAcquire()) {
+            throw new ServiceOverloadedException("Too many concurrent executions of " + key + ", limit is "
+                    + limit.getLimit());
+        }
+
+        long start = System.nanoTime();
+        boolean overloaded = false;
+        try {
+            return chain.proceed();
+        } catch (ServiceOverloadedException e) {
+            overloaded = true;
+            throw e;
+        } finally {
+            limit.release(System.nanoTime() - start, overloaded);
+        }
+    }
+
+    /**
+     * Returns the key of the limit shared by the actions equivalent to the one being executed.
+     *
+     * @param action The action being executed.
+     * @return The key of the limit, or {@code null} to execute the action without any limit.
+     */
+    protected Object getLimitKey(Action<?> action) {
+        return action.getClass().getName();
+    }
+
+    private AimdConcurrencyLimit getLimit(Object key) {
+        AimdConcurrencyLimit limit = limits.get(key);
+        if (limit == null) {
+            AimdConcurrencyLimit newLimit = new AimdConcurrencyLimit(initialLimit, minLimit, maxLimit);
+            limit = limits.putIfAbsent(key, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+            }
+        }
+
+        return limit;
+    }
+}
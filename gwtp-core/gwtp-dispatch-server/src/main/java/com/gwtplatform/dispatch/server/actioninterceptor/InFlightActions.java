@@ -0,0 +1,141 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * Executes equal actions only once at a time: the first caller runs the action in its own thread while the callers
+ * arriving before it completes wait and receive the same {@link Result} or exception.
+ * <p/>
+ * A caller never waits for itself: an action executed again by the thread running it, from a nested action for
+ * instance, is run directly. Callers give up waiting after a while and run the action themselves, so that a hung
+ * execution, or one waiting for a caller from another thread, does not block every request for that action.
+ */
+class InFlightActions {
+
+    static final long DEFAULT_WAIT_MILLIS = 30000;
+
+    private final ConcurrentMap<Action<?>, FutureTask<?>> tasks = new ConcurrentHashMap<Action<?>, FutureTask<?>>();
+    private final ThreadLocal<Set<Action<?>>> runningActions = new ThreadLocal<Set<Action<?>>>();
+    private final long waitMillis;
+
+    InFlightActions() {
+        this(DEFAULT_WAIT_MILLIS);
+    }
+
+    /**
+     * @param waitMillis How long callers wait for the execution of an equal action before running it themselves.
+     */
+    InFlightActions(long waitMillis) {
+        this.waitMillis = waitMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    <R extends Result> R execute(Action<R> action, Callable<R> callable) throws ActionException, ServiceException {
+        Set<Action<?>> running = runningActions.get();
+        if (running != null && running.contains(action)) {
+            // Waiting for the execution this thread is running would never return
+            return run(action, new FutureTask<R>(callable));
+        }
+
+        FutureTask<R> task = new FutureTask<R>(callable);
+        FutureTask<R> runningTask = (FutureTask<R>) tasks.putIfAbsent(action, task);
+
+        if (runningTask == null) {
+            try {
+                return run(action, task);
+            } finally {
+                tasks.remove(action, task);
+            }
+        }
+
+        try {
+            return getResult(action, runningTask, waitMillis);
+        } catch (TimeoutException e) {
+            return run(action, new FutureTask<R>(callable));
+        }
+    }
+
+    /**
+     * Runs a task in the current thread, remembering the action it executes until it completes.
+     */
+    private <R extends Result> R run(Action<R> action, FutureTask<R> task) throws ActionException, ServiceException {
+        Set<Action<?>> running = runningActions.get();
+        if (running == null) {
+            running = new HashSet<Action<?>>();
+            runningActions.set(running);
+        }
+
+        boolean added = running.add(action);
+        try {
+            task.run();
+        } finally {
+            if (added) {
+                running.remove(action);
+                if (running.isEmpty()) {
+                    runningActions.remove();
+                }
+            }
+        }
+
+        try {
+            return getResult(action, task, 0);
+        } catch (TimeoutException e) {
+            // Not thrown, the task is completed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private <R extends Result> R getResult(Action<R> action, FutureTask<R> task, long timeoutMillis)
+            throws ActionException, ServiceException, TimeoutException {
+        try {
+            return task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ActionException) {
+                throw (ActionException) cause;
+            } else if (cause instanceof ServiceException) {
+                throw (ServiceException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            ServiceException rethrown = new ServiceException(cause);
+            rethrown.initCause(cause);
+            throw rethrown;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while waiting for " + action.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actioninterceptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.CacheableAction;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * Caches the {@link Result} of actions annotated with {@link CacheableAction}, keyed by the action itself, so that
+ * equal actions only reach their handler once per time-to-live. Concurrent executions of an action missing from the
+ * cache are coalesced: only one of them runs the handler and the others share its result or exception. Failures are
+ * never cached.
+ * <p/>
+ * The cache holds a bounded number of results. Lookups do not lock: each entry remembers when it was last used, and
+ * once the cache is full the least recently used tenth of the results is evicted by a single thread. Handlers
+ * updating data can inject this interceptor to {@link #invalidate(Action)} the stale results.
+ * <p/>
+ * Results served from the cache to nested actions are not recorded by the
+ * {@link com.gwtplatform.dispatch.server.ExecutionContext ExecutionContext}, since their handler did not run again,
+ * and are therefore not undone when the surrounding action fails.
+ * <p/>
+ * Register it with {@code HandlerModule#bindActionInterceptor(ResultCacheInterceptor.class)}. To change the size of
+ * the cache, bind a subclass calling {@link #ResultCacheInterceptor(int)}.
+ */
+public class ResultCacheInterceptor implements ActionInterceptor {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final long NOT_CACHEABLE = -1;
+
+    private static class CacheEntry {
+        private final Result result;
+        private final long expirationNanos;
+        private volatile long lastAccessNanos;
+
+        private CacheEntry(Result result, long nowNanos, long expirationNanos) {
+            this.result = result;
+            this.expirationNanos = expirationNanos;
+            lastAccessNanos = nowNanos;
+        }
+
+        private boolean isExpired(long nowNanos) {
+            return nowNanos - expirationNanos >= 0;
+        }
+    }
+
+    private static class AccessSnapshot {
+        private final Action<?> action;
+        private final CacheEntry entry;
+        private final long lastAccessNanos;
+
+        private AccessSnapshot(Action<?> action, CacheEntry entry) {
+            this.action = action;
+            this.entry = entry;
+            lastAccessNanos = entry.lastAccessNanos;
+        }
+    }
+
+    private static final Comparator<AccessSnapshot> LEAST_RECENTLY_USED_FIRST = new Comparator<AccessSnapshot>() {
+        @Override
+        public int compare(AccessSnapshot snapshot1, AccessSnapshot snapshot2) {
+            long difference = snapshot1.lastAccessNanos - snapshot2.lastAccessNanos;
+            return difference < 0 ? -1 : difference == 0 ? 0 : 1;
+        }
+    };
+
+    private final ConcurrentMap<Class<?>, Long> timesToLive = new ConcurrentHashMap<Class<?>, Long>();
+    private final InFlightActions inFlightActions = new InFlightActions();
+    private final ConcurrentMap<Action<?>, CacheEntry> entries = new ConcurrentHashMap<Action<?>, CacheEntry>();
+    private final Lock evictionLock = new ReentrantLock();
+    private final int maxEntries;
+
+    /**
+     * Incremented by every invalidation. A result is only kept if no invalidation happened while it was computed or
+     * stored.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public ResultCacheInterceptor() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries The maximum number of results kept in the cache.
+     */
+    public ResultCacheInterceptor(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public <A extends Action<R>, R extends Result> R intercept(final A action, ExecutionContext context,
+            final ActionInterceptorChain<A, R> chain) throws ActionException, ServiceException {
+        final long timeToLiveMillis = getTimeToLiveMillis(action.getClass());
+        if (timeToLiveMillis == NOT_CACHEABLE) {
+            return chain.proceed();
+        }
+
+        R result = getCachedResult(action);
+        if (result != null) {
+            return result;
+        }
+
+        return inFlightActions.execute(action, new Callable<R>() {
+            @Override
+            public R call() throws Exception {
+                // The result may have been stored by an execution that completed since the first lookup.
+                R cachedResult = getCachedResult(action);
+                if (cachedResult != null) {
+                    return cachedResult;
+                }
+
+                long startGeneration = generation.get();
+                R newResult = chain.proceed();
+                putResult(action, newResult, timeToLiveMillis, startGeneration);
+                return newResult;
+            }
+        });
+    }
+
+    /**
+     * Removes the cached result of an action.
+     *
+     * @param action The action whose result is stale.
+     */
+    public void invalidate(Action<?> action) {
+        generation.incrementAndGet();
+        entries.remove(action);
+    }
+
+    /**
+     * Removes the cached results of every action of a given class.
+     *
+     * @param actionClass The class of the actions whose results are stale.
+     */
+    public void invalidate(Class<?> actionClass) {
+        generation.incrementAndGet();
+        for (Iterator<Action<?>> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().getClass() == actionClass) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends Result> R getCachedResult(Action<R> action) {
+        CacheEntry entry = entries.get(action);
+        if (entry == null) {
+            return null;
+        }
+
+        long nowNanos = System.nanoTime();
+        if (entry.isExpired(nowNanos)) {
+            entries.remove(action, entry);
+            return null;
+        }
+
+        entry.lastAccessNanos = nowNanos;
+        return (R) entry.result;
+    }
+
+    private void putResult(Action<?> action, Result result, long timeToLiveMillis, long startGeneration) {
+        if (result == null || generation.get() != startGeneration) {
+            return;
+        }
+
+        long nowNanos = System.nanoTime();
+        CacheEntry entry = new CacheEntry(result, nowNanos, nowNanos + TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis));
+        entries.put(action, entry);
+        // An invalidation may have removed the action just before the entry was stored.
+        if (generation.get() != startGeneration) {
+            entries.remove(action, entry);
+            return;
+        }
+
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    /**
+     * Removes the expired results and, while the cache is over 90% of its size, the least recently used ones. Only one
+     * thread evicts at a time, the others store their result and move on.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            long nowNanos = System.nanoTime();
+            List<AccessSnapshot> snapshots = new ArrayList<AccessSnapshot>(entries.size());
+            for (Map.Entry<Action<?>, CacheEntry> mapEntry : entries.entrySet()) {
+                CacheEntry entry = mapEntry.getValue();
+                if (entry.isExpired(nowNanos)) {
+                    entries.remove(mapEntry.getKey(), entry);
+                } else {
+                    snapshots.add(new AccessSnapshot(mapEntry.getKey(), entry));
+                }
+            }
+
+            int excess = entries.size() - maxEntries * 9 / 10;
+            if (excess <= 0) {
+                return;
+            }
+
+            Collections.sort(snapshots, LEAST_RECENTLY_USED_FIRST);
+            for (int i = 0; i < excess && i < snapshots.size(); i++) {
+                entries.remove(snapshots.get(i).action, snapshots.get(i).entry);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private long getTimeToLiveMillis(Class<?> actionClass) {
+        Long timeToLive = timesToLive.get(actionClass);
+        if (timeToLive == null) {
+            CacheableAction cacheableAction = actionClass.getAnnotation(CacheableAction.class);
+            timeToLive = cacheableAction == null ? NOT_CACHEABLE : Math.max(0, cacheableAction.timeToLiveMillis());
+            timesToLive.put(actionClass, timeToLive);
+        }
+
+        return timeToLive;
+    }
+}
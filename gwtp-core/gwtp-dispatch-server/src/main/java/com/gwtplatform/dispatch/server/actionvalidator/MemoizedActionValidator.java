@@ -0,0 +1,37 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionvalidator;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * An {@link ActionValidator} whose verdict can be reused for other actions of the same request, for instance a role
+ * check. Within an {@link com.gwtplatform.dispatch.server.ExecutionContext ExecutionContext}, such as all the actions
+ * of a {@link com.gwtplatform.dispatch.shared.BatchAction BatchAction}, {@link #isValid} is normally only called
+ * once per validator class and validation key. Exceptions thrown by {@link #isValid} are not memoized.
+ */
+public interface MemoizedActionValidator extends ActionValidator {
+
+    /**
+     * Returns the part of the action the verdict depends on. Actions with equal keys are validated once per request.
+     *
+     * @param action The action to validate.
+     * @return The validation key of the action, or {@code null} if the verdict doesn't depend on the action at all.
+     */
+    Object getValidationKey(Action<? extends Result> action);
+}
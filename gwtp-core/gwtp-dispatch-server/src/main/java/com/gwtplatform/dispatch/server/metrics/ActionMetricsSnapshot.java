@@ -0,0 +1,124 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable view of the metrics recorded for one action class. Latencies are in microseconds.
+ */
+public class ActionMetricsSnapshot {
+
+    private final String actionClass;
+    private final long invocationCount;
+    private final long errorCount;
+    private final long rejectionCount;
+    private final Map<String, Long> errorCounts;
+    private final long totalMicros;
+    private final long p50Micros;
+    private final long p90Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+
+    @ConstructorProperties({"actionClass", "invocationCount", "errorCount", "rejectionCount", "errorCounts",
+            "totalMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros"})
+    public ActionMetricsSnapshot(String actionClass, long invocationCount, long errorCount, long rejectionCount,
+            Map<String, Long> errorCounts, long totalMicros, long p50Micros, long p90Micros, long p99Micros,
+            long maxMicros) {
+        this.actionClass = actionClass;
+        this.invocationCount = invocationCount;
+        this.errorCount = errorCount;
+        this.rejectionCount = rejectionCount;
+        this.errorCounts = Collections.unmodifiableMap(errorCounts);
+        this.totalMicros = totalMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * @return The fully qualified name of the action class.
+     */
+    public String getActionClass() {
+        return actionClass;
+    }
+
+    /**
+     * @return The number of executions, successful or not.
+     */
+    public long getInvocationCount() {
+        return invocationCount;
+    }
+
+    /**
+     * @return The number of failed executions, including rejections.
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return The number of executions refused by the action validator.
+     */
+    public long getRejectionCount() {
+        return rejectionCount;
+    }
+
+    /**
+     * @return The number of failed executions keyed by the fully qualified name of the exception class.
+     */
+    public Map<String, Long> getErrorCounts() {
+        return errorCounts;
+    }
+
+    /**
+     * @return The time spent in all the executions of this action.
+     */
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public long getMeanMicros() {
+        return invocationCount == 0 ? 0 : totalMicros / invocationCount;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP90Micros() {
+        return p90Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return actionClass + "[invocations=" + invocationCount + ", errors=" + errorCount + ", rejections="
+                + rejectionCount + ", totalMicros=" + totalMicros + ", p50=" + p50Micros + ", p90=" + p90Micros
+                + ", p99=" + p99Micros + ", max=" + maxMicros + "]";
+    }
+}
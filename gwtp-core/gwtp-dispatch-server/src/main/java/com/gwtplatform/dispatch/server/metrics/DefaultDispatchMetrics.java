@@ -0,0 +1,197 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Default {@link DispatchMetrics} keeping, for each action class, invocation, error and rejection counters and a
+ * latency histogram. Recording never locks: it only touches atomic counters once the per-class entry exists.
+ * <p/>
+ * The metrics can be read with {@link #getSnapshot()} or through JMX once {@link #registerMBean()} has been called.
+ */
+public class DefaultDispatchMetrics implements DispatchMetrics, DispatchMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.gwtplatform.dispatch:type=DispatchMetrics";
+
+    private static class ActionMetrics {
+        private final AtomicLong invocationCount = new AtomicLong();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final AtomicLong rejectionCount = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final ConcurrentMap<Class<?>, AtomicLong> errorCounts = new ConcurrentHashMap<Class<?>, AtomicLong>();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private void record(long elapsedNanos) {
+            invocationCount.incrementAndGet();
+            totalNanos.addAndGet(elapsedNanos);
+            latencies.record(elapsedNanos);
+        }
+
+        private void recordError(Class<?> exceptionClass) {
+            errorCount.incrementAndGet();
+
+            AtomicLong count = errorCounts.get(exceptionClass);
+            if (count == null) {
+                AtomicLong newCount = new AtomicLong();
+                count = errorCounts.putIfAbsent(exceptionClass, newCount);
+                if (count == null) {
+                    count = newCount;
+                }
+            }
+            count.incrementAndGet();
+        }
+
+        private ActionMetricsSnapshot snapshot(Class<?> actionClass) {
+            Map<String, Long> errors = new HashMap<String, Long>();
+            for (Map.Entry<Class<?>, AtomicLong> entry : errorCounts.entrySet()) {
+                errors.put(entry.getKey().getName(), entry.getValue().get());
+            }
+
+            long[] percentiles = latencies.getValuesAtPercentiles(50, 90, 99);
+            return new ActionMetricsSnapshot(actionClass.getName(), invocationCount.get(), errorCount.get(),
+                    rejectionCount.get(), errors, toMicros(totalNanos.get()), toMicros(percentiles[0]),
+                    toMicros(percentiles[1]), toMicros(percentiles[2]), toMicros(latencies.getMax()));
+        }
+    }
+
+    private static final Comparator<ActionMetricsSnapshot> MOST_EXPENSIVE_FIRST =
+            new Comparator<ActionMetricsSnapshot>() {
+                @Override
+                public int compare(ActionMetricsSnapshot o1, ActionMetricsSnapshot o2) {
+                    long total1 = o1.getTotalMicros();
+                    long total2 = o2.getTotalMicros();
+                    return total1 < total2 ? 1 : (total1 == total2 ? 0 : -1);
+                }
+            };
+
+    private final ConcurrentMap<Class<?>, ActionMetrics> metrics = new ConcurrentHashMap<Class<?>, ActionMetrics>();
+
+    private ObjectName registeredName;
+
+    @Override
+    public void onExecuted(Class<?> actionClass, long elapsedNanos) {
+        getMetrics(actionClass).record(elapsedNanos);
+    }
+
+    @Override
+    public void onFailed(Class<?> actionClass, Throwable cause, long elapsedNanos) {
+        ActionMetrics actionMetrics = getMetrics(actionClass);
+        actionMetrics.record(elapsedNanos);
+        actionMetrics.recordError(cause.getClass());
+    }
+
+    @Override
+    public void onRejected(Class<?> actionClass, Class<?> validatorClass) {
+        getMetrics(actionClass).rejectionCount.incrementAndGet();
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every action executed so far. Counters are read one by one while actions
+     * keep executing, so a snapshot can be slightly inconsistent but never blocks recording.
+     *
+     * @return The snapshots, sorted by decreasing total execution time.
+     */
+    public List<ActionMetricsSnapshot> getSnapshot() {
+        List<ActionMetricsSnapshot> snapshots = new ArrayList<ActionMetricsSnapshot>(metrics.size());
+        for (Map.Entry<Class<?>, ActionMetrics> entry : metrics.entrySet()) {
+            snapshots.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        Collections.sort(snapshots, MOST_EXPENSIVE_FIRST);
+
+        return snapshots;
+    }
+
+    /**
+     * @param actionClass The action class.
+     * @return The snapshot of the metrics of the action class, or {@code null} if it was never executed.
+     */
+    public ActionMetricsSnapshot getSnapshot(Class<?> actionClass) {
+        ActionMetrics actionMetrics = metrics.get(actionClass);
+        return actionMetrics == null ? null : actionMetrics.snapshot(actionClass);
+    }
+
+    @Override
+    public List<ActionMetricsSnapshot> getActionMetrics() {
+        return getSnapshot();
+    }
+
+    @Override
+    public void reset() {
+        metrics.clear();
+    }
+
+    /**
+     * Registers these metrics in the platform {@link MBeanServer} under {@link #OBJECT_NAME}.
+     *
+     * @throws JMException If the registration failed, for instance because another instance is already registered.
+     */
+    public synchronized void registerMBean() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, name);
+        registeredName = name;
+    }
+
+    /**
+     * Removes these metrics from the platform {@link MBeanServer}. Metrics registered by another instance, for instance
+     * by another application, are left in place.
+     *
+     * @throws JMException If these metrics were not registered.
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (registeredName == null) {
+            throw new InstanceNotFoundException(OBJECT_NAME);
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.unregisterMBean(registeredName);
+        registeredName = null;
+    }
+
+    private ActionMetrics getMetrics(Class<?> actionClass) {
+        ActionMetrics actionMetrics = metrics.get(actionClass);
+        if (actionMetrics == null) {
+            ActionMetrics newMetrics = new ActionMetrics();
+            actionMetrics = metrics.putIfAbsent(actionClass, newMetrics);
+            if (actionMetrics == null) {
+                actionMetrics = newMetrics;
+            }
+        }
+
+        return actionMetrics;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
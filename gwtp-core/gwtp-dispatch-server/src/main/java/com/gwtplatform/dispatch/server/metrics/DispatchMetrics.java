@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.metrics;
+
+/**
+ * Receives timing and outcome information for every action executed by
+ * {@link com.gwtplatform.dispatch.server.AbstractDispatchImpl AbstractDispatchImpl}, including nested actions.
+ * <p/>
+ * Implementations are called on the request threads and must be thread-safe and cheap. When no
+ * {@link DispatchMetrics} is configured the dispatch doesn't measure anything.
+ *
+ * @see DefaultDispatchMetrics
+ */
+public interface DispatchMetrics {
+
+    /**
+     * Called after an action executed successfully.
+     *
+     * @param actionClass  The class of the executed action.
+     * @param elapsedNanos The time spent validating and executing the action, in nanoseconds.
+     */
+    void onExecuted(Class<?> actionClass, long elapsedNanos);
+
+    /**
+     * Called after the execution of an action failed. Rejected actions are reported here as well, after
+     * {@link #onRejected(Class, Class)}.
+     *
+     * @param actionClass  The class of the action.
+     * @param cause        The exception thrown to the caller.
+     * @param elapsedNanos The time spent validating and executing the action, in nanoseconds.
+     */
+    void onFailed(Class<?> actionClass, Throwable cause, long elapsedNanos);
+
+    /**
+     * Called when an {@link com.gwtplatform.dispatch.server.actionvalidator.ActionValidator ActionValidator}
+     * refused an action.
+     *
+     * @param actionClass    The class of the rejected action.
+     * @param validatorClass The class of the validator that rejected it.
+     */
+    void onRejected(Class<?> actionClass, Class<?> validatorClass);
+}
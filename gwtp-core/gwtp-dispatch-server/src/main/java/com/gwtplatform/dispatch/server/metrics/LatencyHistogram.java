@@ -0,0 +1,110 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with logarithmic buckets, in the spirit of HdrHistogram. Every power of two is split
+ * in {@value #SUB_BUCKET_COUNT} linear sub-buckets, so any recorded value is known within 12.5% while the whole range
+ * of {@code long} fits in a few hundred counters. Recording is a single atomic increment.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        long positiveValue = Math.max(value, 0);
+        counts.incrementAndGet(indexOf(positiveValue));
+
+        long currentMax = max.get();
+        while (positiveValue > currentMax && !max.compareAndSet(currentMax, positiveValue)) {
+            currentMax = max.get();
+        }
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Computes several percentiles with a single pass over a copy of the counters.
+     *
+     * @param percentiles The percentiles to compute, in increasing order, between {@code 0} and {@code 100}.
+     * @return The highest value equivalent to each percentile, or {@code 0} if nothing was recorded.
+     */
+    long[] getValuesAtPercentiles(double... percentiles) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        long[] values = new long[percentiles.length];
+        if (total == 0) {
+            return values;
+        }
+
+        long highest = max.get();
+        long seen = 0;
+        int bucket = 0;
+        for (int i = 0; i < percentiles.length; i++) {
+            long rank = Math.max(1, (long) Math.ceil(percentiles[i] / 100 * total));
+            while (bucket < BUCKET_COUNT - 1 && seen + snapshot[bucket] < rank) {
+                seen += snapshot[bucket];
+                bucket++;
+            }
+            values[i] = Math.min(highestEquivalentValue(bucket), highest);
+        }
+
+        return values;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long lowestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        return (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowestEquivalentValue(index + 1) - 1;
+    }
+}
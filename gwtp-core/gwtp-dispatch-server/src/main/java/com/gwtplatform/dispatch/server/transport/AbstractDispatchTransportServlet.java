@@ -0,0 +1,191 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.DispatchExceptionPolicy;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * Exposes the {@link Dispatch} to clients that do not use GWT-RPC, such as other services or load tests. Actions are
+ * encoded by a {@link DispatchCodec} and go through the same handlers, validators and interceptors as the actions
+ * sent by {@link com.gwtplatform.dispatch.server.AbstractDispatchServiceImpl AbstractDispatchServiceImpl}.
+ * <p/>
+ * A single request can carry many actions. They are executed in order, and each result is flushed as soon as no
+ * further action has been received, so clients can keep sending actions while reading results. See
+ * {@link DispatchTransportClient}.
+ * <p/>
+ * Transport callers do not send the security cookie. Instead, every request must be accepted by the
+ * {@link DispatchTransportAuthenticator} before its actions are decoded, and each secured action must be authorized
+ * by it. This servlet is not bound by default: map it only when it is needed.
+ */
+public abstract class AbstractDispatchTransportServlet extends HttpServlet {
+
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 4 * 1024 * 1024;
+
+    private static final long serialVersionUID = 2581264914352981747L;
+
+    protected final Logger logger;
+    protected final Dispatch dispatch;
+
+    private final DispatchCodec codec;
+    private final DispatchTransportAuthenticator authenticator;
+    private volatile DispatchExceptionPolicy exceptionPolicy = new DispatchExceptionPolicy();
+    private volatile int maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
+
+    protected AbstractDispatchTransportServlet(Logger logger, Dispatch dispatch, DispatchCodec codec,
+            DispatchTransportAuthenticator authenticator) {
+        this.logger = logger;
+        this.dispatch = dispatch;
+        this.codec = codec;
+        this.authenticator = authenticator;
+    }
+
+    /**
+     * Sets how failed actions are logged and reported to the client.
+     *
+     * @param exceptionPolicy The {@link DispatchExceptionPolicy}.
+     */
+    public void setExceptionPolicy(DispatchExceptionPolicy exceptionPolicy) {
+        this.exceptionPolicy = exceptionPolicy;
+    }
+
+    /**
+     * @param maxFrameLength The maximum size of an encoded action, in bytes. The request is aborted above that.
+     */
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!authenticator.isAuthenticated(request)) {
+            logger.warning("Unauthenticated dispatch transport request from " + request.getRemoteAddr());
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        String contentType = request.getContentType();
+        if (contentType == null || !contentType.startsWith(codec.getContentType())) {
+            response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            return;
+        }
+
+        response.setContentType(codec.getContentType());
+        DataInputStream in = new DataInputStream(new BufferedInputStream(request.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(response.getOutputStream()));
+        ByteArrayOutputStream resultBuffer = new ByteArrayOutputStream();
+
+        int length;
+        while ((length = TransportFrames.readLength(in)) >= 0) {
+            if (length > maxFrameLength) {
+                logger.warning("Dispatch transport frame of " + length + " bytes rejected");
+                TransportFrames.writeFailure(out, TransportFrames.STATUS_SERVICE_EXCEPTION,
+                        new ServiceException("Action too large"));
+                break;
+            }
+
+            byte[] frame = new byte[length];
+            in.readFully(frame);
+            execute(request, frame, out, resultBuffer);
+
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+
+        out.flush();
+    }
+
+    private void execute(HttpServletRequest request, byte[] frame, DataOutputStream out,
+            ByteArrayOutputStream resultBuffer) throws IOException {
+        Action<?> action;
+        try {
+            action = codec.readAction(new ByteArrayInputStream(frame));
+        } catch (IOException e) {
+            logger.warning("Invalid action received by the dispatch transport: " + e);
+            TransportFrames.writeFailure(out, TransportFrames.STATUS_SERVICE_EXCEPTION,
+                    new ServiceException("Invalid action"));
+            return;
+        } catch (RuntimeException e) {
+            // For instance a ClassCastException from a frame that isn't an action
+            logger.warning("Invalid action received by the dispatch transport: " + e);
+            TransportFrames.writeFailure(out, TransportFrames.STATUS_SERVICE_EXCEPTION,
+                    new ServiceException("Invalid action"));
+            return;
+        }
+
+        if (action.isSecured() && !authenticator.isAuthorized(request, action)) {
+            String message = "Action not authorized for this dispatch transport caller: " + action.getClass().getName();
+            logger.warning(message);
+            TransportFrames.writeFailure(out, TransportFrames.STATUS_SERVICE_EXCEPTION, new ServiceException(message));
+            return;
+        }
+
+        DispatchExceptionPolicy policy = exceptionPolicy;
+        Result result;
+        try {
+            result = dispatch.execute(action);
+        } catch (ActionException e) {
+            policy.logFailure(logger, "Action exception while executing ", action, e);
+            TransportFrames.writeFailure(out, TransportFrames.STATUS_ACTION_EXCEPTION, e);
+            return;
+        } catch (ServiceException e) {
+            policy.logFailure(logger, "Service exception while executing ", action, e);
+            TransportFrames.writeFailure(out, TransportFrames.STATUS_SERVICE_EXCEPTION,
+                    policy.toClientException(action, e));
+            return;
+        } catch (RuntimeException e) {
+            policy.logFailure(logger, "Unexpected exception while executing ", action, e);
+            ServiceException rethrown = new ServiceException(e);
+            rethrown.initCause(e);
+            TransportFrames.writeFailure(out, TransportFrames.STATUS_SERVICE_EXCEPTION,
+                    policy.toClientException(action, rethrown));
+            return;
+        }
+
+        resultBuffer.reset();
+        try {
+            codec.writeResult(result, resultBuffer);
+        } catch (IOException e) {
+            policy.logFailure(logger, "Cannot encode the result of ", action, e);
+            TransportFrames.writeFailure(out, TransportFrames.STATUS_SERVICE_EXCEPTION,
+                    new ServiceException("Cannot encode the result"));
+            return;
+        }
+
+        out.writeByte(TransportFrames.STATUS_RESULT);
+        out.writeInt(resultBuffer.size());
+        resultBuffer.writeTo(out);
+    }
+}
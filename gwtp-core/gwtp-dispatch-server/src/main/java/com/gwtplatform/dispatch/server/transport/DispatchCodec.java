@@ -0,0 +1,45 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * Encodes the actions and results exchanged through an {@link AbstractDispatchTransportServlet}. Each action and
+ * result is written to, and read from, its own frame, so implementations do not need to delimit them.
+ * <p/>
+ * The decoded data comes from the network: implementations must only instantiate the classes they expect.
+ */
+public interface DispatchCodec {
+    /**
+     * @return The content type of the requests and responses. Requests with another content type are rejected.
+     */
+    String getContentType();
+
+    void writeAction(Action<?> action, OutputStream out) throws IOException;
+
+    Action<?> readAction(InputStream in) throws IOException;
+
+    void writeResult(Result result, OutputStream out) throws IOException;
+
+    Result readResult(InputStream in) throws IOException;
+}
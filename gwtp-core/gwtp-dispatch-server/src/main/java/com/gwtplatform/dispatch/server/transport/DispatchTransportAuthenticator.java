@@ -0,0 +1,46 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.gwtplatform.dispatch.shared.Action;
+
+/**
+ * Controls who can execute actions through an {@link AbstractDispatchTransportServlet}. Transport callers do not send
+ * the security cookie, so this is the only access control of the transport: check a client certificate, a signed
+ * header or the container's authentication, for example.
+ */
+public interface DispatchTransportAuthenticator {
+    /**
+     * Called before anything is read from the request, so that actions from unknown callers are never decoded.
+     *
+     * @param request The transport request.
+     * @return {@code true} if the caller can use the transport.
+     */
+    boolean isAuthenticated(HttpServletRequest request);
+
+    /**
+     * Called for each action whose {@link Action#isSecured()} returns {@code true}, which GWT-RPC callers can only
+     * execute with the security cookie.
+     *
+     * @param request The transport request, from an authenticated caller.
+     * @param action  The secured action.
+     * @return {@code true} if the caller can execute the action.
+     */
+    boolean isAuthorized(HttpServletRequest request, Action<?> action);
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * Executes actions through an {@link AbstractDispatchTransportServlet}, from plain Java code. Connections are kept
+ * alive between calls by {@link HttpURLConnection}, and {@link #executeAll(List)} sends many actions per request.
+ * <p/>
+ * {@link HttpURLConnection} only reads the response once the whole request is sent, while the servlet writes each
+ * result as soon as it is executed. Each request therefore only carries as many actions after its first one as fit in
+ * {@link #setMaxBatchBytes(int)}, so the client can finish sending them even if the servlet stops reading because the
+ * results aren't read yet.
+ */
+public class DispatchTransportClient {
+
+    /**
+     * Small enough to fit in the default socket buffers.
+     */
+    public static final int DEFAULT_MAX_BATCH_BYTES = 32 * 1024;
+
+    private final URL url;
+    private final DispatchCodec codec;
+    private final int timeoutMillis;
+    private volatile int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+    /**
+     * @param url           The URL the transport servlet is mapped to.
+     * @param codec         The {@link DispatchCodec} of the servlet.
+     * @param timeoutMillis The connect and read timeout, or {@code 0} to wait indefinitely.
+     */
+    public DispatchTransportClient(URL url, DispatchCodec codec, int timeoutMillis) {
+        this.url = url;
+        this.codec = codec;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Sets how many bytes of encoded actions may follow the first one in a request. Defaults to
+     * {@link #DEFAULT_MAX_BATCH_BYTES}.
+     *
+     * @param maxBatchBytes The maximum size of the actions following the first one, or {@code 0} to send one action
+     *                      per request.
+     */
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R extends Result> R execute(Action<R> action) throws ActionException, ServiceException {
+        Object outcome = executeAll(Collections.<Action<?>>singletonList(action)).get(0);
+        if (outcome instanceof ActionException) {
+            throw (ActionException) outcome;
+        }
+        if (outcome instanceof ServiceException) {
+            throw (ServiceException) outcome;
+        }
+
+        return (R) outcome;
+    }
+
+    /**
+     * Executes many actions in as few requests as {@link #setMaxBatchBytes(int)} allows. The server executes them in
+     * order.
+     *
+     * @param actions The actions to execute.
+     * @return For each action, its {@link Result} or the {@link ActionException} or {@link ServiceException} it
+     *         failed with.
+     * @throws ServiceException If a request itself failed. The actions sent by the previous requests were executed.
+     */
+    public List<Object> executeAll(List<? extends Action<?>> actions) throws ServiceException {
+        try {
+            return send(actions);
+        } catch (IOException e) {
+            ServiceException serviceException = new ServiceException("Dispatch transport failure: " + e);
+            serviceException.initCause(e);
+            throw serviceException;
+        }
+    }
+
+    private List<Object> send(List<? extends Action<?>> actions) throws IOException {
+        List<byte[]> frames = new ArrayList<byte[]>(actions.size());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (Action<?> action : actions) {
+            buffer.reset();
+            codec.writeAction(action, buffer);
+            frames.add(buffer.toByteArray());
+        }
+
+        int limit = maxBatchBytes;
+        List<Object> outcomes = new ArrayList<Object>(actions.size());
+        int start = 0;
+        while (start < frames.size()) {
+            int end = start + 1;
+            long batchBytes = 0;
+            while (end < frames.size() && batchBytes + 4 + frames.get(end).length <= limit) {
+                batchBytes += 4 + frames.get(end).length;
+                ++end;
+            }
+
+            sendBatch(frames.subList(start, end), outcomes);
+            start = end;
+        }
+
+        return outcomes;
+    }
+
+    private void sendBatch(List<byte[]> frames, List<Object> outcomes) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setRequestProperty("Content-Type", codec.getContentType());
+        connection.setChunkedStreamingMode(0);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        for (byte[] frame : frames) {
+            out.writeInt(frame.length);
+            out.write(frame);
+        }
+        out.close();
+
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            InputStream errorStream = connection.getErrorStream();
+            if (errorStream != null) {
+                errorStream.close();
+            }
+            throw new IOException("HTTP " + connection.getResponseCode() + " " + connection.getResponseMessage());
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        try {
+            for (int i = 0; i < frames.size(); ++i) {
+                outcomes.add(readOutcome(in));
+            }
+        } finally {
+            // Closing the fully read stream returns the connection to the keep-alive pool
+            in.close();
+        }
+    }
+
+    private Object readOutcome(DataInputStream in) throws IOException {
+        int status = in.read();
+        switch (status) {
+            case TransportFrames.STATUS_RESULT:
+                byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+                return codec.readResult(new ByteArrayInputStream(frame));
+            case TransportFrames.STATUS_ACTION_EXCEPTION:
+                return createException(in.readUTF(), in.readUTF(), ActionException.class);
+            case TransportFrames.STATUS_SERVICE_EXCEPTION:
+                return createException(in.readUTF(), in.readUTF(), ServiceException.class);
+            case -1:
+                throw new EOFException("The response ended before all the results were received");
+            default:
+                throw new IOException("Unknown status " + status);
+        }
+    }
+
+    /**
+     * Recreates the exception thrown by the server if its class is known, or its base class otherwise.
+     */
+    private <E extends Exception> E createException(String className, String message, Class<E> baseClass) {
+        try {
+            Class<?> exceptionClass = Class.forName(className, false, baseClass.getClassLoader());
+            if (baseClass.isAssignableFrom(exceptionClass)) {
+                Constructor<? extends E> constructor =
+                        exceptionClass.asSubclass(baseClass).getConstructor(String.class);
+                return constructor.newInstance(message);
+            }
+        } catch (Exception e) {
+            // Fall back on the base class
+        }
+
+        try {
+            return baseClass.getConstructor(String.class).newInstance(className + ": " + message);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
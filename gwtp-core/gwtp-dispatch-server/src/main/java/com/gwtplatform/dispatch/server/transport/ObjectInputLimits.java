@@ -0,0 +1,146 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Limits the size of the object graphs read by an {@link ObjectInputStream}, with an {@code ObjectInputFilter}.
+ * Unlike {@link ObjectInputStream#resolveClass}, the filter sees the length of arrays before they are allocated, as
+ * well as the depth of the graph and the number of objects read so far.
+ * <p/>
+ * The filter API is only available from Java 9, or as {@code sun.misc.ObjectInputFilter} from Java 8u121, so it is
+ * used through reflection. Streams cannot be limited on older JVMs, and {@link #install} fails there.
+ */
+final class ObjectInputLimits implements InvocationHandler {
+
+    /**
+     * The filter API of the running JVM.
+     */
+    private static final class FilterApi {
+        final Class<?> filterClass;
+        final Method setFilter;
+        final boolean staticSetFilter;
+        final Object rejected;
+        final Object undecided;
+        final Method arrayLength;
+        final Method depth;
+        final Method references;
+
+        FilterApi(String filterClassName) throws Exception {
+            ClassLoader classLoader = ObjectInputStream.class.getClassLoader();
+            filterClass = Class.forName(filterClassName, false, classLoader);
+            Class<?> statusClass = Class.forName(filterClassName + "$Status", false, classLoader);
+            Class<?> filterInfoClass = Class.forName(filterClassName + "$FilterInfo", false, classLoader);
+
+            Method instanceSetFilter = findMethod(ObjectInputStream.class, "setObjectInputFilter", filterClass);
+            staticSetFilter = instanceSetFilter == null;
+            setFilter = staticSetFilter ? Class.forName(filterClassName + "$Config", false, classLoader)
+                    .getMethod("setObjectInputFilter", ObjectInputStream.class, filterClass) : instanceSetFilter;
+            rejected = statusClass.getField("REJECTED").get(null);
+            undecided = statusClass.getField("UNDECIDED").get(null);
+            arrayLength = filterInfoClass.getMethod("arrayLength");
+            depth = filterInfoClass.getMethod("depth");
+            references = filterInfoClass.getMethod("references");
+        }
+    }
+
+    private static final FilterApi API = findApi("java.io.ObjectInputFilter", "sun.misc.ObjectInputFilter");
+
+    private final long maxArrayLength;
+    private final long maxDepth;
+    private final long maxReferences;
+
+    private ObjectInputLimits(long maxArrayLength, long maxDepth, long maxReferences) {
+        this.maxArrayLength = maxArrayLength;
+        this.maxDepth = maxDepth;
+        this.maxReferences = maxReferences;
+    }
+
+    /**
+     * Makes {@code in} reject arrays longer than {@code maxArrayLength}, graphs deeper than {@code maxDepth} and
+     * graphs of more than {@code maxReferences} objects. Must be called before anything is read.
+     *
+     * @throws IOException If the running JVM cannot limit object streams.
+     */
+    static void install(ObjectInputStream in, long maxArrayLength, long maxDepth, long maxReferences)
+            throws IOException {
+        if (API == null) {
+            throw new IOException("Reading objects safely requires an ObjectInputFilter (Java 8u121 or later)");
+        }
+
+        Object filter = Proxy.newProxyInstance(ObjectInputLimits.class.getClassLoader(),
+                new Class<?>[]{API.filterClass}, new ObjectInputLimits(maxArrayLength, maxDepth, maxReferences));
+        try {
+            if (API.staticSetFilter) {
+                API.setFilter.invoke(null, in, filter);
+            } else {
+                API.setFilter.invoke(in, filter);
+            }
+        } catch (Exception e) {
+            IOException ioException = new IOException("Cannot limit the object stream: " + e);
+            ioException.initCause(e);
+            throw ioException;
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            try {
+                return method.invoke(this, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // checkInput(FilterInfo): leaves the classes to ObjectInputStream.resolveClass
+        Object filterInfo = args[0];
+        if ((Long) API.arrayLength.invoke(filterInfo) > maxArrayLength
+                || (Long) API.depth.invoke(filterInfo) > maxDepth
+                || (Long) API.references.invoke(filterInfo) > maxReferences) {
+            return API.rejected;
+        }
+
+        return API.undecided;
+    }
+
+    private static FilterApi findApi(String... filterClassNames) {
+        for (String filterClassName : filterClassNames) {
+            try {
+                return new FilterApi(filterClassName);
+            } catch (Exception e) {
+                // Not available on this JVM
+            }
+        }
+
+        return null;
+    }
+
+    private static Method findMethod(Class<?> declaringClass, String name, Class<?>... parameterTypes) {
+        try {
+            return declaringClass.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * A {@link DispatchCodec} using Java serialization, for actions and results that implement
+ * {@link java.io.Serializable}. Only the given classes, their serializable superclasses, and a few value and
+ * collection classes of the JDK can be read; anything else fails before it is instantiated. Hash-based collections are
+ * not allowed, since crafted keys can make reading them arbitrarily slow.
+ * <p/>
+ * The length of arrays, the depth of the object graph and its number of objects are limited too, so that a small
+ * request cannot allocate or build a huge graph. This requires an {@code ObjectInputFilter}, available from Java 8u121.
+ */
+public class SerializationDispatchCodec implements DispatchCodec {
+
+    public static final String CONTENT_TYPE = "application/x-gwtp-dispatch";
+
+    public static final int DEFAULT_MAX_ARRAY_LENGTH = 65536;
+    public static final int DEFAULT_MAX_DEPTH = 32;
+    public static final int DEFAULT_MAX_REFERENCES = 65536;
+
+    private static final Set<String> JDK_CLASSES = new HashSet<String>(Arrays.asList(
+            "java.lang.String", "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Short",
+            "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double", "java.lang.Number",
+            "java.lang.Enum", "java.math.BigDecimal", "java.math.BigInteger", "java.util.Date",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.TreeMap", "java.util.TreeSet"));
+
+    private final Set<String> allowedClasses = new HashSet<String>();
+
+    private volatile int maxArrayLength = DEFAULT_MAX_ARRAY_LENGTH;
+    private volatile int maxDepth = DEFAULT_MAX_DEPTH;
+    private volatile int maxReferences = DEFAULT_MAX_REFERENCES;
+
+    /**
+     * @param allowedClasses The actions and results, and the classes of the objects they contain. Their
+     *                       serializable superclasses are allowed too.
+     */
+    public SerializationDispatchCodec(Class<?>... allowedClasses) {
+        for (Class<?> allowedClass : allowedClasses) {
+            for (Class<?> type = allowedClass; type != null && Serializable.class.isAssignableFrom(type);
+                    type = type.getSuperclass()) {
+                this.allowedClasses.add(type.getName());
+            }
+        }
+    }
+
+    /**
+     * @param maxArrayLength The maximum length of the arrays read, including the ones backing collections.
+     */
+    public void setMaxArrayLength(int maxArrayLength) {
+        this.maxArrayLength = maxArrayLength;
+    }
+
+    /**
+     * @param maxDepth The maximum nesting depth of the objects read.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param maxReferences The maximum number of objects read for a single action or result.
+     */
+    public void setMaxReferences(int maxReferences) {
+        this.maxReferences = maxReferences;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void writeAction(Action<?> action, OutputStream out) throws IOException {
+        writeObject(action, out);
+    }
+
+    @Override
+    public Action<?> readAction(InputStream in) throws IOException {
+        return readObject(in, Action.class);
+    }
+
+    @Override
+    public void writeResult(Result result, OutputStream out) throws IOException {
+        writeObject(result, out);
+    }
+
+    @Override
+    public Result readResult(InputStream in) throws IOException {
+        return readObject(in, Result.class);
+    }
+
+    /**
+     * @param className The name of a class found in the data, as returned by {@link Class#getName()}.
+     * @return {@code true} if the class may be instantiated.
+     */
+    protected boolean isAllowed(String className) {
+        String name = className;
+        if (name.startsWith("[")) {
+            name = name.replaceFirst("^\\[+", "");
+            if (!name.startsWith("L")) {
+                return true;
+            }
+            name = name.substring(1, name.length() - 1);
+        }
+
+        return JDK_CLASSES.contains(name) || allowedClasses.contains(name);
+    }
+
+    private void writeObject(Object object, OutputStream out) throws IOException {
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        objectOut.writeObject(object);
+        objectOut.flush();
+    }
+
+    private <T> T readObject(InputStream in, Class<T> expectedClass) throws IOException {
+        ObjectInputStream objectIn = new ObjectInputStream(in) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (!isAllowed(desc.getName())) {
+                    throw new InvalidClassException(desc.getName(), "Class not allowed by the dispatch codec");
+                }
+                return super.resolveClass(desc);
+            }
+
+            @Override
+            protected Class<?> resolveProxyClass(String[] interfaces) throws InvalidClassException {
+                throw new InvalidClassException("Proxy classes are not allowed by the dispatch codec");
+            }
+        };
+        ObjectInputLimits.install(objectIn, maxArrayLength, maxDepth, maxReferences);
+
+        Object object;
+        try {
+            object = objectIn.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidClassException(e.getMessage());
+        }
+
+        if (!expectedClass.isInstance(object)) {
+            throw new StreamCorruptedException("Expected an instance of " + expectedClass.getName());
+        }
+
+        return expectedClass.cast(object);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.transport;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * The framing of the dispatch transport. A request is a sequence of frames, each made of the length of an encoded
+ * action followed by its bytes. The response contains one frame per action, in the same order, starting with a status.
+ * Results are then written like actions, while failures are written as the class name and the message of the
+ * exception.
+ */
+final class TransportFrames {
+
+    static final int STATUS_RESULT = 0;
+    static final int STATUS_ACTION_EXCEPTION = 1;
+    static final int STATUS_SERVICE_EXCEPTION = 2;
+
+    private static final int MAX_MESSAGE_LENGTH = 8192;
+
+    private TransportFrames() {
+    }
+
+    /**
+     * @return The length of the next frame, or {@code -1} if the stream ended cleanly before it.
+     */
+    static int readLength(DataInputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return -1;
+        }
+
+        int length = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8)
+                | in.readUnsignedByte();
+        if (length < 0) {
+            throw new EOFException("Invalid frame length: " + length);
+        }
+
+        return length;
+    }
+
+    static void writeFailure(DataOutputStream out, int status, Exception e) throws IOException {
+        String message = e.getMessage() == null ? "" : e.getMessage();
+        if (message.length() > MAX_MESSAGE_LENGTH) {
+            message = message.substring(0, MAX_MESSAGE_LENGTH);
+        }
+
+        out.writeByte(status);
+        out.writeUTF(e.getClass().getName());
+        out.writeUTF(message);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.undojournal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionResult;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * An {@link UndoJournal} keeping the first recorded actions in memory and writing the following ones to a temporary
+ * file, which is deleted when the journal is closed. Only actions and results implementing
+ * {@link java.io.Serializable} can be written to the file; the others are always kept in memory.
+ * <p/>
+ * The file is made readable and writable by its owner only before anything is written to it, where the file system
+ * supports it.
+ */
+public class FileSpillingUndoJournal implements UndoJournal {
+
+    private static final Logger logger = Logger.getLogger(FileSpillingUndoJournal.class.getName());
+
+    private final int maxEntriesInMemory;
+    private final File directory;
+
+    /**
+     * Either an {@link ActionResult} kept in memory or the {@link Long} offset of an entry of the file.
+     */
+    private final List<Object> entries = new ArrayList<Object>();
+    private int entriesInMemory;
+    private File file;
+    private RandomAccessFile fileAccess;
+    private long fileLength;
+
+    /**
+     * @param maxEntriesInMemory The number of actions kept in memory before writing them to a file.
+     * @param directory          The directory of the temporary file, or {@code null} to use the default temporary
+     *                           directory.
+     */
+    public FileSpillingUndoJournal(int maxEntriesInMemory, File directory) {
+        this.maxEntriesInMemory = maxEntriesInMemory;
+        this.directory = directory;
+    }
+
+    @Override
+    public void record(ActionResult<?, ?> actionResult) {
+        if (entriesInMemory >= maxEntriesInMemory && isSerializable(actionResult)) {
+            try {
+                entries.add(write(actionResult));
+                return;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to write to the undo journal, keeping the action in memory", e);
+            }
+        }
+
+        entries.add(actionResult);
+        entriesInMemory++;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public ActionResult<?, ?> get(int index) throws ServiceException {
+        Object entry = entries.get(index);
+        if (entry instanceof ActionResult) {
+            return (ActionResult<?, ?>) entry;
+        }
+
+        try {
+            return read((Long) entry);
+        } catch (IOException e) {
+            throw new ServiceException("Unable to read the undo journal", e);
+        } catch (ClassNotFoundException e) {
+            throw new ServiceException("Unable to read the undo journal", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        entries.clear();
+        entriesInMemory = 0;
+
+        if (fileAccess != null) {
+            try {
+                fileAccess.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Unable to close the undo journal", e);
+            }
+            if (!file.delete()) {
+                logger.warning("Unable to delete the undo journal " + file);
+            }
+            fileAccess = null;
+            file = null;
+        }
+    }
+
+    private boolean isSerializable(ActionResult<?, ?> actionResult) {
+        Object result = actionResult.getResult();
+        return actionResult.getAction() instanceof Serializable && (result == null || result instanceof Serializable);
+    }
+
+    private Long write(ActionResult<?, ?> actionResult) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(actionResult.getAction());
+        output.writeObject(actionResult.getResult());
+        output.writeBoolean(actionResult.isExecuted());
+        output.close();
+
+        if (fileAccess == null) {
+            file = File.createTempFile("gwtp-undo", ".journal", directory);
+            restrictToOwner(file);
+            fileAccess = new RandomAccessFile(file, "rw");
+        }
+
+        long offset = fileLength;
+        fileAccess.seek(offset);
+        fileAccess.writeInt(bytes.size());
+        fileAccess.write(bytes.toByteArray());
+        fileLength = fileAccess.getFilePointer();
+
+        return offset;
+    }
+
+    private void restrictToOwner(File journalFile) {
+        boolean restricted = journalFile.setReadable(false, false) && journalFile.setReadable(true, true)
+                && journalFile.setWritable(false, false) && journalFile.setWritable(true, true);
+        if (!restricted) {
+            logger.fine("Unable to restrict the access to the undo journal " + journalFile + " to its owner");
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ActionResult<?, ?> read(long offset) throws IOException, ClassNotFoundException {
+        fileAccess.seek(offset);
+        byte[] bytes = new byte[fileAccess.readInt()];
+        fileAccess.readFully(bytes);
+
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            Action action = (Action) input.readObject();
+            Result result = (Result) input.readObject();
+            return new ActionResult(action, result, input.readBoolean());
+        } finally {
+            input.close();
+        }
+    }
+}
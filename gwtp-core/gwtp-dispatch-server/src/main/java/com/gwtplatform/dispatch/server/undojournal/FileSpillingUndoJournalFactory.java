@@ -0,0 +1,49 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.undojournal;
+
+import java.io.File;
+
+/**
+ * Creates {@link FileSpillingUndoJournal}s.
+ */
+public class FileSpillingUndoJournalFactory implements UndoJournalFactory {
+
+    public static final int DEFAULT_MAX_ENTRIES_IN_MEMORY = 100;
+
+    private final int maxEntriesInMemory;
+    private final File directory;
+
+    public FileSpillingUndoJournalFactory() {
+        this(DEFAULT_MAX_ENTRIES_IN_MEMORY, null);
+    }
+
+    /**
+     * @param maxEntriesInMemory The number of actions kept in memory by each journal before writing them to a file.
+     * @param directory          The directory of the temporary files, or {@code null} to use the default temporary
+     *                           directory.
+     */
+    public FileSpillingUndoJournalFactory(int maxEntriesInMemory, File directory) {
+        this.maxEntriesInMemory = maxEntriesInMemory;
+        this.directory = directory;
+    }
+
+    @Override
+    public UndoJournal createUndoJournal() {
+        return new FileSpillingUndoJournal(maxEntriesInMemory, directory);
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.undojournal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionResult;
+
+/**
+ * An {@link UndoJournal} keeping every recorded action in memory.
+ */
+public class InMemoryUndoJournal implements UndoJournal {
+
+    private final List<ActionResult<?, ?>> actionResults = new ArrayList<ActionResult<?, ?>>();
+
+    @Override
+    public void record(ActionResult<?, ?> actionResult) {
+        actionResults.add(actionResult);
+    }
+
+    @Override
+    public int size() {
+        return actionResults.size();
+    }
+
+    @Override
+    public ActionResult<?, ?> get(int index) {
+        return actionResults.get(index);
+    }
+
+    @Override
+    public void close() {
+        actionResults.clear();
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.undojournal;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionResult;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * Keeps the nested actions executed or undone within an {@link com.gwtplatform.dispatch.server.ExecutionContext
+ * ExecutionContext} so they can be rolled back, in reverse order, if the surrounding action fails.
+ * <p/>
+ * A journal is used by a single execution context, which serializes the calls to it, and is closed once the
+ * surrounding action completes or has been rolled back.
+ */
+public interface UndoJournal {
+
+    /**
+     * Appends an executed or undone action to the journal.
+     *
+     * @param actionResult The action and the result needed to roll it back.
+     */
+    void record(ActionResult<?, ?> actionResult);
+
+    /**
+     * @return The number of recorded actions.
+     */
+    int size();
+
+    /**
+     * @param index The position of the action, in recording order.
+     * @return The recorded action.
+     * @throws ServiceException If the action can't be read back.
+     */
+    ActionResult<?, ?> get(int index) throws ServiceException;
+
+    /**
+     * Releases the resources held by the journal. It is not used afterwards.
+     */
+    void close();
+}
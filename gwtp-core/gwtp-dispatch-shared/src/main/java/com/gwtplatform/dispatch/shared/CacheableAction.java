@@ -0,0 +1,44 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.shared;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an {@link Action} whose {@link Result} can be cached on the server and shared by every client sending an
+ * equal action. Only use it on actions that read data and that implement {@code equals} and {@code hashCode}, like
+ * the ones generated by {@code @GenDispatch}.
+ * <p/>
+ * The server only honors this annotation when a result cache is registered, see
+ * {@code com.gwtplatform.dispatch.server.actioninterceptor.ResultCacheInterceptor}.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CacheableAction {
+
+    /**
+     * @return How long, in milliseconds, a cached result can be returned before the action is executed again.
+     */
+    long timeToLiveMillis() default 60000;
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+/**
+ * One chunk of a large result. Actions returning a {@link ChunkedResult} let the server build and send their items a
+ * chunk at a time instead of as a single payload. As long as {@link #isLast()} is {@code false}, the next chunk is
+ * obtained by executing a {@link FetchChunkAction} with the {@link #getCursor() cursor} of this one.
+ * <p/>
+ * Use {@link com.gwtplatform.dispatch.client.ChunkedDispatch ChunkedDispatch} on the client to receive every chunk of
+ * such an action as it arrives.
+ *
+ * @param <T> The type of the items.
+ */
+public class ChunkedResult<T extends IsSerializable> implements Result {
+
+    private ArrayList<T> items;
+    private String cursor;
+
+    /**
+     * Creates a chunk of items.
+     *
+     * @param items  The items of this chunk.
+     * @param cursor The cursor to fetch the next chunk, or <code>null</code> if this is the last one.
+     */
+    public ChunkedResult(List<T> items, String cursor) {
+        this.items = new ArrayList<T>(items);
+        this.cursor = cursor;
+    }
+
+    /**
+     * For serialization.
+     */
+    ChunkedResult() {
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return The cursor to pass to a {@link FetchChunkAction} to get the next chunk, or <code>null</code> if this is
+     *         the last chunk.
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public boolean isLast() {
+        return cursor == null;
+    }
+}
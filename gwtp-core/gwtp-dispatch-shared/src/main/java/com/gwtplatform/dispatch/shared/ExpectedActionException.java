@@ -0,0 +1,38 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.shared;
+
+/**
+ * An {@link ActionException} reporting an expected outcome, such as a failed business validation, rather than a
+ * problem. It doesn't capture a stack trace when created, and the server logs it without one.
+ */
+public class ExpectedActionException extends ActionException {
+
+    private static final long serialVersionUID = 4212350442315487712L;
+
+    public ExpectedActionException() {
+    }
+
+    public ExpectedActionException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.shared;
+
+/**
+ * Fetches the next chunk of a {@link ChunkedResult}, or releases the server-side resources of a chunked result that is
+ * no longer needed. It is sent to the same service as the action that produced the first chunk.
+ * <p/>
+ * It is always secured, whatever the security of the original action, so the application must set a
+ * {@link SecurityCookie} to use chunked results.
+ */
+public class FetchChunkAction implements Action<ChunkedResult<?>> {
+
+    private String cursor;
+    private String serviceName;
+    private boolean close;
+
+    /**
+     * @param action The action that returned the first chunk.
+     * @param cursor The cursor of the last received chunk, see {@link ChunkedResult#getCursor()}.
+     * @param close  {@code true} to discard the remaining chunks, {@code false} to fetch the next one.
+     */
+    public FetchChunkAction(Action<?> action, String cursor, boolean close) {
+        this.cursor = cursor;
+        this.serviceName = action.getServiceName();
+        this.close = close;
+    }
+
+    /**
+     * For serialization.
+     */
+    FetchChunkAction() {
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public boolean isClose() {
+        return close;
+    }
+
+    @Override
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    @Override
+    public boolean isSecured() {
+        return true;
+    }
+}
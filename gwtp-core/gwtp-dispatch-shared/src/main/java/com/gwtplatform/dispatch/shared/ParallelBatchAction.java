@@ -0,0 +1,43 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.shared;
+
+/**
+ * A {@link BatchAction} whose actions are independent of each other and can therefore be executed concurrently on
+ * the server. The results are still returned in the order of the original actions.
+ * <p/>
+ * Parallel batches always follow the {@link OnException#CONTINUE} rules: if an action fails or does not complete in
+ * time, the matching {@link Result} in the {@link BatchResult#getResults()} will be <code>null</code>. If the server
+ * is not configured to execute batches in parallel, the actions are simply executed in sequence.
+ */
+public abstract class ParallelBatchAction extends BatchAction {
+
+    /**
+     * Constructs a new parallel batch action, which will attempt to execute all the provided actions concurrently.
+     *
+     * @param actions The list of independent actions to execute.
+     */
+    public ParallelBatchAction(Action<?>... actions) {
+        super(OnException.CONTINUE, actions);
+    }
+
+    /**
+     * Used for serialization only.
+     */
+    ParallelBatchAction() {
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.shared;
+
+/**
+ * Thrown when the server refuses to execute an action because too many actions of the same kind are already being
+ * executed. The action was not executed at all, so it is safe to retry it later.
+ */
+public class ServiceOverloadedException extends ServiceException {
+
+    private static final long serialVersionUID = -2378262950418318311L;
+
+    public ServiceOverloadedException() {
+    }
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}